@@ -0,0 +1,202 @@
+package com.example.ethreader.config;
+
+import com.example.ethreader.service.BackfillService;
+import com.example.ethreader.service.BlockchainService;
+import com.example.ethreader.service.ChainHeadTracker;
+import com.example.ethreader.service.DepositIngestionService;
+import com.example.ethreader.service.DepositMonitorService;
+import com.example.ethreader.service.DepositOutboxService;
+import com.example.ethreader.service.DepositProcessorService;
+import com.example.ethreader.service.LeaderElectionService;
+import com.example.ethreader.service.MonitoredAddressIndex;
+import com.example.ethreader.service.NewHeadsSubscriber;
+import com.example.ethreader.service.PartitionLeaseService;
+import com.example.ethreader.service.ScheduledTasks;
+import com.example.ethreader.service.TransactionService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Runs additional chains next to the primary one (blockchain.chain). Each additional chain gets a
+// child application context with its own RPC pool, monitor and processor threads, scheduler and
+// address index, so a slow chain cannot starve the others. Child contexts see the root settings
+// overlaid with chains.<name>.* properties; RPC and WebSocket URLs are never inherited.
+// Wallets and deposits belong to the additional chain named by their chain field; everything
+// else belongs to the primary chain.
+@Component
+public class ChainRegistry implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChainRegistry.class);
+    private static final String CHAIN_PREFIX = "chains.";
+    private static final Set<String> CHAIN_SCOPED_PROPERTIES = Set.of("web3j.rpc.url", "web3j.rpc.urls", "web3j.ws.url");
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${blockchain.chain:sepolia}")
+    private String primaryChain;
+
+    @Value("${blockchain.additional.chains:}") // Comma-separated names, configured under chains.<name>.*
+    private String additionalChains;
+
+    private final Map<String, AnnotationConfigApplicationContext> chainContexts = new LinkedHashMap<>();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String name : additionalChains.split(",")) {
+            name = name.trim();
+            if (name.isEmpty() || name.equalsIgnoreCase(primaryChain) || chainContexts.containsKey(name)) {
+                continue;
+            }
+            chainContexts.put(name, createChainContext(name));
+            logger.info("Monitoring additional chain {}", name);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (AnnotationConfigApplicationContext context : chainContexts.values()) {
+            context.close();
+        }
+        chainContexts.clear();
+    }
+
+    public String getPrimaryChain() {
+        return primaryChain;
+    }
+
+    // Primary chain first
+    public List<String> getChainNames() {
+        List<String> names = new ArrayList<>();
+        names.add(primaryChain);
+        names.addAll(chainContexts.keySet());
+        return names;
+    }
+
+    // Chain that scans a wallet or deposit with the given chain field
+    public String resolveChain(String chain) {
+        if (chain != null) {
+            for (String name : chainContexts.keySet()) {
+                if (name.equalsIgnoreCase(chain)) {
+                    return name;
+                }
+            }
+        }
+        return primaryChain;
+    }
+
+    public boolean isOwnedBy(String scanningChain, String chain) {
+        return resolveChain(chain).equalsIgnoreCase(scanningChain);
+    }
+
+    // The chain's instance of a per-chain service; unknown chains resolve to the primary chain
+    public <T> T getService(String chain, Class<T> type) {
+        AnnotationConfigApplicationContext context = chainContexts.get(resolveChain(chain));
+        return context != null ? context.getBean(type) : applicationContext.getBean(type);
+    }
+
+    private AnnotationConfigApplicationContext createChainContext(String name) {
+        Environment rootEnvironment = applicationContext.getEnvironment();
+        Map<String, Object> overrides = chainOverrides(name, rootEnvironment);
+        if (!overrides.containsKey("web3j.rpc.url") && !overrides.containsKey("web3j.rpc.urls")) {
+            throw new IllegalStateException("No RPC endpoint configured for chain " + name
+                    + "; set " + CHAIN_PREFIX + name + ".web3j.rpc.url");
+        }
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.setId(applicationContext.getId() + ":" + name);
+        context.setDisplayName("chain " + name);
+        context.setParent(applicationContext);
+
+        // Replace the merged root sources with the chain overlay on top of a filtered root view
+        MutablePropertySources sources = context.getEnvironment().getPropertySources();
+        for (String source : sources.stream().map(PropertySource::getName).toList()) {
+            sources.remove(source);
+        }
+        sources.addFirst(new MapPropertySource("chain:" + name, overrides));
+        sources.addLast(new InheritedPropertySource(rootEnvironment));
+
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix(name + "-scheduling-");
+        scheduler.setDaemon(true);
+        context.registerBean("taskScheduler", ThreadPoolTaskScheduler.class, () -> scheduler);
+        context.register(ChainScheduling.class, Web3jConfig.class, BlockchainService.class,
+                NewHeadsSubscriber.class, ChainHeadTracker.class, PartitionLeaseService.class,
+                LeaderElectionService.class, MonitoredAddressIndex.class, DepositIngestionService.class,
+                DepositOutboxService.class, DepositMonitorService.class, DepositProcessorService.class, ScheduledTasks.class,
+                BackfillService.class, TransactionService.class);
+        context.refresh();
+        return context;
+    }
+
+    private static Map<String, Object> chainOverrides(String name, Environment rootEnvironment) {
+        String prefix = CHAIN_PREFIX + name + ".";
+        Map<String, Object> overrides = new HashMap<>();
+        if (rootEnvironment instanceof ConfigurableEnvironment configurable) {
+            for (PropertySource<?> source : configurable.getPropertySources()) {
+                if (source instanceof EnumerablePropertySource<?> enumerable) {
+                    for (String key : enumerable.getPropertyNames()) {
+                        if (key.startsWith(prefix) && !overrides.containsKey(key.substring(prefix.length()))) {
+                            overrides.put(key.substring(prefix.length()), rootEnvironment.getProperty(key));
+                        }
+                    }
+                }
+            }
+        }
+        overrides.put("blockchain.chain", name);
+
+        // Files shared with the primary chain would mix two chains' data
+        String cacheDir = rootEnvironment.getProperty("blockchain.cache.dir", "data/rpc-cache");
+        if (!overrides.containsKey("blockchain.cache.dir") && !cacheDir.isBlank()) {
+            overrides.put("blockchain.cache.dir", Path.of(cacheDir).resolve(name).toString());
+        }
+        String indexFile = rootEnvironment.getProperty("blockchain.address.index.file", "");
+        if (!overrides.containsKey("blockchain.address.index.file") && !indexFile.isBlank()) {
+            overrides.put("blockchain.address.index.file", indexFile + "." + name);
+        }
+        return overrides;
+    }
+
+    @EnableScheduling
+    static class ChainScheduling {
+    }
+
+    // Root settings as seen by a chain context, minus the endpoint settings of the primary chain
+    private static class InheritedPropertySource extends PropertySource<Environment> {
+
+        InheritedPropertySource(Environment rootEnvironment) {
+            super("root", rootEnvironment);
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            if (CHAIN_SCOPED_PROPERTIES.contains(name)) {
+                return null;
+            }
+            return getSource().getProperty(name);
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.example.ethreader.config;
+
+import com.example.ethreader.util.SegmentedDiskCache;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cache for JSON-RPC results that can no longer change: blocks, block receipts and logs at or
+// below the finalized height, and receipts of transactions in such blocks. Results are kept as raw
+// JSON in an LRU memory tier backed by a compressed on-disk store. Works at the transport level,
+// so single calls and batches from web3j and the streaming decoder are all served from it; a
+// batch is split into cached and forwarded calls and the responses are merged back in order
+// while the node's answer streams through.
+public class FinalizedResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FinalizedResponseCache.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonFactory jsonFactory = objectMapper.getFactory();
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final long maxMemoryBytes;
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private SegmentedDiskCache disk;
+    private boolean diskUnavailable = false;
+    private volatile long finalizedBlock = -1; // Nothing is cached until the height is known
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // A null directory keeps the memory tier only
+    public FinalizedResponseCache(Path directory, long maxDiskBytes, long maxMemoryBytes) {
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    public interface Transport {
+        InputStream send(String payload) throws IOException;
+    }
+
+    public void setFinalizedBlock(long finalizedBlock) {
+        if (finalizedBlock > this.finalizedBlock) {
+            this.finalizedBlock = finalizedBlock;
+        }
+    }
+
+    public long getFinalizedBlock() {
+        return finalizedBlock;
+    }
+
+    public InputStream execute(String payload, Transport transport) throws IOException {
+        long finalized = finalizedBlock;
+        if (finalized < 0) {
+            return transport.send(payload);
+        }
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            return transport.send(payload);
+        }
+
+        List<JsonNode> calls = new ArrayList<>();
+        if (request.isArray()) {
+            request.forEach(calls::add);
+        } else {
+            calls.add(request);
+        }
+        String[] keys = new String[calls.size()];
+        byte[][] results = new byte[calls.size()][];
+        boolean cacheable = false;
+        List<JsonNode> forward = new ArrayList<>();
+        for (int i = 0; i < calls.size(); i++) {
+            keys[i] = cacheKey(calls.get(i), finalized);
+            if (keys[i] != null) {
+                cacheable = true;
+                results[i] = get(keys[i]);
+            }
+            if (results[i] == null) {
+                forward.add(calls.get(i));
+            }
+        }
+        if (!cacheable) {
+            return transport.send(payload);
+        }
+
+        if (!request.isArray()) {
+            if (results[0] != null) {
+                return new ByteArrayInputStream(wrapResult(calls.get(0), results[0]));
+            }
+            byte[] body;
+            try (InputStream in = transport.send(payload)) {
+                body = in.readAllBytes();
+            }
+            store(keys[0], calls.get(0), body, finalized);
+            return new ByteArrayInputStream(body);
+        }
+        if (forward.isEmpty()) {
+            return new MergedBatchStream(calls, keys, results, finalized, null, null);
+        }
+
+        String forwardPayload = payload;
+        if (forward.size() < calls.size()) {
+            ArrayNode remaining = objectMapper.createArrayNode();
+            remaining.addAll(forward);
+            forwardPayload = remaining.toString();
+        }
+        InputStream in = transport.send(forwardPayload);
+        JsonParser parser;
+        try {
+            parser = jsonFactory.createParser(in);
+            JsonToken first = parser.nextToken();
+            if (first != JsonToken.START_ARRAY) {
+                // Not a batch answer (e.g. a top-level error); hand it back as it is
+                try (in; parser) {
+                    return new ByteArrayInputStream(first != null ? copyStructure(parser) : new byte[0]);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+        return new MergedBatchStream(calls, keys, results, finalized, in, parser);
+    }
+
+    // Key for a call whose result is immutable, or null when it may still change
+    private String cacheKey(JsonNode call, long finalized) {
+        String method = call.path("method").asText();
+        JsonNode params = call.path("params");
+        switch (method) {
+            case "eth_getBlockByNumber": {
+                BigInteger number = quantity(params.path(0));
+                return number != null && number.longValue() <= finalized
+                        ? "block:" + number + ":" + params.path(1).asBoolean() : null;
+            }
+            case "eth_getBlockReceipts": {
+                BigInteger number = quantity(params.path(0));
+                return number != null && number.longValue() <= finalized ? "receipts:" + number : null;
+            }
+            case "eth_getLogs": {
+                JsonNode filter = params.path(0);
+                BigInteger from = quantity(filter.path("fromBlock"));
+                BigInteger to = quantity(filter.path("toBlock"));
+                return from != null && to != null && to.longValue() <= finalized ? "logs:" + filter : null;
+            }
+            case "eth_getTransactionReceipt":
+                // Finality is only known from the result; checked again in store()
+                return params.path(0).isTextual() ? "receipt:" + params.path(0).asText().toLowerCase() : null;
+            default:
+                return null;
+        }
+    }
+
+    private void store(String key, JsonNode call, byte[] element, long finalized) {
+        if (key == null) {
+            return;
+        }
+        try (JsonParser parser = jsonFactory.createParser(element)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (!"result".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (token == JsonToken.VALUE_NULL) {
+                    return; // Unknown block or receipt: nothing to cache
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream(element.length);
+                try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+                    generator.copyCurrentStructure(parser);
+                }
+                byte[] result = out.toByteArray();
+                if ("eth_getTransactionReceipt".equals(call.path("method").asText())) {
+                    BigInteger blockNumber = quantity(objectMapper.readTree(result).path("blockNumber"));
+                    if (blockNumber == null || blockNumber.longValue() > finalized) {
+                        return;
+                    }
+                }
+                put(key, result);
+                return;
+            }
+        } catch (IOException e) {
+            logger.debug("Could not cache RPC result for {}", key, e);
+        }
+    }
+
+    // Re-serializes the value at the parser's current token
+    private byte[] copyStructure(JsonParser parser) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return out.toByteArray();
+    }
+
+    private JsonNode idOf(byte[] element) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(element)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("id".equals(field)) {
+                    return objectMapper.readTree(parser);
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    private static byte[] wrapResult(JsonNode call, byte[] result) {
+        byte[] prefix = ("{\"jsonrpc\":\"2.0\",\"id\":" + call.path("id") + ",\"result\":")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] element = new byte[prefix.length + result.length + 1];
+        System.arraycopy(prefix, 0, element, 0, prefix.length);
+        System.arraycopy(result, 0, element, prefix.length, result.length);
+        element[element.length - 1] = '}';
+        return element;
+    }
+
+    private static BigInteger quantity(JsonNode node) {
+        String text = node.asText();
+        if (!node.isTextual() || !text.startsWith("0x") || text.length() < 3) {
+            return null; // Tags such as "latest" or "finalized" move
+        }
+        try {
+            return new BigInteger(text.substring(2), 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private byte[] get(String key) {
+        byte[] value;
+        synchronized (memory) {
+            value = memory.get(key);
+        }
+        if (value != null) {
+            memoryHits.incrementAndGet();
+            return value;
+        }
+        SegmentedDiskCache store = disk();
+        value = store != null ? store.get(key) : null;
+        if (value != null) {
+            diskHits.incrementAndGet();
+            putInMemory(key, value);
+            return value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void putInMemory(String key, byte[] value) {
+        synchronized (memory) {
+            byte[] previous = memory.put(key, value);
+            memoryBytes += value.length - (previous != null ? previous.length : 0);
+            Iterator<byte[]> eldest = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private void put(String key, byte[] value) {
+        putInMemory(key, value);
+        SegmentedDiskCache store = disk();
+        if (store != null) {
+            try {
+                store.put(key, value);
+            } catch (IOException e) {
+                logger.warn("Failed to write RPC cache entry {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    // The disk tier is opened on first use so that startup never touches the file system
+    private synchronized SegmentedDiskCache disk() {
+        if (disk == null && directory != null && !diskUnavailable) {
+            try {
+                disk = SegmentedDiskCache.open(directory, maxDiskBytes);
+                logger.info("RPC cache opened at {} with {} entries ({} bytes)", directory,
+                        disk.getEntryCount(), disk.getTotalBytes());
+            } catch (IOException e) {
+                diskUnavailable = true;
+                logger.error("RPC cache directory {} is unusable, keeping the memory tier only", directory, e);
+            }
+        }
+        return disk;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized void close() throws IOException {
+        if (disk != null) {
+            disk.close();
+            disk = null;
+        }
+    }
+
+    // A batch response in request order: cached results are written from memory, forwarded ones
+    // as the node's response is parsed, one element at a time, and stored as they pass. Only
+    // elements the node sends ahead of their turn are held back, so a batch of blocks answered in
+    // order streams through without being buffered as a whole.
+    private class MergedBatchStream extends InputStream {
+        private static final byte[] OPEN = {'['};
+        private static final byte[] COMMA = {','};
+        private static final byte[] CLOSE = {']'};
+
+        private final List<JsonNode> calls;
+        private final String[] keys;
+        private final byte[][] results;
+        private final long finalized;
+        private final InputStream source; // Positioned inside the node's array; null when nothing was forwarded
+        private final JsonParser parser;
+        private final Map<String, Integer> forwardedById = new HashMap<>();
+        private final Map<String, byte[]> early = new HashMap<>();
+        private final ArrayDeque<byte[]> chunks = new ArrayDeque<>();
+        private byte[] current;
+        private int position;
+        private int next = -1; // Next call to write; -1 before the opening bracket
+        private boolean written;
+        private boolean ended;
+        private boolean sourceDone;
+
+        MergedBatchStream(List<JsonNode> calls, String[] keys, byte[][] results, long finalized,
+                          InputStream source, JsonParser parser) {
+            this.calls = calls;
+            this.keys = keys;
+            this.results = results;
+            this.finalized = finalized;
+            this.source = source;
+            this.parser = parser;
+            this.sourceDone = source == null;
+            for (int i = 0; i < calls.size(); i++) {
+                if (results[i] == null) {
+                    forwardedById.put(calls.get(i).path("id").toString(), i);
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (current == null || position == current.length) {
+                if (chunks.isEmpty() && !fill()) {
+                    return -1;
+                }
+                current = chunks.poll();
+                position = 0;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        // Queue the next part of the response; false once the closing bracket was queued
+        private boolean fill() throws IOException {
+            if (ended) {
+                return false;
+            }
+            if (next < 0) {
+                next = 0;
+                chunks.add(OPEN);
+                return true;
+            }
+            while (next < calls.size()) {
+                int i = next++;
+                byte[] element = results[i] != null
+                        ? wrapResult(calls.get(i), results[i])
+                        : forwarded(calls.get(i).path("id").toString());
+                if (element != null) {
+                    if (written) {
+                        chunks.add(COMMA);
+                    }
+                    chunks.add(element);
+                    written = true;
+                    return true;
+                }
+            }
+            chunks.add(CLOSE);
+            ended = true;
+            closeSource();
+            return true;
+        }
+
+        // The node's answer to the call with this id, reading on until it arrives; null if missing
+        private byte[] forwarded(String id) throws IOException {
+            byte[] element = early.remove(id);
+            while (element == null && !sourceDone) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    closeSource();
+                    break;
+                }
+                byte[] parsed = copyStructure(parser);
+                JsonNode parsedId = idOf(parsed);
+                Integer index = parsedId != null ? forwardedById.get(parsedId.toString()) : null;
+                if (index == null) {
+                    continue;
+                }
+                store(keys[index], calls.get(index), parsed, finalized);
+                if (parsedId.toString().equals(id)) {
+                    element = parsed;
+                } else {
+                    early.put(parsedId.toString(), parsed);
+                }
+            }
+            return element;
+        }
+
+        private void closeSource() throws IOException {
+            if (!sourceDone) {
+                sourceDone = true;
+                try (source) {
+                    parser.close();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            early.clear();
+            closeSource();
+        }
+    }
+}
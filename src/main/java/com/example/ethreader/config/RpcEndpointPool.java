@@ -0,0 +1,335 @@
+package com.example.ethreader.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Service;
+import org.web3j.protocol.exceptions.ClientConnectionException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Web3j transport over several JSON-RPC endpoints. Each call goes to the healthy endpoint with the
+// best latency/error score and fails over to the next one on transport errors. Every endpoint has
+// its own concurrency limit, and calls to latency-critical methods can be hedged: if the first
+// endpoint has not answered within the hedge delay, the call is also sent to the next one and
+// whichever answers first wins.
+public class RpcEndpointPool extends Service {
+
+    private static final Logger logger = LoggerFactory.getLogger(RpcEndpointPool.class);
+    private static final double EWMA_ALPHA = 0.2;
+    private static final long MAX_COOLDOWN_MS = 60_000;
+
+    private final List<Endpoint> endpoints;
+    private final Set<String> hedgedMethods;
+    private final long hedgeDelayMs;
+    private final long acquireTimeoutMs;
+    private final ExecutorService hedgeExecutor;
+    private FinalizedResponseCache responseCache;
+
+    public RpcEndpointPool(List<String> urls, int maxConcurrentPerEndpoint, Set<String> hedgedMethods,
+                           long hedgeDelayMs, long acquireTimeoutMs) {
+        super(false);
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("At least one RPC endpoint is required");
+        }
+        List<Endpoint> list = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            list.add(new Endpoint(url, maxConcurrentPerEndpoint));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        this.hedgedMethods = hedgedMethods;
+        this.hedgeDelayMs = hedgeDelayMs;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "RpcEndpointPool-hedge-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Post a JSON-RPC payload (single call or batch) and return the undecoded response body
+    public InputStream sendRaw(String payload) throws IOException {
+        return performIO(payload);
+    }
+
+    // Serve immutable (finalized) results locally before routing to an endpoint
+    public void setResponseCache(FinalizedResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    protected InputStream performIO(String payload) throws IOException {
+        if (responseCache != null) {
+            return responseCache.execute(payload, this::route);
+        }
+        return route(payload);
+    }
+
+    private InputStream route(String payload) throws IOException {
+        List<Endpoint> ranked = rankEndpoints();
+        if (ranked.size() > 1 && hedgeDelayMs >= 0 && isHedged(payload)) {
+            return performHedged(payload, ranked);
+        }
+        return performWithFailover(payload, ranked);
+    }
+
+    private InputStream performWithFailover(String payload, List<Endpoint> ranked) throws IOException {
+        IOException lastError = null;
+        for (Endpoint endpoint : ranked) {
+            try {
+                return endpoint.perform(payload, acquireTimeoutMs);
+            } catch (IOException e) {
+                lastError = e;
+                logger.warn("RPC endpoint {} failed, trying next: {}", endpoint.getName(), e.getMessage());
+            }
+        }
+        throw lastError;
+    }
+
+    private InputStream performHedged(String payload, List<Endpoint> ranked) throws IOException {
+        Endpoint primary = ranked.get(0);
+        Endpoint backup = ranked.get(1);
+        CompletableFuture<InputStream> first = CompletableFuture.supplyAsync(() -> call(primary, payload), hedgeExecutor);
+        try {
+            return first.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            backup.hedges.incrementAndGet();
+            CompletableFuture<InputStream> second = CompletableFuture.supplyAsync(() -> call(backup, payload), hedgeExecutor);
+            // First successful answer wins; only fail when both attempts failed
+            CompletableFuture<InputStream> winner = new CompletableFuture<>();
+            AtomicInteger failures = new AtomicInteger();
+            for (CompletableFuture<InputStream> attempt : List.of(first, second)) {
+                attempt.whenComplete((result, error) -> {
+                    if (error == null) {
+                        if (!winner.complete(result)) {
+                            closeQuietly(result); // The other attempt won; release this connection
+                        }
+                    } else if (failures.incrementAndGet() == 2) {
+                        winner.completeExceptionally(error);
+                    }
+                });
+            }
+            return await(winner);
+        } catch (ExecutionException e) {
+            // The primary failed outright: fall back to the remaining endpoints in order
+            return performWithFailover(payload, ranked.subList(1, ranked.size()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            first.thenAccept(RpcEndpointPool::closeQuietly); // Nobody reads the response any more
+            throw new IOException("Interrupted while waiting for RPC response", e);
+        }
+    }
+
+    private InputStream call(Endpoint endpoint, String payload) {
+        try {
+            return endpoint.perform(payload, acquireTimeoutMs);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static InputStream await(CompletableFuture<InputStream> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.thenAccept(RpcEndpointPool::closeQuietly); // Nobody reads the response any more
+            throw new IOException("Interrupted while waiting for RPC response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close abandoned RPC response: {}", e.getMessage());
+        }
+    }
+
+    private boolean isHedged(String payload) {
+        // Hedging a batch would duplicate every call in it; only single requests qualify
+        if (payload.startsWith("[")) {
+            return false;
+        }
+        for (String method : hedgedMethods) {
+            if (payload.contains("\"method\":\"" + method + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Healthy endpoints by score, then endpoints in cooldown by how soon they become usable
+    private List<Endpoint> rankEndpoints() {
+        long now = System.currentTimeMillis();
+        // Snapshot the keys first; scores change while other threads use the endpoints
+        Map<Endpoint, Double> keys = new HashMap<>();
+        for (Endpoint endpoint : endpoints) {
+            // Cooldown deadlines are epoch millis, so they always sort after any latency score
+            keys.put(endpoint, endpoint.isHealthy(now) ? endpoint.score() : (double) endpoint.cooldownUntil);
+        }
+        List<Endpoint> ranked = new ArrayList<>(endpoints);
+        ranked.sort(Comparator.comparingDouble(keys::get));
+        return ranked;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    @Override
+    public void close() throws IOException {
+        hedgeExecutor.shutdownNow();
+        if (responseCache != null) {
+            responseCache.close();
+        }
+        for (Endpoint endpoint : endpoints) {
+            endpoint.service.close();
+        }
+    }
+
+    // One JSON-RPC endpoint with its own transport, concurrency limit and health statistics
+    public static class Endpoint {
+        private final StreamingHttpService service;
+        private final String name;
+        private final int maxConcurrent;
+        private final Semaphore permits;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong hedges = new AtomicLong();
+        private volatile double latencyMs = 0; // EWMA, 0 until the first response
+        private volatile double errorRate = 0; // EWMA of failures (0..1)
+        private volatile int consecutiveFailures = 0;
+        private volatile long cooldownUntil = 0;
+
+        Endpoint(String url, int maxConcurrent) {
+            this.service = new StreamingHttpService(url);
+            this.name = displayName(url);
+            this.maxConcurrent = maxConcurrent;
+            this.permits = new Semaphore(maxConcurrent);
+        }
+
+        InputStream perform(String payload, long acquireTimeoutMs) throws IOException {
+            try {
+                if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("All " + maxConcurrent + " connections to " + name + " are busy");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + name, e);
+            }
+            long start = System.nanoTime();
+            requests.incrementAndGet();
+            try {
+                InputStream response = service.sendRaw(payload);
+                recordSuccess((System.nanoTime() - start) / 1_000_000.0);
+                return response;
+            } catch (IOException | ClientConnectionException e) {
+                // ClientConnectionException covers non-2xx answers such as 429 rate limiting
+                recordFailure();
+                throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+            } finally {
+                permits.release();
+            }
+        }
+
+        private synchronized void recordSuccess(double elapsedMs) {
+            latencyMs = latencyMs == 0 ? elapsedMs : latencyMs + EWMA_ALPHA * (elapsedMs - latencyMs);
+            errorRate = errorRate * (1 - EWMA_ALPHA);
+            consecutiveFailures = 0;
+            cooldownUntil = 0;
+        }
+
+        private synchronized void recordFailure() {
+            failures.incrementAndGet();
+            errorRate = errorRate + EWMA_ALPHA * (1 - errorRate);
+            consecutiveFailures++;
+            // Back off 1s, 2s, 4s ... up to a minute after repeated failures
+            if (consecutiveFailures >= 3) {
+                long cooldown = Math.min(MAX_COOLDOWN_MS, 1000L << Math.min(consecutiveFailures - 3, 16));
+                cooldownUntil = System.currentTimeMillis() + cooldown;
+            }
+        }
+
+        // Lower is better: latency inflated by the error rate and current load
+        double score() {
+            double load = 1.0 + (double) (maxConcurrent - permits.availablePermits()) / maxConcurrent;
+            return Math.max(latencyMs, 1.0) * (1.0 + 10.0 * errorRate) * load;
+        }
+
+        boolean isHealthy(long now) {
+            return now >= cooldownUntil;
+        }
+
+        // Host only, so API keys in the path or query are not exposed
+        private static String displayName(String url) {
+            try {
+                String host = URI.create(url).getHost();
+                return host != null ? host : url;
+            } catch (IllegalArgumentException e) {
+                return url;
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isHealthy() {
+            return isHealthy(System.currentTimeMillis());
+        }
+
+        public double getLatencyMs() {
+            return latencyMs;
+        }
+
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        public int getInFlight() {
+            return maxConcurrent - permits.availablePermits();
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        public long getHedges() {
+            return hedges.get();
+        }
+    }
+}
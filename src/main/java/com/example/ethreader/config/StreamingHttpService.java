@@ -0,0 +1,20 @@
+package com.example.ethreader.config;
+
+import org.web3j.protocol.http.HttpService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// HttpService that also exposes the raw response body, so large responses (full blocks) can be
+// parsed as a stream instead of being mapped into web3j response objects
+public class StreamingHttpService extends HttpService {
+
+    public StreamingHttpService(String url) {
+        super(url);
+    }
+
+    // Post a JSON-RPC payload (single call or batch) and return the undecoded response body
+    public InputStream sendRaw(String payload) throws IOException {
+        return performIO(payload);
+    }
+}
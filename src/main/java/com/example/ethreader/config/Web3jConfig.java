@@ -1,10 +1,17 @@
 package com.example.ethreader.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.web3j.protocol.Web3j;
-import org.web3j.protocol.http.HttpService;
+import org.web3j.protocol.websocket.WebSocketService;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Supplier;
 
 @Configuration
 public class Web3jConfig {
@@ -12,9 +19,76 @@ public class Web3jConfig {
     @Value("${web3j.rpc.url:https://sepolia.infura.io/v3/YOUR_PROJECT_ID}")
     private String rpcUrl;
 
+    @Value("${web3j.rpc.urls:}") // Comma-separated endpoints; overrides web3j.rpc.url when set
+    private String rpcUrls;
+
+    @Value("${web3j.rpc.max.concurrent:16}") // Concurrent calls per endpoint
+    private int maxConcurrentPerEndpoint;
+
+    @Value("${web3j.rpc.hedge.methods:eth_blockNumber}") // Calls hedged to a second endpoint
+    private String hedgedMethods;
+
+    @Value("${web3j.rpc.hedge.delay:250}") // ms before a hedged call is also sent elsewhere; -1 disables
+    private long hedgeDelayMs;
+
+    @Value("${web3j.rpc.acquire.timeout:10000}") // ms to wait for a free slot on an endpoint
+    private long acquireTimeoutMs;
+
+    @Value("${blockchain.cache.enabled:true}") // Cache finalized blocks, receipts and logs locally
+    private boolean cacheEnabled;
+
+    @Value("${blockchain.cache.dir:data/rpc-cache}") // Disk tier location; empty = memory only
+    private String cacheDir;
+
+    @Value("${blockchain.cache.max.bytes:1073741824}") // Disk tier size limit (compressed)
+    private long cacheMaxBytes;
+
+    @Value("${blockchain.cache.memory.bytes:67108864}") // In-memory LRU tier size limit
+    private long cacheMemoryBytes;
+
+    @Value("${web3j.ws.url:}")
+    private String wsUrl;
+
     @Bean
-    public Web3j web3j() {
-        return Web3j.build(new HttpService(rpcUrl));
+    public FinalizedResponseCache finalizedResponseCache() {
+        Path directory = cacheDir == null || cacheDir.isBlank() ? null : Path.of(cacheDir);
+        return new FinalizedResponseCache(directory, cacheMaxBytes, cacheMemoryBytes);
     }
-}
 
+    @Bean
+    public RpcEndpointPool rpcEndpointPool(FinalizedResponseCache finalizedResponseCache) {
+        List<String> urls = splitList(rpcUrls);
+        if (urls.isEmpty()) {
+            urls = List.of(rpcUrl);
+        }
+        RpcEndpointPool pool = new RpcEndpointPool(urls, Math.max(1, maxConcurrentPerEndpoint),
+                new HashSet<>(splitList(hedgedMethods)), hedgeDelayMs, acquireTimeoutMs);
+        if (cacheEnabled) {
+            pool.setResponseCache(finalizedResponseCache);
+        }
+        return pool;
+    }
+
+    @Bean
+    public Web3j web3j(RpcEndpointPool rpcEndpointPool) {
+        return Web3j.build(rpcEndpointPool);
+    }
+
+    // Optional WebSocket transport for newHeads subscriptions. A closed WebSocketService cannot be
+    // reopened, so this hands out a fresh one for every (re)connect. A blank URL counts as unset.
+    @Bean
+    @ConditionalOnExpression("!'${web3j.ws.url:}'.isBlank()")
+    public Supplier<WebSocketService> webSocketServiceFactory() {
+        return () -> new WebSocketService(wsUrl, false);
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+}
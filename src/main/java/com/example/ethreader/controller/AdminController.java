@@ -1,14 +1,28 @@
 package com.example.ethreader.controller;
 
+import com.example.ethreader.config.ChainRegistry;
+import com.example.ethreader.config.RpcEndpointPool;
 import com.example.ethreader.dto.*;
+import com.example.ethreader.model.BackfillJob;
 import com.example.ethreader.model.DepositTransaction;
 import com.example.ethreader.model.HotWallet;
 import com.example.ethreader.model.User;
+import com.example.ethreader.repository.BackfillJobRepository;
 import com.example.ethreader.repository.DepositTransactionRepository;
 import com.example.ethreader.repository.HotWalletRepository;
+import com.example.ethreader.service.BackfillService;
+import com.example.ethreader.service.ChainHeadTracker;
+import com.example.ethreader.service.DepositIngestionService;
+import com.example.ethreader.service.DepositMonitorService;
+import com.example.ethreader.service.DepositOutboxService;
+import com.example.ethreader.service.DepositProcessorService;
+import com.example.ethreader.service.LeaderElectionService;
+import com.example.ethreader.service.MonitoredAddressIndex;
+import com.example.ethreader.service.PartitionLeaseService;
 import com.example.ethreader.service.TransactionService;
 import com.example.ethreader.service.UserService;
 import com.example.ethreader.service.WalletService;
+import com.example.ethreader.util.SeenKeyCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -37,10 +51,13 @@ public class AdminController {
     private HotWalletRepository hotWalletRepository;
 
     @Autowired
-    private TransactionService transactionService;
+    private DepositTransactionRepository depositTransactionRepository;
 
     @Autowired
-    private DepositTransactionRepository depositTransactionRepository;
+    private BackfillJobRepository backfillJobRepository;
+
+    @Autowired
+    private ChainRegistry chainRegistry;
 
     private boolean isAdmin(Authentication authentication) {
         try {
@@ -151,7 +168,8 @@ public class AdminController {
                 
                 // Get balance
                 try {
-                    BigInteger balance = transactionService.getBalance(wallet.getAddress());
+                    BigInteger balance = chainRegistry.getService(wallet.getChain(), TransactionService.class)
+                            .getBalance(wallet.getAddress());
                     response.setBalance(balance);
                 } catch (Exception e) {
                     response.setBalance(BigInteger.ZERO);
@@ -209,7 +227,8 @@ public class AdminController {
             
             // Get balance
             try {
-                BigInteger balance = transactionService.getBalance(wallet.getAddress());
+                BigInteger balance = chainRegistry.getService(wallet.getChain(), TransactionService.class)
+                        .getBalance(wallet.getAddress());
                 response.setBalance(balance);
             } catch (Exception e) {
                 response.setBalance(BigInteger.ZERO);
@@ -251,7 +270,9 @@ public class AdminController {
                 privateKey = String.format("%064s", privateKey).replace(' ', '0');
             }
 
-            // Send transaction
+            // Send transaction through the wallet's chain
+            TransactionService transactionService =
+                    chainRegistry.getService(wallet.getChain(), TransactionService.class);
             String transactionHash;
             if (request.getTokenAddress() == null || request.getTokenAddress().isEmpty()) {
                 // Native ETH transfer
@@ -311,6 +332,231 @@ public class AdminController {
         }
     }
 
+    // Deposit Monitor Status
+    @GetMapping("/monitor")
+    public ResponseEntity<?> getMonitorStatus(Authentication authentication) {
+        try {
+            if (!isAdmin(authentication)) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Access denied. Admin role required.");
+                return ResponseEntity.status(403).body(error);
+            }
+
+            return ResponseEntity.ok(convertToMonitorStatusResponse(chainRegistry.getPrimaryChain()));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    // Historical Backfill
+    @PostMapping("/backfill")
+    public ResponseEntity<?> startBackfill(@RequestBody BackfillRequest request, Authentication authentication) {
+        try {
+            if (!isAdmin(authentication)) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Access denied. Admin role required.");
+                return ResponseEntity.status(403).body(error);
+            }
+
+            if (request.getFromBlock() == null || request.getToBlock() == null) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "fromBlock and toBlock are required");
+                return ResponseEntity.badRequest().body(error);
+            }
+
+            BackfillJob job = chainRegistry.getService(request.getChain(), BackfillService.class).startBackfill(
+                    request.getFromBlock(), request.getToBlock(), request.getAddresses());
+            return ResponseEntity.ok(convertToBackfillJobResponse(job));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/backfill")
+    public ResponseEntity<?> getBackfillJobs(Authentication authentication) {
+        try {
+            if (!isAdmin(authentication)) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Access denied. Admin role required.");
+                return ResponseEntity.status(403).body(error);
+            }
+
+            List<BackfillJobResponse> responses = chainRegistry.getChainNames().stream()
+                    .flatMap(chain -> chainRegistry.getService(chain, BackfillService.class).getJobs().stream())
+                    .map(this::convertToBackfillJobResponse)
+                    .collect(Collectors.toList());
+
+            return ResponseEntity.ok(responses);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/backfill/{jobId}")
+    public ResponseEntity<?> getBackfillJob(@PathVariable String jobId, Authentication authentication) {
+        try {
+            if (!isAdmin(authentication)) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Access denied. Admin role required.");
+                return ResponseEntity.status(403).body(error);
+            }
+
+            BackfillJob job = backfillServiceFor(jobId).getJob(jobId)
+                    .orElseThrow(() -> new RuntimeException("Backfill job not found"));
+
+            return ResponseEntity.ok(convertToBackfillJobResponse(job));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/backfill/{jobId}/cancel")
+    public ResponseEntity<?> cancelBackfill(@PathVariable String jobId, Authentication authentication) {
+        try {
+            if (!isAdmin(authentication)) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Access denied. Admin role required.");
+                return ResponseEntity.status(403).body(error);
+            }
+
+            return ResponseEntity.ok(convertToBackfillJobResponse(backfillServiceFor(jobId).cancelBackfill(jobId)));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @PostMapping("/backfill/{jobId}/resume")
+    public ResponseEntity<?> resumeBackfill(@PathVariable String jobId, Authentication authentication) {
+        try {
+            if (!isAdmin(authentication)) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Access denied. Admin role required.");
+                return ResponseEntity.status(403).body(error);
+            }
+
+            return ResponseEntity.ok(convertToBackfillJobResponse(backfillServiceFor(jobId).resumeBackfill(jobId)));
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    private BackfillService backfillServiceFor(String jobId) {
+        BackfillJob job = backfillJobRepository.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Backfill job not found"));
+        return chainRegistry.getService(job.getChain(), BackfillService.class);
+    }
+
+    private BackfillJobResponse convertToBackfillJobResponse(BackfillJob job) {
+        BackfillJobResponse response = new BackfillJobResponse();
+        response.setId(job.getId());
+        response.setChain(chainRegistry.resolveChain(job.getChain()));
+        response.setFromBlock(job.getFromBlock());
+        response.setToBlock(job.getToBlock());
+        response.setAddressCount(job.getAddresses() != null ? job.getAddresses().size() : 0);
+        response.setStatus(job.getStatus());
+        response.setSegments(job.getSegments() != null ? job.getSegments().size() : 0);
+        response.setCompletedSegments(job.getSegments() != null
+                ? (int) job.getSegments().stream().filter(BackfillJob.Segment::isDone).count() : 0);
+        response.setScannedBlocks(job.getScannedBlocks());
+        response.setTotalBlocks(job.getToBlock() - job.getFromBlock() + 1);
+        response.setBlocksPerSecond(chainRegistry.getService(job.getChain(), BackfillService.class)
+                .getBlocksPerSecond(job.getId()));
+        response.setDepositsFound(job.getDepositsFound());
+        response.setError(job.getError());
+        response.setCreatedAt(job.getCreatedAt());
+        response.setFinishedAt(job.getFinishedAt());
+        return response;
+    }
+
+    @GetMapping("/monitor/chains")
+    public ResponseEntity<?> getChainMonitorStatus(Authentication authentication) {
+        try {
+            if (!isAdmin(authentication)) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Access denied. Admin role required.");
+                return ResponseEntity.status(403).body(error);
+            }
+
+            List<MonitorStatusResponse> responses = chainRegistry.getChainNames().stream()
+                    .map(this::convertToMonitorStatusResponse)
+                    .collect(Collectors.toList());
+
+            return ResponseEntity.ok(responses);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    private MonitorStatusResponse convertToMonitorStatusResponse(String chain) {
+        DepositMonitorService depositMonitorService = chainRegistry.getService(chain, DepositMonitorService.class);
+        MonitorStatusResponse response = new MonitorStatusResponse();
+        response.setChain(chain);
+        response.setLastScannedBlock(depositMonitorService.getLastScannedBlock());
+        ChainHeadTracker chainHeadTracker = chainRegistry.getService(chain, ChainHeadTracker.class);
+        response.setHeadBlock(chainHeadTracker.getHead());
+        response.setSafeBlock(chainHeadTracker.getSafeBlock());
+        response.setFinalizedBlock(chainHeadTracker.getFinalizedBlock());
+        response.setBlocksPerSecond(depositMonitorService.getBlocksPerSecond());
+        response.setInFlightBlocks(depositMonitorService.getInFlightBlocks());
+        response.setPipelineWindow(depositMonitorService.getPipelineWindow());
+        response.setMonitoredAddresses(chainRegistry.getService(chain, MonitoredAddressIndex.class).size());
+        response.setQueuedDeposits(chainRegistry.getService(chain, DepositOutboxService.class).getBacklog());
+        SeenKeyCache seenDeposits = chainRegistry.getService(chain, DepositIngestionService.class).getSeenDeposits();
+        response.setSeenCacheHits(seenDeposits.getHits());
+        response.setSeenCacheMisses(seenDeposits.getMisses());
+        PartitionLeaseService partitionLeaseService = chainRegistry.getService(chain, PartitionLeaseService.class);
+        if (partitionLeaseService.isSharded()) {
+            response.setNodeId(partitionLeaseService.getNodeId());
+        }
+        response.setLeader(chainRegistry.getService(chain, LeaderElectionService.class).isLeader());
+        response.setOwnedPartitions(partitionLeaseService.getOwnedPartitionCount());
+        response.setPartitions(partitionLeaseService.getPartitionCount());
+        response.setProcessorWorkers(chainRegistry.getService(chain, DepositProcessorService.class).getWorkers().stream()
+                .map(this::convertToProcessorWorkerStatus)
+                .collect(Collectors.toList()));
+        response.setRpcEndpoints(chainRegistry.getService(chain, RpcEndpointPool.class).getEndpoints().stream()
+                .map(this::convertToRpcEndpointStatus)
+                .collect(Collectors.toList()));
+        return response;
+    }
+
+    private ProcessorWorkerStatus convertToProcessorWorkerStatus(DepositProcessorService.Worker worker) {
+        ProcessorWorkerStatus status = new ProcessorWorkerStatus();
+        status.setPartition(worker.getPartition());
+        status.setQueueDepth(worker.getQueueDepth());
+        status.setProcessed(worker.getProcessed());
+        status.setLatencyMs(worker.getLatencyMs());
+        return status;
+    }
+
+    private RpcEndpointStatus convertToRpcEndpointStatus(RpcEndpointPool.Endpoint endpoint) {
+        RpcEndpointStatus status = new RpcEndpointStatus();
+        status.setName(endpoint.getName());
+        status.setHealthy(endpoint.isHealthy());
+        status.setLatencyMs(endpoint.getLatencyMs());
+        status.setErrorRate(endpoint.getErrorRate());
+        status.setInFlight(endpoint.getInFlight());
+        status.setMaxConcurrent(endpoint.getMaxConcurrent());
+        status.setRequests(endpoint.getRequests());
+        status.setFailures(endpoint.getFailures());
+        status.setHedges(endpoint.getHedges());
+        return status;
+    }
+
     private DepositResponse convertToDepositResponse(DepositTransaction deposit) {
         DepositResponse response = new DepositResponse();
         response.setId(deposit.getId());
@@ -320,7 +566,8 @@ public class AdminController {
         response.setAmount(deposit.getAmount());
         response.setTokenAddress(deposit.getTokenAddress());
         response.setBlockNumber(deposit.getBlockNumber());
-        response.setConfirmations(deposit.getConfirmations());
+        response.setConfirmations(chainRegistry.getService(deposit.getChain(), ChainHeadTracker.class)
+                .getConfirmations(deposit));
         response.setStatus(deposit.getStatus());
         response.setCreatedAt(deposit.getCreatedAt());
         response.setProcessedAt(deposit.getProcessedAt());
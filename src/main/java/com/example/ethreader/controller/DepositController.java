@@ -1,11 +1,13 @@
 package com.example.ethreader.controller;
 
+import com.example.ethreader.config.ChainRegistry;
 import com.example.ethreader.dto.AddressResponse;
 import com.example.ethreader.dto.DepositResponse;
 import com.example.ethreader.dto.GenerateWalletRequest;
 import com.example.ethreader.model.DepositTransaction;
 import com.example.ethreader.model.HotWallet;
 import com.example.ethreader.repository.DepositTransactionRepository;
+import com.example.ethreader.service.ChainHeadTracker;
 import com.example.ethreader.service.UserService;
 import com.example.ethreader.service.WalletService;
 import com.google.zxing.BarcodeFormat;
@@ -41,6 +43,9 @@ public class DepositController {
     @Autowired
     private DepositTransactionRepository depositTransactionRepository;
 
+    @Autowired
+    private ChainRegistry chainRegistry;
+
     private String getCurrentUserId(Authentication authentication) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
         return userService.findByUsername(userDetails.getUsername())
@@ -188,7 +193,8 @@ public class DepositController {
         response.setAmount(deposit.getAmount());
         response.setTokenAddress(deposit.getTokenAddress());
         response.setBlockNumber(deposit.getBlockNumber());
-        response.setConfirmations(deposit.getConfirmations());
+        response.setConfirmations(chainRegistry.getService(deposit.getChain(), ChainHeadTracker.class)
+                .getConfirmations(deposit));
         response.setStatus(deposit.getStatus());
         response.setCreatedAt(deposit.getCreatedAt());
         response.setProcessedAt(deposit.getProcessedAt());
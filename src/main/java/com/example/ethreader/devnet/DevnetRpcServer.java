@@ -0,0 +1,428 @@
+package com.example.ethreader.devnet;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Minimal Ethereum JSON-RPC server over a SyntheticChain, for load-testing the deposit scanner and
+// processor without a real node. Supports single and batch requests for the calls this
+// application makes; everything else answers with "method not found".
+public class DevnetRpcServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(DevnetRpcServer.class);
+    private static final String TRANSFER_EVENT_SIGNATURE = "0xddf252ad1be2c89b69c2b068fc378daa952ba7f163c4a11628f55a4df523b3ef";
+    private static final String EMPTY_BLOOM = "0x" + "0".repeat(512);
+    private static final String ZERO_HASH = "0x" + "0".repeat(64);
+
+    private final SyntheticChain chain;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public DevnetRpcServer(SyntheticChain chain) {
+        this.chain = chain;
+    }
+
+    public void start() throws IOException {
+        DevnetSettings settings = chain.getSettings();
+        server = HttpServer.create(new InetSocketAddress(settings.getPort()), 256);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, settings.getThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "DevnetRpc-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        logger.info("Devnet JSON-RPC server listening on port {} ({} blocks/s, {} txs/block, {} recipients)",
+                settings.getPort(), settings.getBlocksPerSecond(), settings.getTransactionsPerBlock(),
+                chain.getRecipients().size());
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+            try (JsonGenerator out = objectMapper.getFactory().createGenerator(body, JsonEncoding.UTF8)) {
+                if (request.isArray()) {
+                    out.writeStartArray();
+                    for (JsonNode call : request) {
+                        writeResponse(call, out);
+                    }
+                    out.writeEndArray();
+                } else {
+                    writeResponse(request, out);
+                }
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                body.writeTo(responseBody);
+            }
+        } catch (Exception e) {
+            logger.warn("Devnet request failed", e);
+            exchange.sendResponseHeaders(400, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void writeResponse(JsonNode call, JsonGenerator out) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("jsonrpc", "2.0");
+        out.writeFieldName("id");
+        objectMapper.writeTree(out, call.path("id"));
+        String method = call.path("method").asText();
+        JsonNode params = call.path("params");
+        try {
+            switch (method) {
+                case "eth_blockNumber":
+                    out.writeStringField("result", quantity(chain.getHead()));
+                    break;
+                case "eth_chainId":
+                    out.writeStringField("result", quantity(chain.getSettings().getChainId()));
+                    break;
+                case "net_version":
+                    out.writeStringField("result", String.valueOf(chain.getSettings().getChainId()));
+                    break;
+                case "eth_getBlockByNumber": {
+                    SyntheticChain.Block block = chain.getBlock(blockNumber(params.path(0)));
+                    out.writeFieldName("result");
+                    if (block == null) {
+                        out.writeNull();
+                    } else {
+                        writeBlock(block, params.path(1).asBoolean(false), out);
+                    }
+                    break;
+                }
+                case "eth_getBlockReceipts": {
+                    SyntheticChain.Block block = chain.getBlock(blockNumber(params.path(0)));
+                    out.writeFieldName("result");
+                    if (block == null) {
+                        out.writeNull();
+                    } else {
+                        out.writeStartArray();
+                        for (SyntheticChain.Transaction tx : block.getTransactions()) {
+                            writeReceipt(tx, out);
+                        }
+                        out.writeEndArray();
+                    }
+                    break;
+                }
+                case "eth_getTransactionReceipt": {
+                    SyntheticChain.Transaction tx = chain.getTransaction(params.path(0).asText());
+                    out.writeFieldName("result");
+                    if (tx == null) {
+                        out.writeNull();
+                    } else {
+                        writeReceipt(tx, out);
+                    }
+                    break;
+                }
+                case "eth_getLogs":
+                    if (!writeLogs(params.path(0), out)) {
+                        writeError(out, -32005, "query exceeds max block range " + chain.getSettings().getMaxLogRange());
+                    }
+                    break;
+                case "eth_getBalance":
+                    // Stable pseudo-random balance per address
+                    out.writeStringField("result", quantity(BigInteger.valueOf(
+                            new Random(params.path(0).asText().toLowerCase().hashCode()).nextInt(1000) + 1)
+                            .multiply(BigInteger.TEN.pow(17))));
+                    break;
+                case "eth_getTransactionCount":
+                    out.writeStringField("result", "0x0");
+                    break;
+                case "eth_gasPrice":
+                    out.writeStringField("result", quantity(1_000_000_000L));
+                    break;
+                case "eth_estimateGas":
+                    out.writeStringField("result", quantity(params.path(0).path("data").asText("0x").length() > 2
+                            ? 65_000L : 21_000L));
+                    break;
+                case "eth_sendRawTransaction":
+                    // Accepted but never mined; the hash is the keccak of the signed payload
+                    out.writeStringField("result", Hash.sha3(params.path(0).asText()));
+                    break;
+                default:
+                    writeError(out, -32601, "the method " + method + " does not exist/is not available");
+            }
+        } catch (IllegalArgumentException e) {
+            writeError(out, -32602, e.getMessage());
+        }
+        out.writeEndObject();
+    }
+
+    private long blockNumber(JsonNode tag) {
+        String text = tag.asText("latest");
+        switch (text) {
+            case "latest":
+            case "pending":
+                return chain.getHead();
+            case "finalized":
+                return chain.getFinalized();
+            case "safe":
+                return chain.getSafe();
+            case "earliest":
+                return 0;
+            default:
+                if (!text.startsWith("0x")) {
+                    throw new IllegalArgumentException("invalid block number " + text);
+                }
+                return Numeric.decodeQuantity(text).longValueExact();
+        }
+    }
+
+    private void writeBlock(SyntheticChain.Block block, boolean fullTransactions, JsonGenerator out) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("number", quantity(block.getNumber()));
+        out.writeStringField("hash", block.getHash());
+        out.writeStringField("parentHash", block.getParentHash());
+        out.writeStringField("nonce", "0x0000000000000000");
+        out.writeStringField("sha3Uncles", ZERO_HASH);
+        out.writeStringField("logsBloom", EMPTY_BLOOM);
+        out.writeStringField("transactionsRoot", ZERO_HASH);
+        out.writeStringField("stateRoot", ZERO_HASH);
+        out.writeStringField("receiptsRoot", ZERO_HASH);
+        out.writeStringField("miner", "0x0000000000000000000000000000000000000000");
+        out.writeStringField("difficulty", "0x0");
+        out.writeStringField("totalDifficulty", "0x0");
+        out.writeStringField("extraData", "0x");
+        out.writeStringField("size", quantity(1000L + 150L * block.getTransactions().size()));
+        out.writeStringField("gasLimit", quantity(30_000_000L));
+        out.writeStringField("gasUsed", quantity(21_000L * block.getTransactions().size()));
+        out.writeStringField("timestamp", quantity(block.getTimestamp()));
+        out.writeStringField("baseFeePerGas", quantity(1_000_000_000L));
+        out.writeArrayFieldStart("transactions");
+        for (SyntheticChain.Transaction tx : block.getTransactions()) {
+            if (fullTransactions) {
+                writeTransaction(tx, out);
+            } else {
+                out.writeString(tx.getHash());
+            }
+        }
+        out.writeEndArray();
+        out.writeArrayFieldStart("uncles");
+        out.writeEndArray();
+        out.writeEndObject();
+    }
+
+    private void writeTransaction(SyntheticChain.Transaction tx, JsonGenerator out) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("hash", tx.getHash());
+        out.writeStringField("nonce", quantity(tx.getIndex()));
+        out.writeStringField("blockHash", tx.getBlock().getHash());
+        out.writeStringField("blockNumber", quantity(tx.getBlock().getNumber()));
+        out.writeStringField("transactionIndex", quantity(tx.getIndex()));
+        out.writeStringField("from", tx.getFrom());
+        out.writeStringField("to", tx.getTo());
+        out.writeStringField("value", quantity(tx.getValue()));
+        out.writeStringField("gas", quantity(tx.getTokenRecipient() != null ? 65_000L : 21_000L));
+        out.writeStringField("gasPrice", quantity(1_000_000_000L));
+        out.writeStringField("input", tx.getInput());
+        out.writeStringField("type", "0x0");
+        out.writeStringField("v", "0x1b");
+        out.writeStringField("r", "0x1");
+        out.writeStringField("s", "0x1");
+        out.writeEndObject();
+    }
+
+    private void writeReceipt(SyntheticChain.Transaction tx, JsonGenerator out) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("transactionHash", tx.getHash());
+        out.writeStringField("transactionIndex", quantity(tx.getIndex()));
+        out.writeStringField("blockHash", tx.getBlock().getHash());
+        out.writeStringField("blockNumber", quantity(tx.getBlock().getNumber()));
+        out.writeStringField("from", tx.getFrom());
+        out.writeStringField("to", tx.getTo());
+        out.writeStringField("cumulativeGasUsed", quantity(21_000L * (tx.getIndex() + 1)));
+        out.writeStringField("gasUsed", quantity(21_000L));
+        out.writeStringField("effectiveGasPrice", quantity(1_000_000_000L));
+        out.writeNullField("contractAddress");
+        out.writeStringField("logsBloom", EMPTY_BLOOM);
+        out.writeStringField("status", tx.isFailed() ? "0x0" : "0x1");
+        out.writeStringField("type", "0x0");
+        out.writeArrayFieldStart("logs");
+        if (tx.hasTransferLog()) {
+            writeLog(tx, out);
+        }
+        out.writeEndArray();
+        out.writeEndObject();
+    }
+
+    private void writeLog(SyntheticChain.Transaction tx, JsonGenerator out) throws IOException {
+        out.writeStartObject();
+        out.writeStringField("address", tx.getTo());
+        out.writeArrayFieldStart("topics");
+        out.writeString(TRANSFER_EVENT_SIGNATURE);
+        out.writeString(addressTopic(tx.getFrom()));
+        out.writeString(addressTopic(tx.getTokenRecipient()));
+        out.writeEndArray();
+        out.writeStringField("data", String.format("0x%064x", tx.getAmount()));
+        out.writeStringField("blockNumber", quantity(tx.getBlock().getNumber()));
+        out.writeStringField("blockHash", tx.getBlock().getHash());
+        out.writeStringField("transactionHash", tx.getHash());
+        out.writeStringField("transactionIndex", quantity(tx.getIndex()));
+        out.writeStringField("logIndex", quantity(tx.getLogIndex()));
+        out.writeBooleanField("removed", false);
+        out.writeEndObject();
+    }
+
+    // False when the range is larger than the configured limit (mimics provider caps)
+    private boolean writeLogs(JsonNode filter, JsonGenerator out) throws IOException {
+        long from = blockNumber(filter.path("fromBlock"));
+        long to = Math.min(blockNumber(filter.path("toBlock")), chain.getHead());
+        if (to - from + 1 > chain.getSettings().getMaxLogRange()) {
+            return false;
+        }
+        Set<String> addresses = lowercaseSet(filter.path("address"));
+        JsonNode topics = filter.path("topics");
+        List<Set<String>> topicFilters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            topicFilters.add(lowercaseSet(topics.path(i)));
+        }
+
+        out.writeArrayFieldStart("result");
+        for (long number = from; number <= to; number++) {
+            SyntheticChain.Block block = chain.getBlock(number);
+            for (SyntheticChain.Transaction tx : block.getTransactions()) {
+                if (!tx.hasTransferLog()
+                        || (!addresses.isEmpty() && !addresses.contains(tx.getTo()))
+                        || !matches(topicFilters.get(0), TRANSFER_EVENT_SIGNATURE)
+                        || !matches(topicFilters.get(1), addressTopic(tx.getFrom()))
+                        || !matches(topicFilters.get(2), addressTopic(tx.getTokenRecipient()))) {
+                    continue;
+                }
+                writeLog(tx, out);
+            }
+        }
+        out.writeEndArray();
+        return true;
+    }
+
+    private static boolean matches(Set<String> allowed, String value) {
+        return allowed.isEmpty() || allowed.contains(value);
+    }
+
+    // A filter position may be null (any), a single value or a list of alternatives
+    private static Set<String> lowercaseSet(JsonNode node) {
+        Set<String> values = new HashSet<>();
+        if (node.isTextual()) {
+            values.add(node.asText().toLowerCase());
+        } else if (node.isArray()) {
+            for (JsonNode value : node) {
+                if (value.isTextual()) {
+                    values.add(value.asText().toLowerCase());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static String addressTopic(String address) {
+        return "0x000000000000000000000000" + address.substring(2).toLowerCase();
+    }
+
+    private static void writeError(JsonGenerator out, int code, String message) throws IOException {
+        out.writeObjectFieldStart("error");
+        out.writeNumberField("code", code);
+        out.writeStringField("message", message);
+        out.writeEndObject();
+    }
+
+    private static String quantity(long value) {
+        return "0x" + Long.toHexString(value);
+    }
+
+    private static String quantity(BigInteger value) {
+        return "0x" + value.toString(16);
+    }
+
+    // Standalone entry point for benchmarking on a separate host or in CI. Arguments are key=value
+    // pairs matching DevnetSettings, plus recipients=addr1,addr2 or recipients=<count> to generate
+    // that many random deposit addresses.
+    public static void main(String[] args) throws Exception {
+        DevnetSettings settings = new DevnetSettings();
+        List<String> recipients = new ArrayList<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String key = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            switch (key) {
+                case "port" -> settings.setPort(Integer.parseInt(value));
+                case "threads" -> settings.setThreads(Integer.parseInt(value));
+                case "seed" -> settings.setSeed(Long.parseLong(value));
+                case "startBlock" -> settings.setStartBlock(Long.parseLong(value));
+                case "blocksPerSecond" -> settings.setBlocksPerSecond(Double.parseDouble(value));
+                case "transactionsPerBlock" -> settings.setTransactionsPerBlock(Integer.parseInt(value));
+                case "depositRatio" -> settings.setDepositRatio(Double.parseDouble(value));
+                case "tokenRatio" -> settings.setTokenRatio(Double.parseDouble(value));
+                case "failureRatio" -> settings.setFailureRatio(Double.parseDouble(value));
+                case "reorgRate" -> settings.setReorgRate(Double.parseDouble(value));
+                case "maxReorgDepth" -> settings.setMaxReorgDepth(Integer.parseInt(value));
+                case "tokens" -> settings.setTokens(List.of(value.toLowerCase().split(",")));
+                case "recipients" -> recipients = parseRecipients(value, settings.getSeed());
+                default -> logger.warn("Unknown devnet argument: {}", key);
+            }
+        }
+        SyntheticChain chain = new SyntheticChain(settings);
+        chain.setRecipients(recipients);
+        new DevnetRpcServer(chain).start();
+        Thread.currentThread().join();
+    }
+
+    private static List<String> parseRecipients(String value, long seed) {
+        List<String> recipients = new ArrayList<>();
+        if (value.matches("\\d+")) {
+            Random random = new Random(seed);
+            for (int i = 0; i < Integer.parseInt(value); i++) {
+                byte[] address = new byte[20];
+                random.nextBytes(address);
+                recipients.add(Numeric.toHexString(address));
+            }
+        } else {
+            for (String address : value.split(",")) {
+                recipients.add(address.trim().toLowerCase());
+            }
+        }
+        return recipients;
+    }
+}
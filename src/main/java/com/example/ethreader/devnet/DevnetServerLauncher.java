@@ -0,0 +1,147 @@
+package com.example.ethreader.devnet;
+
+import com.example.ethreader.service.MonitoredAddressIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Runs the devnet JSON-RPC server inside the application for offline load tests. Generated
+// deposits are paid to the monitored addresses, refreshed periodically from the address index,
+// so pointing web3j.rpc.url at the devnet exercises the full scan and processing pipeline.
+@Component
+@ConditionalOnProperty(name = "devnet.enabled", havingValue = "true")
+public class DevnetServerLauncher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DevnetServerLauncher.class);
+
+    @Autowired
+    private MonitoredAddressIndex monitoredAddressIndex;
+
+    @Value("${devnet.port:8545}")
+    private int port;
+
+    @Value("${devnet.threads:8}") // HTTP worker threads
+    private int threads;
+
+    @Value("${devnet.seed:1}") // Same seed, same chain
+    private long seed;
+
+    @Value("${devnet.start.block:0}")
+    private long startBlock;
+
+    @Value("${devnet.blocks.per.second:1.0}")
+    private double blocksPerSecond;
+
+    @Value("${devnet.transactions.per.block:100}")
+    private int transactionsPerBlock;
+
+    @Value("${devnet.deposit.ratio:0.05}") // Share of transactions paying a monitored address
+    private double depositRatio;
+
+    @Value("${devnet.token.ratio:0.5}") // Share of transactions that are ERC-20 transfers
+    private double tokenRatio;
+
+    @Value("${devnet.failure.ratio:0.01}") // Share of transactions that revert
+    private double failureRatio;
+
+    @Value("${devnet.reorg.rate:0}") // Probability per block of a reorg
+    private double reorgRate;
+
+    @Value("${devnet.reorg.max.depth:3}")
+    private int maxReorgDepth;
+
+    @Value("${devnet.finality.depth:64}") // Blocks behind head reported as finalized
+    private int finalityDepth;
+
+    @Value("${devnet.logs.max.range:10000}") // eth_getLogs block range limit
+    private int maxLogRange;
+
+    @Value("${devnet.tokens:}") // Token contract addresses, comma separated; empty = built-in defaults
+    private String tokens;
+
+    @Value("${devnet.recipients.max:10000}") // Monitored addresses used as deposit targets
+    private int maxRecipients;
+
+    @Value("${devnet.recipients.refresh:60000}") // ms between recipient refreshes
+    private long recipientRefreshMs;
+
+    private SyntheticChain chain;
+    private DevnetRpcServer server;
+    private Thread refreshThread;
+
+    @PostConstruct
+    public void start() throws IOException {
+        DevnetSettings settings = new DevnetSettings();
+        settings.setPort(port);
+        settings.setThreads(threads);
+        settings.setSeed(seed);
+        settings.setStartBlock(startBlock);
+        settings.setBlocksPerSecond(blocksPerSecond);
+        settings.setTransactionsPerBlock(transactionsPerBlock);
+        settings.setDepositRatio(depositRatio);
+        settings.setTokenRatio(tokenRatio);
+        settings.setFailureRatio(failureRatio);
+        settings.setReorgRate(reorgRate);
+        settings.setMaxReorgDepth(maxReorgDepth);
+        settings.setFinalityDepth(finalityDepth);
+        settings.setMaxLogRange(maxLogRange);
+        if (tokens != null && !tokens.isBlank()) {
+            settings.setTokens(Arrays.stream(tokens.split(","))
+                    .map(String::trim).filter(s -> !s.isEmpty()).map(String::toLowerCase).toList());
+        }
+
+        chain = new SyntheticChain(settings);
+        server = new DevnetRpcServer(chain);
+        server.start();
+
+        // Recipients come from MongoDB via the index, so load them off the startup path
+        refreshThread = new Thread(this::refreshRecipients, "DevnetRecipients");
+        refreshThread.setDaemon(true);
+        refreshThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refreshThread != null) {
+            refreshThread.interrupt();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private void refreshRecipients() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                monitoredAddressIndex.ensureLoaded();
+                List<String> recipients = new ArrayList<>();
+                monitoredAddressIndex.getAddresses().forEach(address -> {
+                    if (recipients.size() < maxRecipients) {
+                        recipients.add(address);
+                    }
+                });
+                if (recipients.size() != chain.getRecipients().size()) {
+                    logger.info("Devnet now paying deposits to {} monitored addresses", recipients.size());
+                }
+                chain.setRecipients(recipients);
+            } catch (Exception e) {
+                logger.warn("Failed to refresh devnet recipients: {}", e.getMessage());
+            }
+            try {
+                Thread.sleep(recipientRefreshMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
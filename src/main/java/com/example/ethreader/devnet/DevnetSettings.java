@@ -0,0 +1,154 @@
+package com.example.ethreader.devnet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Parameters of the synthetic chain served by the devnet JSON-RPC server
+public class DevnetSettings {
+    private int port = 8545;
+    private int threads = 8;
+    private long seed = 1;
+    private long chainId = 1337;
+    private long startBlock = 0;
+    private double blocksPerSecond = 1.0;
+    private int transactionsPerBlock = 100;
+    private double depositRatio = 0.05; // Share of transactions paying a deposit address
+    private double tokenRatio = 0.5; // Share of deposits (and noise) that are ERC-20 transfers
+    private double failureRatio = 0.01; // Share of transactions that revert
+    private double reorgRate = 0.0; // Probability that a new block replaces some of its ancestors
+    private int maxReorgDepth = 3;
+    private int finalityDepth = 64;
+    private int maxLogRange = 10000;
+    private int retainedBlocks = 4096;
+    private List<String> tokens = new ArrayList<>(List.of(
+            "0x1c7d4b196cb0c7b01d743fbc6116a902379c7238",
+            "0xaa8e23fb1079ea71e0a56f48a2aa51851d8433d0"));
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getChainId() {
+        return chainId;
+    }
+
+    public void setChainId(long chainId) {
+        this.chainId = chainId;
+    }
+
+    public long getStartBlock() {
+        return startBlock;
+    }
+
+    public void setStartBlock(long startBlock) {
+        this.startBlock = startBlock;
+    }
+
+    public double getBlocksPerSecond() {
+        return blocksPerSecond;
+    }
+
+    public void setBlocksPerSecond(double blocksPerSecond) {
+        this.blocksPerSecond = blocksPerSecond;
+    }
+
+    public int getTransactionsPerBlock() {
+        return transactionsPerBlock;
+    }
+
+    public void setTransactionsPerBlock(int transactionsPerBlock) {
+        this.transactionsPerBlock = transactionsPerBlock;
+    }
+
+    public double getDepositRatio() {
+        return depositRatio;
+    }
+
+    public void setDepositRatio(double depositRatio) {
+        this.depositRatio = depositRatio;
+    }
+
+    public double getTokenRatio() {
+        return tokenRatio;
+    }
+
+    public void setTokenRatio(double tokenRatio) {
+        this.tokenRatio = tokenRatio;
+    }
+
+    public double getFailureRatio() {
+        return failureRatio;
+    }
+
+    public void setFailureRatio(double failureRatio) {
+        this.failureRatio = failureRatio;
+    }
+
+    public double getReorgRate() {
+        return reorgRate;
+    }
+
+    public void setReorgRate(double reorgRate) {
+        this.reorgRate = reorgRate;
+    }
+
+    public int getMaxReorgDepth() {
+        return maxReorgDepth;
+    }
+
+    public void setMaxReorgDepth(int maxReorgDepth) {
+        this.maxReorgDepth = maxReorgDepth;
+    }
+
+    public int getFinalityDepth() {
+        return finalityDepth;
+    }
+
+    public void setFinalityDepth(int finalityDepth) {
+        this.finalityDepth = finalityDepth;
+    }
+
+    public int getMaxLogRange() {
+        return maxLogRange;
+    }
+
+    public void setMaxLogRange(int maxLogRange) {
+        this.maxLogRange = maxLogRange;
+    }
+
+    public int getRetainedBlocks() {
+        return retainedBlocks;
+    }
+
+    public void setRetainedBlocks(int retainedBlocks) {
+        this.retainedBlocks = retainedBlocks;
+    }
+
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(List<String> tokens) {
+        this.tokens = tokens;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.ethreader.devnet;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Deterministic synthetic chain. The head advances with wall-clock time at the configured block
+// rate, and every block is derived from (seed, number, version), so nothing but a small cache of
+// recent blocks is kept in memory. A block's version counts the reorgs that replaced it: a new
+// block e may, with probability reorgRate, replace its last 1..maxReorgDepth ancestors, which is
+// also a pure function of the seed. Hashes encode number, version and index so that lookups by
+// hash need no index.
+public class SyntheticChain {
+
+    private static final String ZERO_HASH = "0x" + "0".repeat(64);
+    private static final long REORG_SALT = 0x5EED_0F_C4A1L;
+
+    private final DevnetSettings settings;
+    private final long startMillis = System.currentTimeMillis();
+    private volatile List<String> recipients = Collections.emptyList();
+    private final Map<String, Block> retained;
+
+    public SyntheticChain(DevnetSettings settings) {
+        this.settings = settings;
+        this.retained = Collections.synchronizedMap(new LinkedHashMap<String, Block>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Block> eldest) {
+                return size() > settings.getRetainedBlocks();
+            }
+        });
+    }
+
+    // Deposit addresses that generated deposits are paid to (lowercase, 0x-prefixed). Blocks not
+    // retained when this changes are regenerated with the new list.
+    public void setRecipients(List<String> recipients) {
+        this.recipients = List.copyOf(recipients);
+    }
+
+    public List<String> getRecipients() {
+        return recipients;
+    }
+
+    public long getHead() {
+        double elapsedSeconds = (System.currentTimeMillis() - startMillis) / 1000.0;
+        return settings.getStartBlock() + (long) (elapsedSeconds * settings.getBlocksPerSecond());
+    }
+
+    public long getFinalized() {
+        return Math.max(0, getHead() - settings.getFinalityDepth());
+    }
+
+    public long getSafe() {
+        return Math.max(0, getHead() - settings.getFinalityDepth() / 2);
+    }
+
+    public DevnetSettings getSettings() {
+        return settings;
+    }
+
+    // Canonical block at the given height, or null above the head
+    public Block getBlock(long number) {
+        long head = getHead();
+        if (number < 0 || number > head) {
+            return null;
+        }
+        int version = versionOf(number, head);
+        String key = number + ":" + version;
+        Block block = retained.get(key);
+        if (block == null) {
+            block = generate(number, version, head);
+            retained.put(key, block);
+        }
+        return block;
+    }
+
+    // Transaction by hash, or null if it is unknown or was dropped by a reorg
+    public Transaction getTransaction(String hash) {
+        if (hash == null || hash.length() != 66) {
+            return null;
+        }
+        try {
+            long number = Long.parseUnsignedLong(hash.substring(2, 18), 16);
+            int version = (int) Long.parseLong(hash.substring(18, 26), 16);
+            int index = (int) Long.parseLong(hash.substring(26, 34), 16);
+            Block block = getBlock(number);
+            if (block == null || block.version != version || index >= block.transactions.size()) {
+                return null;
+            }
+            Transaction transaction = block.transactions.get(index);
+            return transaction.hash.equalsIgnoreCase(hash) ? transaction : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private int reorgDepthAt(long number) {
+        if (settings.getReorgRate() <= 0 || number <= settings.getStartBlock()) {
+            return 0;
+        }
+        Random random = new Random(mix(settings.getSeed() ^ REORG_SALT, number, 0));
+        if (random.nextDouble() >= settings.getReorgRate()) {
+            return 0;
+        }
+        return 1 + random.nextInt(Math.max(1, settings.getMaxReorgDepth()));
+    }
+
+    // Number of reorgs (as seen at the given head) that replaced the block at this height
+    private int versionOf(long number, long head) {
+        int version = 0;
+        long last = Math.min(head, number + settings.getMaxReorgDepth());
+        for (long event = number + 1; event <= last; event++) {
+            int depth = reorgDepthAt(event);
+            if (depth > 0 && event - depth <= number) {
+                version++;
+            }
+        }
+        return version;
+    }
+
+    private String blockHash(long number, int version) {
+        Random random = new Random(mix(settings.getSeed(), number, version));
+        return "0x" + hex(number, 16) + hex(version, 8) + hex(random.nextLong(), 16) + hex(random.nextLong(), 16)
+                + hex(random.nextLong(), 8);
+    }
+
+    private Block generate(long number, int version, long head) {
+        Block block = new Block();
+        block.number = number;
+        block.version = version;
+        block.hash = blockHash(number, version);
+        block.parentHash = number == 0 ? ZERO_HASH : blockHash(number - 1, versionOf(number - 1, head));
+        block.timestamp = startMillis / 1000
+                + (long) ((number - settings.getStartBlock()) / Math.max(settings.getBlocksPerSecond(), 0.001));
+
+        Random random = new Random(mix(settings.getSeed(), number, version) * 31 + 7);
+        List<String> payees = recipients;
+        List<String> tokens = settings.getTokens();
+        List<Transaction> transactions = new ArrayList<>(settings.getTransactionsPerBlock());
+        int logIndex = 0;
+        for (int i = 0; i < settings.getTransactionsPerBlock(); i++) {
+            Transaction tx = new Transaction();
+            tx.block = block;
+            tx.index = i;
+            tx.hash = "0x" + hex(number, 16) + hex(version, 8) + hex(i, 8) + hex(random.nextLong(), 16)
+                    + hex(random.nextLong(), 16);
+            tx.from = randomAddress(random);
+            tx.failed = random.nextDouble() < settings.getFailureRatio();
+            boolean deposit = !payees.isEmpty() && random.nextDouble() < settings.getDepositRatio();
+            boolean token = !tokens.isEmpty() && random.nextDouble() < settings.getTokenRatio();
+            String payee = deposit ? payees.get(random.nextInt(payees.size())) : randomAddress(random);
+            tx.amount = BigInteger.valueOf(1 + random.nextInt(1_000_000)).multiply(BigInteger.TEN.pow(12));
+            if (token) {
+                tx.to = tokens.get(random.nextInt(tokens.size()));
+                tx.tokenRecipient = payee;
+                tx.value = BigInteger.ZERO;
+                tx.input = "0xa9059cbb" + "0".repeat(24) + payee.substring(2) + String.format("%064x", tx.amount);
+                if (!tx.failed) {
+                    tx.logIndex = logIndex++;
+                }
+            } else {
+                tx.to = payee;
+                tx.value = tx.amount;
+                tx.input = "0x";
+            }
+            transactions.add(tx);
+        }
+        block.transactions = Collections.unmodifiableList(transactions);
+        return block;
+    }
+
+    private static String randomAddress(Random random) {
+        return "0x" + hex(random.nextLong(), 16) + hex(random.nextLong(), 16) + hex(random.nextInt(), 8);
+    }
+
+    private static long mix(long seed, long number, long version) {
+        long h = seed * 0x9E3779B97F4A7C15L + number * 0xC2B2AE3D27D4EB4FL + version * 0x165667B19E3779F9L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static String hex(long value, int digits) {
+        String text = Long.toHexString(value);
+        if (text.length() > digits) {
+            return text.substring(text.length() - digits);
+        }
+        return "0".repeat(digits - text.length()) + text;
+    }
+
+    public static class Block {
+        private long number;
+        private int version;
+        private String hash;
+        private String parentHash;
+        private long timestamp;
+        private List<Transaction> transactions;
+
+        public long getNumber() {
+            return number;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getParentHash() {
+            return parentHash;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public List<Transaction> getTransactions() {
+            return transactions;
+        }
+    }
+
+    public static class Transaction {
+        private Block block;
+        private int index;
+        private String hash;
+        private String from;
+        private String to;
+        private BigInteger value;
+        private String input;
+        private String tokenRecipient; // null for native transfers
+        private BigInteger amount;
+        private boolean failed;
+        private int logIndex = -1; // Transfer log index in the block, -1 when there is no log
+
+        public Block getBlock() {
+            return block;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public BigInteger getValue() {
+            return value;
+        }
+
+        public String getInput() {
+            return input;
+        }
+
+        public String getTokenRecipient() {
+            return tokenRecipient;
+        }
+
+        public BigInteger getAmount() {
+            return amount;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+
+        public int getLogIndex() {
+            return logIndex;
+        }
+
+        public boolean hasTransferLog() {
+            return logIndex >= 0;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.ethreader.dto;
+
+import com.example.ethreader.model.BackfillJob;
+
+import java.time.LocalDateTime;
+
+public class BackfillJobResponse {
+    private String id;
+    private String chain;
+    private long fromBlock;
+    private long toBlock;
+    private int addressCount; // 0 = all monitored addresses
+    private BackfillJob.BackfillStatus status;
+    private int segments;
+    private int completedSegments;
+    private long scannedBlocks;
+    private long totalBlocks;
+    private double blocksPerSecond;
+    private long depositsFound;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+
+    public BackfillJobResponse() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getChain() {
+        return chain;
+    }
+
+    public void setChain(String chain) {
+        this.chain = chain;
+    }
+
+    public long getFromBlock() {
+        return fromBlock;
+    }
+
+    public void setFromBlock(long fromBlock) {
+        this.fromBlock = fromBlock;
+    }
+
+    public long getToBlock() {
+        return toBlock;
+    }
+
+    public void setToBlock(long toBlock) {
+        this.toBlock = toBlock;
+    }
+
+    public int getAddressCount() {
+        return addressCount;
+    }
+
+    public void setAddressCount(int addressCount) {
+        this.addressCount = addressCount;
+    }
+
+    public BackfillJob.BackfillStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BackfillJob.BackfillStatus status) {
+        this.status = status;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    public void setSegments(int segments) {
+        this.segments = segments;
+    }
+
+    public int getCompletedSegments() {
+        return completedSegments;
+    }
+
+    public void setCompletedSegments(int completedSegments) {
+        this.completedSegments = completedSegments;
+    }
+
+    public long getScannedBlocks() {
+        return scannedBlocks;
+    }
+
+    public void setScannedBlocks(long scannedBlocks) {
+        this.scannedBlocks = scannedBlocks;
+    }
+
+    public long getTotalBlocks() {
+        return totalBlocks;
+    }
+
+    public void setTotalBlocks(long totalBlocks) {
+        this.totalBlocks = totalBlocks;
+    }
+
+    public double getBlocksPerSecond() {
+        return blocksPerSecond;
+    }
+
+    public void setBlocksPerSecond(double blocksPerSecond) {
+        this.blocksPerSecond = blocksPerSecond;
+    }
+
+    public long getDepositsFound() {
+        return depositsFound;
+    }
+
+    public void setDepositsFound(long depositsFound) {
+        this.depositsFound = depositsFound;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
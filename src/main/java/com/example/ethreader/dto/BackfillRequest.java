@@ -0,0 +1,45 @@
+package com.example.ethreader.dto;
+
+import java.util.List;
+
+public class BackfillRequest {
+    private String chain; // Optional; defaults to the primary chain
+    private Long fromBlock;
+    private Long toBlock;
+    private List<String> addresses; // Optional; defaults to all monitored addresses
+
+    public BackfillRequest() {
+    }
+
+    public String getChain() {
+        return chain;
+    }
+
+    public void setChain(String chain) {
+        this.chain = chain;
+    }
+
+    public Long getFromBlock() {
+        return fromBlock;
+    }
+
+    public void setFromBlock(Long fromBlock) {
+        this.fromBlock = fromBlock;
+    }
+
+    public Long getToBlock() {
+        return toBlock;
+    }
+
+    public void setToBlock(Long toBlock) {
+        this.toBlock = toBlock;
+    }
+
+    public List<String> getAddresses() {
+        return addresses;
+    }
+
+    public void setAddresses(List<String> addresses) {
+        this.addresses = addresses;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.ethreader.dto;
+
+import java.math.BigInteger;
+import java.util.List;
+
+public class MonitorStatusResponse {
+    private String chain;
+    private BigInteger lastScannedBlock;
+    private BigInteger headBlock;
+    private BigInteger safeBlock;
+    private BigInteger finalizedBlock;
+    private double blocksPerSecond;
+    private int inFlightBlocks;
+    private int pipelineWindow;
+    private long monitoredAddresses;
+    private long queuedDeposits; // Unprocessed entries in the deposit queue
+    private long seenCacheHits; // Scanned deposits recognized without a MongoDB lookup
+    private long seenCacheMisses;
+    private String nodeId; // Sharded mode only
+    private boolean leader; // Always true outside leader mode
+    private int ownedPartitions;
+    private int partitions;
+    private List<ProcessorWorkerStatus> processorWorkers;
+    private List<RpcEndpointStatus> rpcEndpoints;
+
+    public MonitorStatusResponse() {
+    }
+
+    public String getChain() {
+        return chain;
+    }
+
+    public void setChain(String chain) {
+        this.chain = chain;
+    }
+
+    public BigInteger getLastScannedBlock() {
+        return lastScannedBlock;
+    }
+
+    public void setLastScannedBlock(BigInteger lastScannedBlock) {
+        this.lastScannedBlock = lastScannedBlock;
+    }
+
+    public BigInteger getHeadBlock() {
+        return headBlock;
+    }
+
+    public void setHeadBlock(BigInteger headBlock) {
+        this.headBlock = headBlock;
+    }
+
+    public BigInteger getSafeBlock() {
+        return safeBlock;
+    }
+
+    public void setSafeBlock(BigInteger safeBlock) {
+        this.safeBlock = safeBlock;
+    }
+
+    public BigInteger getFinalizedBlock() {
+        return finalizedBlock;
+    }
+
+    public void setFinalizedBlock(BigInteger finalizedBlock) {
+        this.finalizedBlock = finalizedBlock;
+    }
+
+    public double getBlocksPerSecond() {
+        return blocksPerSecond;
+    }
+
+    public void setBlocksPerSecond(double blocksPerSecond) {
+        this.blocksPerSecond = blocksPerSecond;
+    }
+
+    public int getInFlightBlocks() {
+        return inFlightBlocks;
+    }
+
+    public void setInFlightBlocks(int inFlightBlocks) {
+        this.inFlightBlocks = inFlightBlocks;
+    }
+
+    public int getPipelineWindow() {
+        return pipelineWindow;
+    }
+
+    public void setPipelineWindow(int pipelineWindow) {
+        this.pipelineWindow = pipelineWindow;
+    }
+
+    public long getMonitoredAddresses() {
+        return monitoredAddresses;
+    }
+
+    public void setMonitoredAddresses(long monitoredAddresses) {
+        this.monitoredAddresses = monitoredAddresses;
+    }
+
+    public long getQueuedDeposits() {
+        return queuedDeposits;
+    }
+
+    public void setQueuedDeposits(long queuedDeposits) {
+        this.queuedDeposits = queuedDeposits;
+    }
+
+    public long getSeenCacheHits() {
+        return seenCacheHits;
+    }
+
+    public void setSeenCacheHits(long seenCacheHits) {
+        this.seenCacheHits = seenCacheHits;
+    }
+
+    public long getSeenCacheMisses() {
+        return seenCacheMisses;
+    }
+
+    public void setSeenCacheMisses(long seenCacheMisses) {
+        this.seenCacheMisses = seenCacheMisses;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    public void setLeader(boolean leader) {
+        this.leader = leader;
+    }
+
+    public int getOwnedPartitions() {
+        return ownedPartitions;
+    }
+
+    public void setOwnedPartitions(int ownedPartitions) {
+        this.ownedPartitions = ownedPartitions;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public List<ProcessorWorkerStatus> getProcessorWorkers() {
+        return processorWorkers;
+    }
+
+    public void setProcessorWorkers(List<ProcessorWorkerStatus> processorWorkers) {
+        this.processorWorkers = processorWorkers;
+    }
+
+    public List<RpcEndpointStatus> getRpcEndpoints() {
+        return rpcEndpoints;
+    }
+
+    public void setRpcEndpoints(List<RpcEndpointStatus> rpcEndpoints) {
+        this.rpcEndpoints = rpcEndpoints;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.ethreader.dto;
+
+public class ProcessorWorkerStatus {
+    private int partition;
+    private int queueDepth;
+    private long processed;
+    private double latencyMs;
+
+    public ProcessorWorkerStatus() {
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public void setPartition(int partition) {
+        this.partition = partition;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    public double getLatencyMs() {
+        return latencyMs;
+    }
+
+    public void setLatencyMs(double latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.ethreader.dto;
+
+public class RpcEndpointStatus {
+    private String name;
+    private boolean healthy;
+    private double latencyMs;
+    private double errorRate;
+    private int inFlight;
+    private int maxConcurrent;
+    private long requests;
+    private long failures;
+    private long hedges;
+
+    public RpcEndpointStatus() {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public void setHealthy(boolean healthy) {
+        this.healthy = healthy;
+    }
+
+    public double getLatencyMs() {
+        return latencyMs;
+    }
+
+    public void setLatencyMs(double latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public void setInFlight(int inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    public long getHedges() {
+        return hedges;
+    }
+
+    public void setHedges(long hedges) {
+        this.hedges = hedges;
+    }
+}
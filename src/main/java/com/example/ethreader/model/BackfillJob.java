@@ -0,0 +1,195 @@
+package com.example.ethreader.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Document(collection = "backfill_jobs")
+public class BackfillJob {
+    @Id
+    private String id;
+    private String chain; // Scanning chain, null for the primary chain
+    private String owner; // Node running the job in sharded mode
+    private long fromBlock; // Inclusive
+    private long toBlock; // Inclusive
+    private List<String> addresses; // Addresses to backfill, null or empty for all monitored addresses
+    private BackfillStatus status;
+    private List<Segment> segments; // Disjoint ranges scanned in parallel, each with its own cursor
+    private long depositsFound;
+    private String error; // Last failure, if any
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+
+    public enum BackfillStatus {
+        RUNNING,
+        COMPLETED,
+        FAILED,     // A segment kept failing; resumable from its cursor
+        CANCELLED
+    }
+
+    public BackfillJob() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+        this.status = BackfillStatus.RUNNING;
+    }
+
+    public long getScannedBlocks() {
+        long scanned = 0;
+        if (segments != null) {
+            for (Segment segment : segments) {
+                scanned += segment.getLastScannedBlock() - segment.getFromBlock() + 1;
+            }
+        }
+        return scanned;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getChain() {
+        return chain;
+    }
+
+    public void setChain(String chain) {
+        this.chain = chain;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public long getFromBlock() {
+        return fromBlock;
+    }
+
+    public void setFromBlock(long fromBlock) {
+        this.fromBlock = fromBlock;
+    }
+
+    public long getToBlock() {
+        return toBlock;
+    }
+
+    public void setToBlock(long toBlock) {
+        this.toBlock = toBlock;
+    }
+
+    public List<String> getAddresses() {
+        return addresses;
+    }
+
+    public void setAddresses(List<String> addresses) {
+        this.addresses = addresses;
+    }
+
+    public BackfillStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BackfillStatus status) {
+        this.status = status;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public void setSegments(List<Segment> segments) {
+        this.segments = segments;
+    }
+
+    public long getDepositsFound() {
+        return depositsFound;
+    }
+
+    public void setDepositsFound(long depositsFound) {
+        this.depositsFound = depositsFound;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public static class Segment {
+        private long fromBlock;
+        private long toBlock;
+        private long lastScannedBlock; // fromBlock - 1 until the first block is committed
+
+        public Segment() {
+        }
+
+        public Segment(long fromBlock, long toBlock) {
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.lastScannedBlock = fromBlock - 1;
+        }
+
+        public boolean isDone() {
+        return lastScannedBlock >= toBlock;
+        }
+
+        public long getFromBlock() {
+            return fromBlock;
+        }
+
+        public void setFromBlock(long fromBlock) {
+            this.fromBlock = fromBlock;
+        }
+
+        public long getToBlock() {
+            return toBlock;
+        }
+
+        public void setToBlock(long toBlock) {
+            this.toBlock = toBlock;
+        }
+
+        public long getLastScannedBlock() {
+            return lastScannedBlock;
+        }
+
+        public void setLastScannedBlock(long lastScannedBlock) {
+            this.lastScannedBlock = lastScannedBlock;
+        }
+    }
+}
@@ -1,33 +1,44 @@
 package com.example.ethreader.model;
 
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigInteger;
 import java.time.LocalDateTime;
 
+// One record per credited deposit; the unique index (MongoIndexService) turns a second credit
+// into a duplicate key. The record is inserted before the user is credited and marked CREDITED
+// afterwards, so a credit that failed half-way can be resumed.
 @Document(collection = "deposit_idempotency")
 public class DepositIdempotency {
     @Id
     private String id;
-    
-    @Indexed(unique = true)
-    private String idempotencyKey; // transactionHash + "_" + blockNumber
-    
+
+    private String chain;
     private String transactionHash;
+    private Integer logIndex; // null for native ETH
     private BigInteger blockNumber;
+    private CreditState state; // null on records written before states existed, which were credited
+    private LocalDateTime claimedAt; // When the current attempt to credit started
     private LocalDateTime processedAt;
 
+    public enum CreditState {
+        RECORDED,   // Credit in progress (or failed); resumed once the claim is stale
+        CREDITED    // User credited
+    }
+
     public DepositIdempotency() {
         this.processedAt = LocalDateTime.now();
     }
 
-    public DepositIdempotency(String transactionHash, BigInteger blockNumber) {
-        this.transactionHash = transactionHash;
-        this.blockNumber = blockNumber;
-        this.idempotencyKey = transactionHash + "_" + blockNumber.toString();
-        this.processedAt = LocalDateTime.now();
+    public DepositIdempotency(DepositTransaction deposit) {
+        this.chain = deposit.getChain();
+        this.transactionHash = deposit.getTransactionHash();
+        this.logIndex = deposit.getLogIndex();
+        this.blockNumber = deposit.getBlockNumber();
+        this.state = CreditState.RECORDED;
+        this.claimedAt = LocalDateTime.now();
+        this.processedAt = this.claimedAt;
     }
 
     public String getId() {
@@ -38,12 +49,12 @@ public class DepositIdempotency {
         this.id = id;
     }
 
-    public String getIdempotencyKey() {
-        return idempotencyKey;
+    public String getChain() {
+        return chain;
     }
 
-    public void setIdempotencyKey(String idempotencyKey) {
-        this.idempotencyKey = idempotencyKey;
+    public void setChain(String chain) {
+        this.chain = chain;
     }
 
     public String getTransactionHash() {
@@ -54,6 +65,14 @@ public class DepositIdempotency {
         this.transactionHash = transactionHash;
     }
 
+    public Integer getLogIndex() {
+        return logIndex;
+    }
+
+    public void setLogIndex(Integer logIndex) {
+        this.logIndex = logIndex;
+    }
+
     public BigInteger getBlockNumber() {
         return blockNumber;
     }
@@ -62,6 +81,22 @@ public class DepositIdempotency {
         this.blockNumber = blockNumber;
     }
 
+    public CreditState getState() {
+        return state;
+    }
+
+    public void setState(CreditState state) {
+        this.state = state;
+    }
+
+    public LocalDateTime getClaimedAt() {
+        return claimedAt;
+    }
+
+    public void setClaimedAt(LocalDateTime claimedAt) {
+        this.claimedAt = claimedAt;
+    }
+
     public LocalDateTime getProcessedAt() {
         return processedAt;
     }
@@ -70,4 +105,3 @@ public class DepositIdempotency {
         this.processedAt = processedAt;
     }
 }
-
@@ -0,0 +1,57 @@
+package com.example.ethreader.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Document(collection = "deposit_outbox")
+public class DepositOutboxEntry {
+    @Id
+    private String id; // Id of the deposit to process, so a replayed block never queues it twice
+    private String chain; // Chain whose processor consumes the entry
+    private int partition; // Address partition, for sharded consumers
+    private Date enqueuedAt;
+
+    public DepositOutboxEntry() {
+    }
+
+    public DepositOutboxEntry(String id, String chain, int partition) {
+        this.id = id;
+        this.chain = chain;
+        this.partition = partition;
+        this.enqueuedAt = new Date();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getChain() {
+        return chain;
+    }
+
+    public void setChain(String chain) {
+        this.chain = chain;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public void setPartition(int partition) {
+        this.partition = partition;
+    }
+
+    public Date getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public void setEnqueuedAt(Date enqueuedAt) {
+        this.enqueuedAt = enqueuedAt;
+    }
+}
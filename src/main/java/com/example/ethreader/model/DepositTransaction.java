@@ -17,6 +17,7 @@ public class DepositTransaction {
     private String tokenAddress; // null for native ETH
     private String chain; // e.g., "sepolia", "mainnet"
     private BigInteger blockNumber;
+    private Integer logIndex; // Position of the Transfer event in the block, null for native ETH
     private int confirmations;
     private DepositStatus status;
     private LocalDateTime createdAt;
@@ -25,9 +26,10 @@ public class DepositTransaction {
     public enum DepositStatus {
         PENDING,      // Detected but not confirmed
         CONFIRMING,   // Confirming (1-11 blocks)
-        CONFIRMED,    // 12+ confirmations, ready to credit
+        CONFIRMED,    // No longer written; stored by older versions and credited like CONFIRMING
         CREDITED,     // Successfully credited to user
-        FAILED        // Processing failed
+        FAILED,       // Processing failed
+        ORPHANED      // Block was reorganized out of the chain
     }
 
     public DepositTransaction() {
@@ -113,6 +115,14 @@ public class DepositTransaction {
         this.blockNumber = blockNumber;
     }
 
+    public Integer getLogIndex() {
+        return logIndex;
+    }
+
+    public void setLogIndex(Integer logIndex) {
+        this.logIndex = logIndex;
+    }
+
     public int getConfirmations() {
         return confirmations;
     }
@@ -1,6 +1,7 @@
 package com.example.ethreader.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -15,10 +16,13 @@ public class HotWallet {
     private String chain; // e.g., "sepolia"
     private String tokenAddress; // null for native ETH, contract address for ERC20
     private LocalDateTime createdAt;
+    @Indexed
+    private LocalDateTime updatedAt; // Last create/deactivate, used for address index delta sync
     private boolean active; // Whether this wallet is currently active
 
     public HotWallet() {
         this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
         this.active = true;
     }
 
@@ -29,6 +33,7 @@ public class HotWallet {
         this.chain = chain;
         this.tokenAddress = tokenAddress;
         this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
         this.active = true;
     }
 
@@ -88,6 +93,14 @@ public class HotWallet {
         this.createdAt = createdAt;
     }
 
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     public boolean isActive() {
         return active;
     }
@@ -0,0 +1,59 @@
+package com.example.ethreader.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Document(collection = "leader_leases")
+public class LeaderLease {
+    @Id
+    private String id; // Chain name
+    private String owner; // Node id of the leader, null when released
+    private Date expiresAt;
+    private long fencingToken; // Incremented on every election; writes of older leaders are rejected
+    private Date acquiredAt;
+
+    public LeaderLease() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public long getFencingToken() {
+        return fencingToken;
+    }
+
+    public void setFencingToken(long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+
+    public Date getAcquiredAt() {
+        return acquiredAt;
+    }
+
+    public void setAcquiredAt(Date acquiredAt) {
+        this.acquiredAt = acquiredAt;
+    }
+}
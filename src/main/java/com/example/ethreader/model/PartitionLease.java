@@ -0,0 +1,77 @@
+package com.example.ethreader.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Document(collection = "partition_leases")
+public class PartitionLease {
+    @Id
+    private String id; // chain + ":" + partition
+    private String chain;
+    private int partition;
+    private String owner; // Node id, null when released
+    private Date expiresAt;
+    private Long checkpointBlock; // Owner's last committed block, where a new owner resumes the partition
+    private long epoch; // Incremented on every change of owner
+
+    public PartitionLease() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getChain() {
+        return chain;
+    }
+
+    public void setChain(String chain) {
+        this.chain = chain;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public void setPartition(int partition) {
+        this.partition = partition;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getCheckpointBlock() {
+        return checkpointBlock;
+    }
+
+    public void setCheckpointBlock(Long checkpointBlock) {
+        this.checkpointBlock = checkpointBlock;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+}
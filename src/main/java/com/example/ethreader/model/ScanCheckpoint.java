@@ -0,0 +1,69 @@
+package com.example.ethreader.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+
+@Document(collection = "scan_checkpoints")
+public class ScanCheckpoint {
+    @Id
+    private String chain; // One checkpoint per chain, e.g., "sepolia"
+
+    private BigInteger blockNumber; // Last block whose deposits are fully committed
+    private String blockHash; // Hash of that block, null if it was skipped without fetching
+    private Long fencingToken; // Leadership term of the writer in leader mode
+    private LocalDateTime updatedAt;
+
+    public ScanCheckpoint() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public ScanCheckpoint(String chain, BigInteger blockNumber, String blockHash) {
+        this.chain = chain;
+        this.blockNumber = blockNumber;
+        this.blockHash = blockHash;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public String getChain() {
+        return chain;
+    }
+
+    public void setChain(String chain) {
+        this.chain = chain;
+    }
+
+    public BigInteger getBlockNumber() {
+        return blockNumber;
+    }
+
+    public void setBlockNumber(BigInteger blockNumber) {
+        this.blockNumber = blockNumber;
+    }
+
+    public String getBlockHash() {
+        return blockHash;
+    }
+
+    public void setBlockHash(String blockHash) {
+        this.blockHash = blockHash;
+    }
+
+    public Long getFencingToken() {
+        return fencingToken;
+    }
+
+    public void setFencingToken(Long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.ethreader.repository;
+
+import com.example.ethreader.model.BackfillJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BackfillJobRepository extends MongoRepository<BackfillJob, String> {
+    List<BackfillJob> findByStatus(BackfillJob.BackfillStatus status);
+    List<BackfillJob> findAllByOrderByCreatedAtDesc();
+}
@@ -8,7 +8,7 @@ import java.util.Optional;
 
 @Repository
 public interface DepositIdempotencyRepository extends MongoRepository<DepositIdempotency, String> {
-    Optional<DepositIdempotency> findByIdempotencyKey(String idempotencyKey);
-    boolean existsByIdempotencyKey(String idempotencyKey);
+    Optional<DepositIdempotency> findByChainAndTransactionHashAndLogIndex(
+            String chain, String transactionHash, Integer logIndex);
 }
 
@@ -4,15 +4,21 @@ import com.example.ethreader.model.DepositTransaction;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DepositTransactionRepository extends MongoRepository<DepositTransaction, String> {
     Optional<DepositTransaction> findByTransactionHash(String transactionHash);
+    Optional<DepositTransaction> findByTransactionHashAndLogIndex(String transactionHash, Integer logIndex);
     List<DepositTransaction> findByUserIdOrderByCreatedAtDesc(String userId);
     List<DepositTransaction> findByUserIdAndStatusInOrderByCreatedAtDesc(
             String userId, List<DepositTransaction.DepositStatus> statuses);
+    List<DepositTransaction> findByTransactionHashIn(Collection<String> transactionHashes);
     List<DepositTransaction> findByStatusIn(List<DepositTransaction.DepositStatus> statuses);
+    List<DepositTransaction> findByBlockNumberInAndStatusIn(
+            Collection<BigInteger> blockNumbers, List<DepositTransaction.DepositStatus> statuses);
 }
 
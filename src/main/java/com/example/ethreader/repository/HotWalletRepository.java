@@ -2,8 +2,11 @@ package com.example.ethreader.repository;
 
 import com.example.ethreader.model.HotWallet;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,5 +17,16 @@ public interface HotWalletRepository extends MongoRepository<HotWallet, String>
             String userId, String chain, String tokenAddress);
     Optional<HotWallet> findByAddress(String address);
     List<HotWallet> findByActiveTrue();
+
+    // Address-only projections for the monitored address index (no private keys loaded)
+    @Query(value = "{ 'active': true }", fields = "{ 'address': 1, 'chain': 1 }")
+    List<HotWallet> findActiveAddresses();
+
+    // Owners of a block's deposit recipients, looked up in one query
+    @Query(value = "{ 'address': { '$in': ?0 } }", fields = "{ 'address': 1, 'chain': 1, 'userId': 1 }")
+    List<HotWallet> findOwnersByAddressIn(Collection<String> addresses);
+
+    @Query(value = "{ 'updatedAt': { '$gt': ?0 } }", fields = "{ 'address': 1, 'chain': 1, 'active': 1, 'updatedAt': 1 }")
+    List<HotWallet> findAddressChangesSince(LocalDateTime since);
 }
 
@@ -0,0 +1,9 @@
+package com.example.ethreader.repository;
+
+import com.example.ethreader.model.ScanCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ScanCheckpointRepository extends MongoRepository<ScanCheckpoint, String> {
+}
@@ -0,0 +1,504 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.config.ChainRegistry;
+import com.example.ethreader.model.BackfillJob;
+import com.example.ethreader.model.DepositTransaction;
+import com.example.ethreader.model.HotWallet;
+import com.example.ethreader.repository.BackfillJobRepository;
+import com.example.ethreader.repository.HotWalletRepository;
+import com.example.ethreader.util.OffHeapAddressSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+// Admin-triggered rescans of historical block ranges, e.g. after onboarding legacy addresses.
+// A job splits its range into segments that are scanned in parallel on virtual threads, each with
+// its own cursor in the job document, so the live scan checkpoint is never touched and an
+// interrupted job resumes where every segment stopped. Deposits already stored are skipped; new
+// ones go through the same processing queue as live deposits. In sharded mode a job runs on the
+// node that started it, and partitions taken over from another node are backfilled from that
+// node's last checkpoint. In leader mode jobs only run on the leader and resume after a failover.
+@Service
+public class BackfillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackfillService.class);
+    private static final Pattern ADDRESS_PATTERN = Pattern.compile("^0x[0-9a-fA-F]{40}$");
+
+    @Autowired
+    private BackfillJobRepository backfillJobRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private DepositIngestionService depositIngestionService;
+
+    @Autowired
+    private DepositMonitorService depositMonitorService;
+
+    @Autowired
+    private DepositOutboxService depositOutboxService;
+
+    @Autowired
+    private MonitoredAddressIndex monitoredAddressIndex;
+
+    @Autowired
+    private ChainHeadTracker chainHeadTracker;
+
+    @Autowired
+    private ChainRegistry chainRegistry;
+
+    @Autowired
+    private PartitionLeaseService partitionLeaseService;
+
+    @Autowired
+    private HotWalletRepository hotWalletRepository;
+
+    @Autowired
+    private LeaderElectionService leaderElectionService;
+
+    @Value("${blockchain.chain:sepolia}")
+    private String chain;
+
+    @Value("${blockchain.backfill.segment.size:10000}") // Blocks per segment
+    private long segmentSize;
+
+    @Value("${blockchain.backfill.parallelism:4}") // Segments scanned at the same time per job
+    private int parallelism;
+
+    @Value("${blockchain.backfill.batch.size:10}") // Blocks per JSON-RPC batch
+    private int batchSize;
+
+    @Value("${blockchain.backfill.retries:5}") // Attempts per batch before the job is marked FAILED
+    private int maxRetries;
+
+    @Value("${blockchain.backfill.yield.delay:500}") // ms to wait while the live scan is catching up
+    private long yieldDelayMs;
+
+    private final Map<String, RunningJob> runningJobs = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        segmentSize = Math.max(1, segmentSize);
+        parallelism = Math.max(1, parallelism);
+        batchSize = Math.max(1, batchSize);
+
+        if (leaderElectionService.isLeaderMode()) {
+            return; // Resumed by the scheduled cluster tasks once this instance leads
+        }
+        // Resume jobs interrupted by a restart, off the startup path
+        Thread resumeThread = new Thread(this::resumeInterruptedJobs, "Backfill-" + chain + "-resume");
+        resumeThread.setDaemon(true);
+        resumeThread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Segment cursors are already persisted; RUNNING jobs are picked up again on the next start
+        for (RunningJob running : runningJobs.values()) {
+            running.stopping = true;
+            running.thread.interrupt();
+        }
+    }
+
+    public BackfillJob startBackfill(long fromBlock, long toBlock, List<String> addresses) {
+        requireLeader();
+        if (fromBlock < 0 || toBlock < fromBlock) {
+            throw new IllegalArgumentException("Invalid block range " + fromBlock + "-" + toBlock);
+        }
+        BigInteger head = chainHeadTracker.getHead();
+        if (head.signum() == 0) {
+            throw new IllegalStateException("Chain head unavailable");
+        }
+        if (toBlock > head.longValueExact()) {
+            throw new IllegalArgumentException("toBlock " + toBlock + " is beyond the chain head " + head);
+        }
+        List<String> normalized = new ArrayList<>();
+        if (addresses != null) {
+            for (String address : addresses) {
+                if (address == null || !ADDRESS_PATTERN.matcher(address.trim()).matches()) {
+                    throw new IllegalArgumentException("Invalid address: " + address);
+                }
+                normalized.add(address.trim().toLowerCase());
+            }
+        }
+
+        BackfillJob job = new BackfillJob();
+        job.setChain(chain);
+        job.setOwner(partitionLeaseService.isSharded() ? partitionLeaseService.getNodeId() : null);
+        job.setFromBlock(fromBlock);
+        job.setToBlock(toBlock);
+        job.setAddresses(normalized.isEmpty() ? null : normalized);
+        List<BackfillJob.Segment> segments = new ArrayList<>();
+        for (long start = fromBlock; start <= toBlock; start += segmentSize) {
+            segments.add(new BackfillJob.Segment(start, Math.min(toBlock, start + segmentSize - 1)));
+        }
+        job.setSegments(segments);
+        job = backfillJobRepository.save(job);
+
+        logger.info("Backfill {} started for blocks {}-{} in {} segments ({} addresses)", job.getId(),
+                fromBlock, toBlock, segments.size(), normalized.isEmpty() ? "all monitored" : normalized.size());
+        launch(job);
+        return job;
+    }
+
+    public BackfillJob resumeBackfill(String jobId) {
+        BackfillJob job = backfillJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Backfill job not found: " + jobId));
+        if (runningJobs.containsKey(jobId)) {
+            return job;
+        }
+        requireLeader();
+        if (job.getStatus() == BackfillJob.BackfillStatus.COMPLETED) {
+            throw new IllegalStateException("Backfill job " + jobId + " is already completed");
+        }
+        job.setStatus(BackfillJob.BackfillStatus.RUNNING);
+        job.setOwner(partitionLeaseService.isSharded() ? partitionLeaseService.getNodeId() : null);
+        job.setError(null);
+        job.setFinishedAt(null);
+        job.setUpdatedAt(LocalDateTime.now());
+        job = backfillJobRepository.save(job);
+        launch(job);
+        return job;
+    }
+
+    public BackfillJob cancelBackfill(String jobId) {
+        RunningJob running = runningJobs.get(jobId);
+        if (running != null) {
+            running.cancelled = true;
+            return running.job;
+        }
+        BackfillJob job = backfillJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Backfill job not found: " + jobId));
+        if (job.getStatus() != BackfillJob.BackfillStatus.COMPLETED) {
+            job.setStatus(BackfillJob.BackfillStatus.CANCELLED);
+            job.setUpdatedAt(LocalDateTime.now());
+            job = backfillJobRepository.save(job);
+        }
+        return job;
+    }
+
+    // Live progress for running jobs, the stored state otherwise
+    public Optional<BackfillJob> getJob(String jobId) {
+        RunningJob running = runningJobs.get(jobId);
+        if (running != null) {
+            return Optional.of(running.job);
+        }
+        return backfillJobRepository.findById(jobId);
+    }
+
+    // Jobs of this chain, newest first
+    public List<BackfillJob> getJobs() {
+        List<BackfillJob> jobs = backfillJobRepository.findAllByOrderByCreatedAtDesc();
+        jobs.removeIf(job -> !chainRegistry.isOwnedBy(chain, job.getChain()));
+        jobs.replaceAll(job -> runningJobs.containsKey(job.getId()) ? runningJobs.get(job.getId()).job : job);
+        return jobs;
+    }
+
+    public double getBlocksPerSecond(String jobId) {
+        RunningJob running = runningJobs.get(jobId);
+        if (running == null) {
+            return 0;
+        }
+        double elapsedSeconds = (System.nanoTime() - running.startedNanos) / 1_000_000_000.0;
+        return elapsedSeconds > 0 ? running.scannedBlocks.get() / elapsedSeconds : 0;
+    }
+
+    // Start a backfill for each partition taken over from another node, covering the blocks between
+    // that node's checkpoint and the head. Waits until the address index includes the partition so
+    // no block falls between the backfill and the live scan.
+    public void startPartitionHandovers() {
+        Queue<PartitionLeaseService.Handover> handovers = partitionLeaseService.getHandovers();
+        PartitionLeaseService.Handover handover;
+        while ((handover = handovers.peek()) != null
+                && handover.getOwnershipVersion() <= monitoredAddressIndex.getAppliedOwnershipVersion()) {
+            handovers.poll();
+            if (!partitionLeaseService.ownsPartition(handover.getPartition())) {
+                continue; // Moved on again before the backfill started
+            }
+            List<String> addresses = new ArrayList<>();
+            for (HotWallet wallet : hotWalletRepository.findActiveAddresses()) {
+                if (chainRegistry.isOwnedBy(chain, wallet.getChain()) && isValidAddress(wallet.getAddress())
+                        && partitionLeaseService.partitionOf(wallet.getAddress()) == handover.getPartition()) {
+                    addresses.add(wallet.getAddress());
+                }
+            }
+            long head = chainHeadTracker.getHead().longValueExact();
+            if (addresses.isEmpty() || head < handover.getFromBlock()) {
+                continue;
+            }
+            logger.info("Partition {} taken over; backfilling blocks {}-{} for {} addresses",
+                    handover.getPartition(), handover.getFromBlock(), head, addresses.size());
+            startBackfill(handover.getFromBlock(), head, addresses);
+        }
+    }
+
+    // Take over running jobs of nodes that left the cluster; the conditional update lets only one
+    // node claim each job
+    public void adoptOrphanedJobs() {
+        List<String> liveNodes = partitionLeaseService.getLiveNodes();
+        if (liveNodes.isEmpty()) {
+            return; // No rebalance yet
+        }
+        for (BackfillJob job : backfillJobRepository.findByStatus(BackfillJob.BackfillStatus.RUNNING)) {
+            if (!chainRegistry.isOwnedBy(chain, job.getChain()) || job.getOwner() == null
+                    || liveNodes.contains(job.getOwner()) || runningJobs.containsKey(job.getId())) {
+                continue;
+            }
+            long claimed = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(job.getId())
+                            .and("owner").is(job.getOwner())
+                            .and("status").is(BackfillJob.BackfillStatus.RUNNING)),
+                    new Update().set("owner", partitionLeaseService.getNodeId()), BackfillJob.class)
+                    .getModifiedCount();
+            if (claimed == 1) {
+                logger.info("Adopting backfill {} from departed node {}", job.getId(), job.getOwner());
+                job.setOwner(partitionLeaseService.getNodeId());
+                launch(job);
+            }
+        }
+    }
+
+    public void resumeInterruptedJobs() {
+        try {
+            for (BackfillJob job : backfillJobRepository.findByStatus(BackfillJob.BackfillStatus.RUNNING)) {
+                // In sharded mode only the node that ran the job resumes it; others need an explicit resume
+                boolean ownJob = !partitionLeaseService.isSharded()
+                        || partitionLeaseService.getNodeId().equals(job.getOwner());
+                if (chainRegistry.isOwnedBy(chain, job.getChain()) && ownJob && !runningJobs.containsKey(job.getId())) {
+                    logger.info("Resuming backfill {} ({} of {} blocks done)", job.getId(), job.getScannedBlocks(),
+                            job.getToBlock() - job.getFromBlock() + 1);
+                    launch(job);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Failed to resume backfill jobs", e);
+        }
+    }
+
+    private void requireLeader() {
+        if (!leaderElectionService.isLeader()) {
+            throw new IllegalStateException("Backfills run on the " + chain + " leader; this instance is a follower");
+        }
+    }
+
+    private static boolean isValidAddress(String address) {
+        return address != null && ADDRESS_PATTERN.matcher(address).matches();
+    }
+
+    private synchronized void launch(BackfillJob job) {
+        if (runningJobs.containsKey(job.getId())) {
+            return;
+        }
+        RunningJob running = new RunningJob(job);
+        running.thread = new Thread(() -> runJob(running), "Backfill-" + job.getId());
+        running.thread.setDaemon(true);
+        runningJobs.put(job.getId(), running);
+        running.thread.start();
+    }
+
+    private void runJob(RunningJob running) {
+        BackfillJob job = running.job;
+        OffHeapAddressSet jobAddresses = null;
+        try {
+            OffHeapAddressSet addresses;
+            if (job.getAddresses() != null && !job.getAddresses().isEmpty()) {
+                // Only the requested addresses, so logs-mode filters stay small
+                jobAddresses = OffHeapAddressSet.allocate(job.getAddresses().size());
+                for (String address : job.getAddresses()) {
+                    jobAddresses.add(address);
+                }
+                addresses = jobAddresses;
+            } else if (partitionLeaseService.isSharded()) {
+                // The local index only holds this node's partitions; a job covers all of the chain's
+                List<String> chainAddresses = new ArrayList<>();
+                for (HotWallet wallet : hotWalletRepository.findActiveAddresses()) {
+                    if (chainRegistry.isOwnedBy(chain, wallet.getChain()) && isValidAddress(wallet.getAddress())) {
+                        chainAddresses.add(wallet.getAddress());
+                    }
+                }
+                jobAddresses = OffHeapAddressSet.allocate(Math.max(1, chainAddresses.size()));
+                for (String address : chainAddresses) {
+                    jobAddresses.add(address);
+                }
+                addresses = jobAddresses;
+            } else {
+                monitoredAddressIndex.ensureLoaded();
+                addresses = monitoredAddressIndex.getAddresses();
+            }
+
+            Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < job.getSegments().size(); i++) {
+                if (!job.getSegments().get(i).isDone()) {
+                    pending.add(i);
+                }
+            }
+            int workers = Math.min(parallelism, pending.size());
+            List<Future<?>> futures = new ArrayList<>(workers);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int w = 0; w < workers; w++) {
+                    futures.add(executor.submit(() -> {
+                        Integer segment;
+                        while (!running.isStopped() && (segment = pending.poll()) != null) {
+                            scanSegment(running, segment, addresses);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        running.failed = true;
+                        job.setError(e.getCause().getMessage());
+                        logger.error("Backfill {} segment failed", job.getId(), e.getCause());
+                    }
+                }
+            }
+
+            if (running.stopping) {
+                return; // Shutdown: leave the job RUNNING so it resumes on the next start
+            }
+            if (running.cancelled) {
+                job.setStatus(BackfillJob.BackfillStatus.CANCELLED);
+            } else if (running.failed) {
+                job.setStatus(BackfillJob.BackfillStatus.FAILED);
+            } else {
+                job.setStatus(BackfillJob.BackfillStatus.COMPLETED);
+            }
+            finish(job);
+            logger.info("Backfill {} {}: {} blocks scanned, {} new deposits", job.getId(),
+                    job.getStatus().name().toLowerCase(), job.getScannedBlocks(), job.getDepositsFound());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Backfill {} failed", job.getId(), e);
+            job.setStatus(BackfillJob.BackfillStatus.FAILED);
+            job.setError(e.getMessage());
+            finish(job);
+        } finally {
+            if (jobAddresses != null) {
+                jobAddresses.close();
+            }
+            runningJobs.remove(job.getId());
+        }
+    }
+
+    private void scanSegment(RunningJob running, int index, OffHeapAddressSet addresses) throws InterruptedException {
+        BackfillJob.Segment segment = running.job.getSegments().get(index);
+        int failures = 0;
+        while (!segment.isDone() && !running.isStopped()) {
+            if (!leaderElectionService.isLeader()) {
+                running.stopping = true; // Left RUNNING for the next leader
+                return;
+            }
+            // Live scanning has priority; back off while it is behind the head
+            while (depositMonitorService.isCatchingUp() && !running.isStopped()) {
+                Thread.sleep(yieldDelayMs);
+            }
+
+            long from = segment.getLastScannedBlock() + 1;
+            long to = Math.min(segment.getToBlock(), from + batchSize - 1);
+            List<BigInteger> blockNumbers = new ArrayList<>((int) (to - from + 1));
+            for (long number = from; number <= to; number++) {
+                blockNumbers.add(BigInteger.valueOf(number));
+            }
+            try {
+                int found = 0;
+                for (DepositIngestionService.ScannedBlock block
+                        : depositIngestionService.fetchBlockDeposits(blockNumbers, addresses)) {
+                    // Existing rows (seen by the live scan or an earlier run) are skipped
+                    if (block.getDeposits().isEmpty()) {
+                        continue;
+                    }
+                    depositOutboxService.awaitCapacity();
+                    List<DepositTransaction> saved = depositIngestionService.saveDeposits(block.getDeposits(), false);
+                    depositOutboxService.append(saved);
+                    found += saved.size();
+                }
+                saveProgress(running, index, to, found);
+                running.scannedBlocks.addAndGet(to - from + 1);
+                failures = 0;
+            } catch (RuntimeException e) {
+                if (++failures >= maxRetries) {
+                    throw new IllegalStateException("Blocks " + from + "-" + to + " failed " + failures
+                            + " times: " + e.getMessage(), e);
+                }
+                logger.warn("Backfill {} blocks {}-{} failed (attempt {}): {}", running.job.getId(), from, to,
+                        failures, e.getMessage());
+                Thread.sleep(1000L * failures);
+            }
+        }
+    }
+
+    private void saveProgress(RunningJob running, int index, long lastScannedBlock, int found) {
+        BackfillJob job = running.job;
+        job.getSegments().get(index).setLastScannedBlock(lastScannedBlock);
+        synchronized (job) {
+            job.setDepositsFound(job.getDepositsFound() + found);
+            job.setUpdatedAt(LocalDateTime.now());
+        }
+        // Field-level update so parallel segments never overwrite each other's cursors
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(job.getId())),
+                new Update().set("segments." + index + ".lastScannedBlock", lastScannedBlock)
+                        .inc("depositsFound", found)
+                        .set("updatedAt", job.getUpdatedAt()),
+                BackfillJob.class);
+    }
+
+    private void finish(BackfillJob job) {
+        job.setUpdatedAt(LocalDateTime.now());
+        job.setFinishedAt(job.getUpdatedAt());
+        try {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(job.getId())),
+                    new Update().set("status", job.getStatus())
+                            .set("error", job.getError())
+                            .set("updatedAt", job.getUpdatedAt())
+                            .set("finishedAt", job.getFinishedAt()),
+                    BackfillJob.class);
+        } catch (Exception e) {
+            logger.error("Failed to store the final state of backfill {}", job.getId(), e);
+        }
+    }
+
+    private static class RunningJob {
+        private final BackfillJob job;
+        private final long startedNanos = System.nanoTime();
+        private final AtomicLong scannedBlocks = new AtomicLong(); // Since this run started, for the rate
+        private Thread thread;
+        private volatile boolean cancelled;
+        private volatile boolean failed;
+        private volatile boolean stopping;
+
+        RunningJob(BackfillJob job) {
+            this.job = job;
+        }
+
+        boolean isStopped() {
+            return cancelled || failed || stopping;
+        }
+    }
+}
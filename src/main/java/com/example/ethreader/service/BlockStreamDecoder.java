@@ -0,0 +1,191 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.util.OffHeapAddressSet;
+import com.example.ethreader.util.TransferCalldataDecoder;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Streaming decoder for eth_getBlockByNumber(..., true) batch responses. Transactions are read
+// token by token into reusable buffers; only those paying a monitored address become DepositInfo
+// objects, everything else in the block is skipped without being bound. Not thread-safe: use one
+// instance per call.
+class BlockStreamDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final OffHeapAddressSet monitoredAddresses;
+    private final boolean decodeCalldata;
+    private final TransferCalldataDecoder calldata = new TransferCalldataDecoder();
+
+    // Per-transaction state, reset for every transaction object
+    private final char[] hash = new char[66];
+    private int hashLength;
+    private final char[] to = new char[42];
+    private int toLength;
+    private boolean toMonitored;
+    private final char[] value = new char[66];
+    private int valueLength;
+    private int inputLength;
+    private boolean calldataMatched;
+
+    BlockStreamDecoder(OffHeapAddressSet monitoredAddresses, boolean decodeCalldata) {
+        this.monitoredAddresses = monitoredAddresses;
+        this.decodeCalldata = decodeCalldata;
+    }
+
+    // Decoded blocks by JSON-RPC id; ids with an error or a null result are absent
+    Map<Long, BlockchainService.BlockDeposits> decodeBatch(InputStream body) throws IOException {
+        Map<Long, BlockchainService.BlockDeposits> blocks = new HashMap<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_ARRAY) {
+                // A single error object, e.g. when the endpoint rejects batches
+                return blocks;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                Long id = null;
+                BlockchainService.BlockDeposits block = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken valueToken = parser.nextToken();
+                    if ("id".equals(field) && valueToken.isNumeric()) {
+                        id = parser.getLongValue();
+                    } else if ("result".equals(field) && valueToken == JsonToken.START_OBJECT) {
+                        block = readBlock(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (id != null && block != null) {
+                    blocks.put(id, block);
+                }
+            }
+        }
+        return blocks;
+    }
+
+    private BlockchainService.BlockDeposits readBlock(JsonParser parser) throws IOException {
+        BlockchainService.BlockDeposits block = new BlockchainService.BlockDeposits();
+        List<BlockchainService.DepositInfo> deposits = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken valueToken = parser.nextToken();
+            if ("number".equals(field) && valueToken == JsonToken.VALUE_STRING) {
+                block.setBlockNumber(new BigInteger(parser.getText().substring(2), 16));
+            } else if ("hash".equals(field) && valueToken == JsonToken.VALUE_STRING) {
+                block.setBlockHash(parser.getText());
+            } else if ("parentHash".equals(field) && valueToken == JsonToken.VALUE_STRING) {
+                block.setParentHash(parser.getText());
+            } else if ("transactions".equals(field) && valueToken == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        BlockchainService.DepositInfo deposit = readTransaction(parser);
+                        if (deposit != null) {
+                            deposits.add(deposit);
+                        }
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        // "number" may come after "transactions", so block fields are filled in at the end
+        for (BlockchainService.DepositInfo deposit : deposits) {
+            deposit.setBlockNumber(block.getBlockNumber());
+        }
+        block.setDeposits(deposits);
+        return block;
+    }
+
+    private BlockchainService.DepositInfo readTransaction(JsonParser parser) throws IOException {
+        hashLength = 0;
+        toLength = 0;
+        toMonitored = false;
+        valueLength = 0;
+        inputLength = 0;
+        calldataMatched = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken valueToken = parser.nextToken();
+            if (valueToken != JsonToken.VALUE_STRING) {
+                parser.skipChildren();
+                continue;
+            }
+            char[] chars = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            switch (field) {
+                case "hash":
+                    hashLength = copy(chars, offset, length, hash);
+                    break;
+                case "to":
+                    toLength = copy(chars, offset, length, to);
+                    toMonitored = length == to.length && monitoredAddresses.contains(chars, offset + 2);
+                    break;
+                case "value":
+                    valueLength = copy(chars, offset, length, value);
+                    break;
+                case "input":
+                    inputLength = length;
+                    calldataMatched = decodeCalldata && length >= TransferCalldataDecoder.MIN_INPUT_LENGTH
+                            && calldata.decode(chars, offset, length) && calldata.isRecipientIn(monitoredAddresses);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Same rules as BlockchainService.extractDeposits, applied to the buffered fields
+        if (inputLength >= TransferCalldataDecoder.MIN_INPUT_LENGTH) {
+            if (!calldataMatched) {
+                return null;
+            }
+            BlockchainService.DepositInfo deposit = new BlockchainService.DepositInfo();
+            deposit.setTransactionHash(new String(hash, 0, hashLength));
+            deposit.setToAddress(calldata.recipientHex());
+            deposit.setAmount(calldata.amount());
+            deposit.setTokenAddress(new String(to, 0, toLength)); // Contract address
+            return deposit;
+        }
+        if (!toMonitored || !isPositiveQuantity()) {
+            return null;
+        }
+        BlockchainService.DepositInfo deposit = new BlockchainService.DepositInfo();
+        deposit.setTransactionHash(new String(hash, 0, hashLength));
+        deposit.setToAddress(new String(to, 0, toLength));
+        deposit.setAmount(new BigInteger(new String(value, 2, valueLength - 2), 16));
+        deposit.setTokenAddress(null); // null for native ETH
+        return deposit;
+    }
+
+    private boolean isPositiveQuantity() {
+        if (valueLength <= 2) {
+            return false;
+        }
+        for (int i = 2; i < valueLength; i++) {
+            if (value[i] != '0') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Copies up to target.length chars; longer values are not valid for these fields and are dropped
+    private static int copy(char[] chars, int offset, int length, char[] target) {
+        if (length > target.length) {
+            return 0;
+        }
+        System.arraycopy(chars, offset, target, 0, length);
+        return length;
+    }
+}
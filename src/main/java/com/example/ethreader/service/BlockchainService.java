@@ -1,5 +1,8 @@
 package com.example.ethreader.service;
 
+import com.example.ethreader.config.RpcEndpointPool;
+import com.example.ethreader.util.OffHeapAddressSet;
+import com.example.ethreader.util.TransferCalldataDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,17 +16,32 @@ import org.web3j.abi.datatypes.Type;
 import org.web3j.abi.datatypes.generated.Uint256;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameter;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
 import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthLog;
+import org.web3j.protocol.core.methods.response.EthGetBlockReceipts;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.Log;
 import org.web3j.protocol.core.methods.response.Transaction;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.web3j.utils.Convert;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,12 +49,34 @@ public class BlockchainService {
 
     private static final Logger logger = LoggerFactory.getLogger(BlockchainService.class);
     private static final String TRANSFER_EVENT_SIGNATURE = "0xddf252ad1be2c89b69c2b068fc378daa952ba7f163c4a11628f55a4df523b3ef";
+    private static final Pattern RESULT_LIMIT_MESSAGE = Pattern.compile("query returned more than \\d+ results");
 
     @Autowired
     private Web3j web3j;
 
-    @Value("${blockchain.confirmations:12}")
-    private int requiredConfirmations;
+    @Autowired
+    private RpcEndpointPool rpcEndpointPool;
+
+    @Value("${blockchain.rpc.batch.size:50}") // Max calls packed into one JSON-RPC batch
+    private int rpcBatchSize;
+
+    @Value("${blockchain.logs.address.chunk:200}") // Max recipient addresses per eth_getLogs filter
+    private int logAddressChunkSize;
+
+    @Value("${blockchain.logs.unfiltered.above:0}") // Larger address sets fetch all Transfer logs (0 = never)
+    private long logUnfilteredAbove;
+
+    @Value("${blockchain.receipts.cache.blocks:64}") // Blocks whose receipts are kept in memory
+    private int receiptCacheBlocks;
+
+    // Block hash -> all receipts of that block, least recently used evicted first
+    private final Map<String, List<TransactionReceipt>> receiptCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<TransactionReceipt>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<TransactionReceipt>> eldest) {
+                    return size() > receiptCacheBlocks;
+                }
+            });
 
     public BigInteger getCurrentBlockNumber() {
         try {
@@ -47,6 +87,29 @@ public class BlockchainService {
         }
     }
 
+    // Latest finalized block, or null when the node does not support the "finalized" tag
+    public BigInteger getFinalizedBlockNumber() {
+        return getTaggedBlockNumber(DefaultBlockParameterName.FINALIZED);
+    }
+
+    // Latest safe block, or null when the node does not support the "safe" tag
+    public BigInteger getSafeBlockNumber() {
+        return getTaggedBlockNumber(DefaultBlockParameterName.SAFE);
+    }
+
+    private BigInteger getTaggedBlockNumber(DefaultBlockParameterName tag) {
+        try {
+            EthBlock response = web3j.ethGetBlockByNumber(tag, false).send();
+            if (response.hasError() || response.getBlock() == null) {
+                return null;
+            }
+            return response.getBlock().getNumber();
+        } catch (Exception e) {
+            logger.error("Error getting " + tag.getValue() + " block number", e);
+            return null;
+        }
+    }
+
     public EthBlock.Block getBlock(BigInteger blockNumber) {
         try {
             DefaultBlockParameter blockParameter = DefaultBlockParameter.valueOf(blockNumber);
@@ -57,6 +120,17 @@ public class BlockchainService {
         }
     }
 
+    // Block without transaction bodies, enough to compare hashes
+    public EthBlock.Block getBlockHeader(BigInteger blockNumber) {
+        try {
+            DefaultBlockParameter blockParameter = DefaultBlockParameter.valueOf(blockNumber);
+            return web3j.ethGetBlockByNumber(blockParameter, false).send().getBlock();
+        } catch (Exception e) {
+            logger.error("Error getting block header: " + blockNumber, e);
+            return null;
+        }
+    }
+
     public TransactionReceipt getTransactionReceipt(String transactionHash) {
         try {
             return web3j.ethGetTransactionReceipt(transactionHash).send().getTransactionReceipt().orElse(null);
@@ -66,24 +140,188 @@ public class BlockchainService {
         }
     }
 
-    public int getConfirmations(String transactionHash, BigInteger blockNumber) {
-        try {
-            BigInteger currentBlock = getCurrentBlockNumber();
-            if (currentBlock.compareTo(blockNumber) < 0) {
-                return 0;
+    // Fetch several blocks with JSON-RPC batches; results follow the order of blockNumbers,
+    // with null for any block that could not be fetched
+    public List<EthBlock.Block> getBlocks(List<BigInteger> blockNumbers) {
+        List<Request<?, EthBlock>> requests = new ArrayList<>(blockNumbers.size());
+        for (BigInteger blockNumber : blockNumbers) {
+            requests.add(web3j.ethGetBlockByNumber(DefaultBlockParameter.valueOf(blockNumber), true));
+        }
+
+        List<EthBlock.Block> blocks = new ArrayList<>(blockNumbers.size());
+        for (EthBlock response : sendBatch(requests)) {
+            blocks.add(response != null ? response.getBlock() : null);
+        }
+        return blocks;
+    }
+
+    // Fetch several blocks and decode their deposits while the response streams in, without
+    // materializing the block's transactions. Results follow the order of blockNumbers, with
+    // null for any block that could not be fetched.
+    public List<BlockDeposits> getBlockDeposits(List<BigInteger> blockNumbers, OffHeapAddressSet monitoredAddresses,
+                                                boolean decodeCalldata) {
+        List<BlockDeposits> results = new ArrayList<>(blockNumbers.size());
+        int batchSize = Math.max(1, rpcBatchSize);
+
+        for (int start = 0; start < blockNumbers.size(); start += batchSize) {
+            List<BigInteger> chunk = blockNumbers.subList(start, Math.min(start + batchSize, blockNumbers.size()));
+            StringBuilder payload = new StringBuilder(chunk.size() * 96).append('[');
+            for (int i = 0; i < chunk.size(); i++) {
+                if (i > 0) {
+                    payload.append(',');
+                }
+                payload.append("{\"jsonrpc\":\"2.0\",\"id\":").append(i)
+                        .append(",\"method\":\"eth_getBlockByNumber\",\"params\":[\"0x")
+                        .append(chunk.get(i).toString(16)).append("\",true]}");
+            }
+            payload.append(']');
+
+            try (InputStream body = rpcEndpointPool.sendRaw(payload.toString())) {
+                Map<Long, BlockDeposits> blocks =
+                        new BlockStreamDecoder(monitoredAddresses, decodeCalldata).decodeBatch(body);
+                for (int i = 0; i < chunk.size(); i++) {
+                    BlockDeposits block = blocks.get((long) i);
+                    if (block == null) {
+                        logger.warn("Streamed block {} missing from batch response", chunk.get(i));
+                    }
+                    results.add(block);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Error streaming JSON-RPC batch of " + chunk.size() + " blocks", e);
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(null);
+                }
             }
-            return currentBlock.subtract(blockNumber).intValue();
-        } catch (Exception e) {
-            logger.error("Error calculating confirmations for transaction: " + transactionHash, e);
-            return 0;
         }
+        return results;
     }
 
-    public boolean isConfirmed(String transactionHash, BigInteger blockNumber) {
-        return getConfirmations(transactionHash, blockNumber) >= requiredConfirmations;
+    // Fetch several receipts with JSON-RPC batches; results follow the order of transactionHashes,
+    // with null for receipts that are missing or could not be fetched
+    public List<TransactionReceipt> getTransactionReceipts(List<String> transactionHashes) {
+        List<Request<?, EthGetTransactionReceipt>> requests = new ArrayList<>(transactionHashes.size());
+        for (String transactionHash : transactionHashes) {
+            requests.add(web3j.ethGetTransactionReceipt(transactionHash));
+        }
+
+        List<TransactionReceipt> receipts = new ArrayList<>(transactionHashes.size());
+        for (EthGetTransactionReceipt response : sendBatch(requests)) {
+            receipts.add(response != null ? response.getTransactionReceipt().orElse(null) : null);
+        }
+        return receipts;
     }
 
-    public List<Transaction> scanBlockForTransactions(BigInteger blockNumber, Set<String> monitoredAddresses) {
+    // All receipts of each block with one eth_getBlockReceipts call per block (sent in batches).
+    // Results follow the order of the given blocks; null where the receipts could not be fetched
+    // or no longer belong to the expected block hash (reorg between calls).
+    public List<List<TransactionReceipt>> getBlockReceipts(List<BigInteger> blockNumbers, List<String> blockHashes) {
+        List<List<TransactionReceipt>> results = new ArrayList<>(blockNumbers.size());
+        List<Integer> missing = new ArrayList<>();
+        List<Request<?, EthGetBlockReceipts>> requests = new ArrayList<>();
+        for (int i = 0; i < blockNumbers.size(); i++) {
+            List<TransactionReceipt> cached = receiptCache.get(blockHashes.get(i));
+            results.add(cached);
+            if (cached == null) {
+                missing.add(i);
+                requests.add(web3j.ethGetBlockReceipts(DefaultBlockParameter.valueOf(blockNumbers.get(i))));
+            }
+        }
+
+        List<EthGetBlockReceipts> responses = sendBatch(requests);
+        for (int j = 0; j < missing.size(); j++) {
+            int index = missing.get(j);
+            EthGetBlockReceipts response = responses.get(j);
+            List<TransactionReceipt> receipts = response != null ? response.getBlockReceipts().orElse(null) : null;
+            if (receipts == null) {
+                continue;
+            }
+            String blockHash = blockHashes.get(index);
+            boolean sameBlock = receipts.stream().allMatch(r -> blockHash.equalsIgnoreCase(r.getBlockHash()));
+            if (!sameBlock) {
+                logger.warn("Receipts for block {} do not match hash {}", blockNumbers.get(index), blockHash);
+                continue;
+            }
+            receiptCache.put(blockHash, receipts);
+            results.set(index, receipts);
+        }
+        return results;
+    }
+
+    // ERC-20 Transfer events to monitored addresses, read from a block's receipts
+    public List<DepositInfo> extractTransferDeposits(List<TransactionReceipt> receipts,
+                                                     OffHeapAddressSet monitoredAddresses) {
+        List<DepositInfo> deposits = new ArrayList<>();
+        for (TransactionReceipt receipt : receipts) {
+            if (!receipt.isStatusOK() || receipt.getLogs() == null) {
+                continue;
+            }
+            for (Log log : receipt.getLogs()) {
+                List<String> topics = log.getTopics();
+                if (topics == null || topics.size() != 3 || !TRANSFER_EVENT_SIGNATURE.equalsIgnoreCase(topics.get(0))) {
+                    continue;
+                }
+                String recipientTopic = topics.get(2);
+                if (recipientTopic.length() != 66
+                        || !monitoredAddresses.contains(recipientTopic, recipientTopic.length() - 40)) {
+                    continue;
+                }
+                DepositInfo deposit = parseTransferLog(log);
+                if (deposit != null) {
+                    deposits.add(deposit);
+                }
+            }
+        }
+        return deposits;
+    }
+
+    private <T extends Response<?>> List<T> sendBatch(List<Request<?, T>> requests) {
+        List<T> results = new ArrayList<>(requests.size());
+        int batchSize = Math.max(1, rpcBatchSize);
+
+        for (int start = 0; start < requests.size(); start += batchSize) {
+            List<Request<?, T>> chunk = requests.subList(start, Math.min(start + batchSize, requests.size()));
+            try {
+                BatchRequest batch = web3j.newBatch();
+                for (Request<?, T> request : chunk) {
+                    batch.add(request);
+                }
+                BatchResponse batchResponse = batch.send();
+
+                // Providers may answer a batch in any order, so match responses back by id
+                Map<Long, Response<?>> responsesById = new HashMap<>();
+                for (Response<?> response : batchResponse.getResponses()) {
+                    responsesById.put(response.getId(), response);
+                }
+                for (Request<?, T> request : chunk) {
+                    @SuppressWarnings("unchecked")
+                    T response = (T) responsesById.get(request.getId());
+                    if (response == null || response.hasError()) {
+                        logger.warn("Batch call {} failed: {}", request.getMethod(),
+                                response != null ? response.getError().getMessage() : "no response");
+                        results.add(null);
+                    } else {
+                        results.add(response);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Error sending JSON-RPC batch of " + chunk.size() + " calls", e);
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(null);
+                }
+            }
+        }
+        return results;
+    }
+
+    // Confirmations of a block relative to an already known chain head (see ChainHeadTracker)
+    public int getConfirmations(BigInteger blockNumber, BigInteger currentBlock) {
+        if (currentBlock.compareTo(blockNumber) < 0) {
+            return 0;
+        }
+        return currentBlock.subtract(blockNumber).intValue();
+    }
+
+    public List<Transaction> scanBlockForTransactions(BigInteger blockNumber, OffHeapAddressSet monitoredAddresses) {
         try {
             EthBlock.Block block = getBlock(blockNumber);
             if (block == null || block.getTransactions() == null) {
@@ -101,7 +339,7 @@ public class BlockchainService {
                     .filter(tx -> tx != null)
                     .filter(tx -> {
                         String to = tx.getTo();
-                        return to != null && monitoredAddresses.contains(to.toLowerCase());
+                        return to != null && monitoredAddresses.contains(to);
                     })
                     .collect(Collectors.toList());
         } catch (Exception e) {
@@ -110,86 +348,283 @@ public class BlockchainService {
         }
     }
 
-    public List<DepositInfo> scanBlockForTokenTransfers(BigInteger blockNumber, Set<String> monitoredAddresses) {
+    public List<DepositInfo> scanBlockForTokenTransfers(BigInteger blockNumber, OffHeapAddressSet monitoredAddresses) {
         try {
             EthBlock.Block block = getBlock(blockNumber);
             if (block == null || block.getTransactions() == null) {
                 return Collections.emptyList();
             }
 
-            List<DepositInfo> deposits = new java.util.ArrayList<>();
+            return extractDeposits(block, monitoredAddresses);
+        } catch (Exception e) {
+            logger.error("Error scanning block for token transfers: " + blockNumber, e);
+            return Collections.emptyList();
+        }
+    }
 
-            for (EthBlock.TransactionResult txResult : block.getTransactions()) {
-                Object txObj = txResult.get();
-                if (!(txObj instanceof Transaction)) {
-                    continue;
+    // Decode deposits from an already fetched block (used by the pipelined scanner)
+    public List<DepositInfo> extractDeposits(EthBlock.Block block, OffHeapAddressSet monitoredAddresses) {
+        return extractDeposits(block, monitoredAddresses, true);
+    }
+
+    // Native ETH transfers only; token transfers come from eth_getLogs in that scan mode
+    public List<DepositInfo> extractNativeTransfers(EthBlock.Block block, OffHeapAddressSet monitoredAddresses) {
+        return extractDeposits(block, monitoredAddresses, false);
+    }
+
+    private List<DepositInfo> extractDeposits(EthBlock.Block block, OffHeapAddressSet monitoredAddresses,
+                                              boolean decodeCalldata) {
+        BigInteger blockNumber = block.getNumber();
+        List<DepositInfo> deposits = new java.util.ArrayList<>();
+        if (block.getTransactions() == null) {
+            return deposits;
+        }
+
+        TransferCalldataDecoder calldata = new TransferCalldataDecoder();
+        for (EthBlock.TransactionResult txResult : block.getTransactions()) {
+            Object txObj = txResult.get();
+            if (!(txObj instanceof Transaction)) {
+                continue;
+            }
+            Transaction tx = (Transaction) txObj;
+
+            // Check if it's a token transfer (has input data)
+            String input = tx.getInput();
+            if (input != null && input.length() >= TransferCalldataDecoder.MIN_INPUT_LENGTH) {
+                // ERC20 transfer(address,uint256): the deposit address is the decoded recipient,
+                // tx.to is the token contract. Nothing is allocated unless the recipient matches.
+                if (decodeCalldata && calldata.decode(input) && calldata.isRecipientIn(monitoredAddresses)) {
+                    deposits.add(parseTokenTransfer(tx, calldata));
                 }
-                Transaction tx = (Transaction) txObj;
-                
-                // Check if transaction is to a monitored address
-                String to = tx.getTo();
-                if (to == null || !monitoredAddresses.contains(to.toLowerCase())) {
-                    continue;
+                continue;
+            }
+
+            // Check if transaction is to a monitored address
+            String to = tx.getTo();
+            if (to != null && monitoredAddresses.contains(to)
+                    && tx.getValue() != null && tx.getValue().signum() > 0) {
+                // Native ETH transfer
+                DepositInfo deposit = new DepositInfo();
+                deposit.setTransactionHash(tx.getHash());
+                deposit.setToAddress(to);
+                deposit.setAmount(tx.getValue());
+                deposit.setTokenAddress(null); // null for native ETH
+                deposit.setBlockNumber(blockNumber);
+                deposits.add(deposit);
+            }
+        }
+
+        return deposits;
+    }
+
+    // Find ERC-20 Transfer events to monitored addresses. The node filters on topic[2] (the indexed
+    // recipient) with one eth_getLogs call per chunk of addresses, all sent as JSON-RPC batches.
+    // Address sets above blockchain.logs.unfiltered.above (when set) fetch every Transfer event of
+    // the range instead and match it against the address set locally.
+    public List<DepositInfo> scanLogsForTokenTransfers(BigInteger fromBlock, BigInteger toBlock,
+                                                       OffHeapAddressSet monitoredAddresses) throws IOException {
+        List<DepositInfo> deposits = new ArrayList<>();
+        if (logUnfilteredAbove > 0 && monitoredAddresses.size() > logUnfilteredAbove) {
+            collectTransferLogs(fromBlock, toBlock, null, monitoredAddresses, deposits);
+            return deposits;
+        }
+
+        List<String> recipientTopics = new ArrayList<>((int) monitoredAddresses.size());
+        monitoredAddresses.forEach(address -> recipientTopics.add(toAddressTopic(address)));
+        int chunkSize = Math.max(1, logAddressChunkSize);
+        List<List<String>> chunks = new ArrayList<>();
+        for (int start = 0; start < recipientTopics.size(); start += chunkSize) {
+            chunks.add(recipientTopics.subList(start, Math.min(start + chunkSize, recipientTopics.size())));
+        }
+
+        int batchSize = Math.max(1, rpcBatchSize);
+        for (int start = 0; start < chunks.size(); start += batchSize) {
+            List<List<String>> part = chunks.subList(start, Math.min(start + batchSize, chunks.size()));
+            if (part.size() == 1) {
+                collectTransferLogs(fromBlock, toBlock, part.get(0), monitoredAddresses, deposits);
+                continue;
+            }
+            BatchRequest batch = web3j.newBatch();
+            List<Request<?, EthLog>> requests = new ArrayList<>(part.size());
+            for (List<String> chunk : part) {
+                Request<?, EthLog> request = web3j.ethGetLogs(transferFilter(fromBlock, toBlock, chunk));
+                requests.add(request);
+                batch.add(request);
+            }
+            Map<Long, Response<?>> responsesById = new HashMap<>();
+            for (Response<?> response : batch.send().getResponses()) {
+                responsesById.put(response.getId(), response);
+            }
+            for (int i = 0; i < part.size(); i++) {
+                Response<?> response = responsesById.get(requests.get(i).getId());
+                if (response instanceof EthLog logs && !logs.hasError()) {
+                    addTransferLogs(logs, false, monitoredAddresses, deposits);
+                } else {
+                    // Failed or missing in the batch: sent on its own, split there if it hit the result cap
+                    collectTransferLogs(fromBlock, toBlock, part.get(i), monitoredAddresses, deposits);
                 }
+            }
+        }
+        return deposits;
+    }
 
-                // Check if it's a token transfer (has input data)
-                String input = tx.getInput();
-                if (input != null && input.length() >= 138) {
-                    // ERC20 transfer method signature: transfer(address,uint256) = 0xa9059cbb
-                    if (input.startsWith("0xa9059cbb")) {
-                        try {
-                            DepositInfo deposit = parseTokenTransfer(tx, input);
-                            if (deposit != null) {
-                                deposits.add(deposit);
-                            }
-                        } catch (Exception e) {
-                            logger.warn("Error parsing token transfer: " + tx.getHash(), e);
-                        }
-                    }
-                } else if (tx.getValue() != null && tx.getValue().compareTo(BigInteger.ZERO) > 0) {
-                    // Native ETH transfer
-                    DepositInfo deposit = new DepositInfo();
-                    deposit.setTransactionHash(tx.getHash());
-                    deposit.setToAddress(to);
-                    deposit.setAmount(tx.getValue());
-                    deposit.setTokenAddress(null); // null for native ETH
-                    deposit.setBlockNumber(blockNumber);
-                    deposits.add(deposit);
+    // recipientTopics null means no recipient filter on the node
+    private void collectTransferLogs(BigInteger fromBlock, BigInteger toBlock, List<String> recipientTopics,
+                                     OffHeapAddressSet monitoredAddresses, List<DepositInfo> deposits)
+            throws IOException {
+        EthLog response = web3j.ethGetLogs(transferFilter(fromBlock, toBlock, recipientTopics)).send();
+        if (response.hasError()) {
+            if (isResultLimitError(response.getError())) {
+                // Split the query until each part fits under the provider's result cap
+                if (fromBlock.compareTo(toBlock) < 0) {
+                    BigInteger middle = fromBlock.add(toBlock).shiftRight(1);
+                    collectTransferLogs(fromBlock, middle, recipientTopics, monitoredAddresses, deposits);
+                    collectTransferLogs(middle.add(BigInteger.ONE), toBlock, recipientTopics, monitoredAddresses,
+                            deposits);
+                    return;
+                }
+                if (recipientTopics != null && recipientTopics.size() > 1) {
+                    int middle = recipientTopics.size() / 2;
+                    collectTransferLogs(fromBlock, toBlock, recipientTopics.subList(0, middle), monitoredAddresses,
+                            deposits);
+                    collectTransferLogs(fromBlock, toBlock, recipientTopics.subList(middle, recipientTopics.size()),
+                            monitoredAddresses, deposits);
+                    return;
                 }
             }
+            throw new IOException("eth_getLogs failed for blocks " + fromBlock + "-" + toBlock + ": "
+                    + response.getError().getMessage());
+        }
+        addTransferLogs(response, recipientTopics == null, monitoredAddresses, deposits);
+    }
 
-            return deposits;
-        } catch (Exception e) {
-            logger.error("Error scanning block for token transfers: " + blockNumber, e);
-            return Collections.emptyList();
+    private static EthFilter transferFilter(BigInteger fromBlock, BigInteger toBlock, List<String> recipientTopics) {
+        EthFilter filter = new EthFilter(DefaultBlockParameter.valueOf(fromBlock),
+                DefaultBlockParameter.valueOf(toBlock), (List<String>) null);
+        filter.addSingleTopic(TRANSFER_EVENT_SIGNATURE);
+        if (recipientTopics != null) {
+            filter.addNullTopic();
+            filter.addOptionalTopics(recipientTopics.toArray(new String[0]));
         }
+        return filter;
     }
 
-    private DepositInfo parseTokenTransfer(Transaction tx, String input) {
-        try {
-            // Extract recipient address and amount from input data
-            // transfer(address,uint256) - first 4 bytes are method signature
-            // Next 32 bytes are recipient address (padded)
-            // Next 32 bytes are amount (padded)
-            
-            String recipientHex = input.substring(10, 74); // Skip 0x and method signature
-            String amountHex = input.substring(74, 138);
-            
-            String recipientAddress = "0x" + recipientHex.substring(recipientHex.length() - 40);
-            BigInteger amount = new BigInteger(amountHex, 16);
-            
-            DepositInfo deposit = new DepositInfo();
-            deposit.setTransactionHash(tx.getHash());
-            deposit.setToAddress(recipientAddress.toLowerCase());
-            deposit.setAmount(amount);
-            deposit.setTokenAddress(tx.getTo()); // Contract address
-            deposit.setBlockNumber(tx.getBlockNumber());
-            
-            return deposit;
-        } catch (Exception e) {
-            logger.error("Error parsing token transfer input", e);
+    // Unfiltered results still carry transfers to any recipient; those are matched here
+    private void addTransferLogs(EthLog response, boolean unfiltered, OffHeapAddressSet monitoredAddresses,
+                                 List<DepositInfo> deposits) {
+        for (EthLog.LogResult<?> result : response.getLogs()) {
+            Object logObj = result.get();
+            if (!(logObj instanceof Log)) {
+                continue;
+            }
+            Log log = (Log) logObj;
+            if (unfiltered && !isMonitoredRecipient(log, monitoredAddresses)) {
+                continue;
+            }
+            DepositInfo deposit = parseTransferLog(log);
+            if (deposit != null) {
+                deposits.add(deposit);
+            }
+        }
+    }
+
+    private static boolean isMonitoredRecipient(Log log, OffHeapAddressSet monitoredAddresses) {
+        List<String> topics = log.getTopics();
+        if (topics == null || topics.size() != 3) {
+            return false;
+        }
+        String recipientTopic = topics.get(2);
+        return recipientTopic.length() == 66
+                && monitoredAddresses.contains(recipientTopic, recipientTopic.length() - 40);
+    }
+
+    private DepositInfo parseTransferLog(Log log) {
+        List<String> topics = log.getTopics();
+        // ERC-721 also emits Transfer, but with the token id as a fourth indexed topic
+        if (log.isRemoved() || topics == null || topics.size() != 3) {
+            return null;
+        }
+        String data = log.getData();
+        if (data == null || data.length() < 66) {
             return null;
         }
+
+        String recipientTopic = topics.get(2);
+        DepositInfo deposit = new DepositInfo();
+        deposit.setTransactionHash(log.getTransactionHash());
+        deposit.setToAddress(("0x" + recipientTopic.substring(recipientTopic.length() - 40)).toLowerCase());
+        deposit.setAmount(new BigInteger(data.substring(2, 66), 16));
+        deposit.setTokenAddress(log.getAddress()); // Contract address
+        deposit.setBlockNumber(log.getBlockNumber());
+        deposit.setBlockHash(log.getBlockHash());
+        deposit.setLogIndex(log.getLogIndex().intValue());
+        return deposit;
+    }
+
+    private static String toAddressTopic(String address) {
+        String hex = address.startsWith("0x") ? address.substring(2) : address;
+        return "0x000000000000000000000000" + hex.toLowerCase();
+    }
+
+    // Only a result-size cap is worth splitting on. Throttling replies (some providers also send
+    // those as -32005) fail the call instead, since splitting would multiply the calls.
+    private static boolean isResultLimitError(Response.Error error) {
+        String message = error.getMessage() != null ? error.getMessage().toLowerCase() : "";
+        if (message.contains("rate") || message.contains("too many requests")) {
+            return false;
+        }
+        return error.getCode() == -32005 || RESULT_LIMIT_MESSAGE.matcher(message).find();
+    }
+
+    // Materialize a deposit from calldata that already matched a monitored recipient
+    private DepositInfo parseTokenTransfer(Transaction tx, TransferCalldataDecoder calldata) {
+        DepositInfo deposit = new DepositInfo();
+        deposit.setTransactionHash(tx.getHash());
+        deposit.setToAddress(calldata.recipientHex());
+        deposit.setAmount(calldata.amount());
+        deposit.setTokenAddress(tx.getTo()); // Contract address
+        deposit.setBlockNumber(tx.getBlockNumber());
+        return deposit;
+    }
+
+    // Header fields of a block plus the deposits found in it
+    public static class BlockDeposits {
+        private BigInteger blockNumber;
+        private String blockHash;
+        private String parentHash;
+        private List<DepositInfo> deposits;
+
+        public BigInteger getBlockNumber() {
+            return blockNumber;
+        }
+
+        public void setBlockNumber(BigInteger blockNumber) {
+            this.blockNumber = blockNumber;
+        }
+
+        public String getBlockHash() {
+            return blockHash;
+        }
+
+        public void setBlockHash(String blockHash) {
+            this.blockHash = blockHash;
+        }
+
+        public String getParentHash() {
+            return parentHash;
+        }
+
+        public void setParentHash(String parentHash) {
+            this.parentHash = parentHash;
+        }
+
+        public List<DepositInfo> getDeposits() {
+            return deposits;
+        }
+
+        public void setDeposits(List<DepositInfo> deposits) {
+            this.deposits = deposits;
+        }
     }
 
     public static class DepositInfo {
@@ -198,6 +633,8 @@ public class BlockchainService {
         private BigInteger amount;
         private String tokenAddress; // null for native ETH
         private BigInteger blockNumber;
+        private String blockHash; // Only known for log-based deposits
+        private Integer logIndex; // null for native ETH
 
         public String getTransactionHash() {
             return transactionHash;
@@ -238,6 +675,22 @@ public class BlockchainService {
         public void setBlockNumber(BigInteger blockNumber) {
             this.blockNumber = blockNumber;
         }
+
+        public String getBlockHash() {
+            return blockHash;
+        }
+
+        public void setBlockHash(String blockHash) {
+            this.blockHash = blockHash;
+        }
+
+        public Integer getLogIndex() {
+            return logIndex;
+        }
+
+        public void setLogIndex(Integer logIndex) {
+            this.logIndex = logIndex;
+        }
     }
 }
 
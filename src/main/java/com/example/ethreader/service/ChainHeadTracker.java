@@ -0,0 +1,159 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.config.FinalizedResponseCache;
+import com.example.ethreader.model.DepositTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+
+// Latest, safe and finalized heights of the chain, refreshed by one background thread so that
+// confirmation math never waits on the node. The head comes from the newHeads subscription when
+// it is live and from polling eth_blockNumber otherwise; safe and finalized are polled less often
+// and the finalized height also drives the RPC response cache.
+@Service
+public class ChainHeadTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChainHeadTracker.class);
+
+    @Autowired
+    private BlockchainService blockchainService;
+
+    @Autowired
+    private NewHeadsSubscriber newHeadsSubscriber;
+
+    @Autowired
+    private FinalizedResponseCache finalizedResponseCache;
+
+    @Value("${blockchain.chain:sepolia}")
+    private String chain;
+
+    @Value("${blockchain.head.poll.interval:2000}") // ms between eth_blockNumber polls without a live subscription
+    private long pollIntervalMs;
+
+    @Value("${blockchain.cache.finalized.refresh:60000}") // ms between safe/finalized height refreshes
+    private long finalityRefreshMs;
+
+    @Value("${blockchain.cache.finality.depth:64}") // Used when the node has no "finalized" tag
+    private int fallbackFinalityDepth;
+
+    private volatile BigInteger polledHead; // null until the first successful poll
+    private volatile BigInteger safeBlock;
+    private volatile BigInteger finalizedBlock;
+    private long lastFinalityRefresh = 0;
+    private Thread pollingThread;
+    private volatile boolean running = false;
+
+    @PostConstruct
+    public void init() {
+        pollIntervalMs = Math.max(100, pollIntervalMs);
+        running = true;
+        pollingThread = new Thread(this::poll, "ChainHead-" + chain);
+        pollingThread.setDaemon(true);
+        pollingThread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (pollingThread != null) {
+            pollingThread.interrupt();
+        }
+    }
+
+    // Latest head, or zero while it has never been available
+    public BigInteger getHead() {
+        BigInteger pushed = newHeadsSubscriber.getLatestHead();
+        BigInteger polled = polledHead;
+        if (pushed != null && (polled == null || pushed.compareTo(polled) >= 0)) {
+            return pushed;
+        }
+        if (polled == null) {
+            // First use before the poller has run; later calls read the cached value
+            return refreshHead();
+        }
+        return polled;
+    }
+
+    // Latest safe block, or null when unknown (the node may not support the tag)
+    public BigInteger getSafeBlock() {
+        return safeBlock;
+    }
+
+    // Latest finalized block, or head minus the fallback depth when the node has no "finalized" tag
+    public BigInteger getFinalizedBlock() {
+        return finalizedBlock;
+    }
+
+    public int getConfirmations(BigInteger blockNumber) {
+        BigInteger head = getHead();
+        if (head.signum() == 0 || blockNumber == null) {
+            return 0;
+        }
+        return blockchainService.getConfirmations(blockNumber, head);
+    }
+
+    // Stored confirmations are only written at status changes; unconfirmed deposits count live
+    public int getConfirmations(DepositTransaction deposit) {
+        if (deposit.getStatus() != DepositTransaction.DepositStatus.PENDING
+                && deposit.getStatus() != DepositTransaction.DepositStatus.CONFIRMING
+                && deposit.getStatus() != DepositTransaction.DepositStatus.CONFIRMED) {
+            return deposit.getConfirmations();
+        }
+        return Math.max(deposit.getConfirmations(), getConfirmations(deposit.getBlockNumber()));
+    }
+
+    private void poll() {
+        while (running) {
+            try {
+                // With a live subscription the head is pushed; polling only fills the gaps
+                if (newHeadsSubscriber.getLatestHead() == null) {
+                    refreshHead();
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastFinalityRefresh >= finalityRefreshMs) {
+                    lastFinalityRefresh = now;
+                    refreshFinality();
+                }
+            } catch (Exception e) {
+                logger.error("Error refreshing the {} chain head", chain, e);
+            }
+            try {
+                Thread.sleep(pollIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private BigInteger refreshHead() {
+        BigInteger head = blockchainService.getCurrentBlockNumber();
+        if (head.signum() == 0) {
+            // Keep the last known head rather than reporting zero confirmations everywhere
+            BigInteger polled = polledHead;
+            return polled != null ? polled : head;
+        }
+        polledHead = head;
+        return head;
+    }
+
+    private void refreshFinality() {
+        BigInteger finalized = blockchainService.getFinalizedBlockNumber();
+        if (finalized == null) {
+            BigInteger head = getHead();
+            if (head.signum() == 0) {
+                return;
+            }
+            finalized = head.subtract(BigInteger.valueOf(fallbackFinalityDepth)).max(BigInteger.ZERO);
+        }
+        finalizedBlock = finalized;
+        safeBlock = blockchainService.getSafeBlockNumber();
+        finalizedResponseCache.setFinalizedBlock(finalized.longValue());
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.config.ChainRegistry;
+import com.example.ethreader.model.DepositIdempotency;
+import com.example.ethreader.model.DepositTransaction;
+import com.example.ethreader.model.HotWallet;
+import com.example.ethreader.repository.DepositTransactionRepository;
+import com.example.ethreader.repository.HotWalletRepository;
+import com.example.ethreader.util.BulkWrites;
+import com.example.ethreader.util.OffHeapAddressSet;
+import com.example.ethreader.util.SeenKeyCache;
+import jakarta.annotation.PostConstruct;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fetches and decodes the deposits of consecutive blocks and persists them. Shared by the live
+// scanner and the backfill job so both detect deposits the same way in every token scan mode.
+@Service
+public class DepositIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DepositIngestionService.class);
+    private static final String TOKEN_SCAN_MODE_LOGS = "logs";
+    private static final String TOKEN_SCAN_MODE_RECEIPTS = "receipts";
+    private static final int SEEN_WARM_LIMIT = 10000;
+
+    @Autowired
+    private BlockchainService blockchainService;
+
+    @Autowired
+    private ChainHeadTracker chainHeadTracker;
+
+    @Autowired
+    private HotWalletRepository hotWalletRepository;
+
+    @Autowired
+    private DepositTransactionRepository depositTransactionRepository;
+
+    @Autowired
+    private ChainRegistry chainRegistry;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PartitionLeaseService partitionLeaseService;
+
+    @Autowired
+    private LeaderElectionService leaderElectionService;
+
+    @Autowired
+    private MongoIndexService mongoIndexService;
+
+    @Value("${blockchain.chain:sepolia}")
+    private String chain;
+
+    @Value("${blockchain.scan.token.mode:logs}") // "logs" (eth_getLogs), "receipts" (eth_getBlockReceipts) or "calldata"
+    private String tokenScanMode;
+
+    @Value("${blockchain.scan.streaming:true}") // Decode block responses as a stream, binding only matching txs
+    private boolean streamingDecode;
+
+    @Value("${blockchain.scan.seen.cache.size:100000}") // Recently stored deposits remembered to skip lookups
+    private int seenCacheSize;
+
+    @Value("${blockchain.scan.seen.cache.ttl:3600000}") // ms a stored deposit stays remembered
+    private long seenCacheTtlMs;
+
+    private SeenKeyCache seenDeposits;
+    private final AtomicLong seenGeneration = new AtomicLong(); // Bumped whenever the cache is cleared
+    private volatile boolean seenWarmed = false;
+    private long seenOwnershipVersion;
+    private long seenFencingToken;
+
+    @PostConstruct
+    public void init() {
+        seenDeposits = new SeenKeyCache(Math.max(1, seenCacheSize), seenCacheTtlMs);
+    }
+
+    // Deposits of the given consecutive blocks, in block order
+    public List<ScannedBlock> fetchBlockDeposits(List<BigInteger> blockNumbers, OffHeapAddressSet monitoredAddresses) {
+        boolean logsMode = TOKEN_SCAN_MODE_LOGS.equalsIgnoreCase(tokenScanMode);
+        boolean receiptsMode = TOKEN_SCAN_MODE_RECEIPTS.equalsIgnoreCase(tokenScanMode);
+        boolean calldataMode = !logsMode && !receiptsMode;
+        List<ScannedBlock> results = new ArrayList<>(blockNumbers.size());
+        if (streamingDecode) {
+            List<BlockchainService.BlockDeposits> blocks =
+                    blockchainService.getBlockDeposits(blockNumbers, monitoredAddresses, calldataMode);
+            for (int i = 0; i < blocks.size(); i++) {
+                BlockchainService.BlockDeposits block = blocks.get(i);
+                if (block == null) {
+                    throw new IllegalStateException("Block not available: " + blockNumbers.get(i));
+                }
+                results.add(new ScannedBlock(block.getBlockNumber(), block.getBlockHash(), block.getParentHash(),
+                        block.getDeposits()));
+            }
+        } else {
+            List<EthBlock.Block> blocks = blockchainService.getBlocks(blockNumbers);
+            for (int i = 0; i < blocks.size(); i++) {
+                EthBlock.Block block = blocks.get(i);
+                if (block == null) {
+                    throw new IllegalStateException("Block not available: " + blockNumbers.get(i));
+                }
+                List<BlockchainService.DepositInfo> deposits;
+                if (calldataMode) {
+                    // Scan for both native ETH and token transfers
+                    deposits = blockchainService.extractDeposits(block, monitoredAddresses);
+                } else {
+                    deposits = new ArrayList<>(blockchainService.extractNativeTransfers(block, monitoredAddresses));
+                }
+                results.add(new ScannedBlock(block.getNumber(), block.getHash(), block.getParentHash(), deposits));
+            }
+        }
+
+        if (logsMode) {
+            BigInteger fromBlock = blockNumbers.get(0);
+            List<BlockchainService.DepositInfo> tokenDeposits;
+            try {
+                tokenDeposits = blockchainService.scanLogsForTokenTransfers(
+                        fromBlock, blockNumbers.get(blockNumbers.size() - 1), monitoredAddresses);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (BlockchainService.DepositInfo deposit : tokenDeposits) {
+                ScannedBlock block = results.get(deposit.getBlockNumber().subtract(fromBlock).intValue());
+                // Logs and blocks are separate calls; a reorg in between must not mix two forks
+                if (!block.blockHash.equalsIgnoreCase(deposit.getBlockHash())) {
+                    throw new IllegalStateException("Block " + block.blockNumber + " changed while scanning");
+                }
+                block.deposits.add(deposit);
+            }
+        }
+
+        if (receiptsMode) {
+            addReceiptDeposits(results, monitoredAddresses);
+        }
+        return results;
+    }
+
+    // Drop native transfers whose transaction reverted and add Transfer events from the receipts
+    // of each block, fetched once per block with eth_getBlockReceipts
+    private void addReceiptDeposits(List<ScannedBlock> blocks, OffHeapAddressSet monitoredAddresses) {
+        List<BigInteger> numbers = new ArrayList<>(blocks.size());
+        List<String> hashes = new ArrayList<>(blocks.size());
+        for (ScannedBlock block : blocks) {
+            numbers.add(block.blockNumber);
+            hashes.add(block.blockHash);
+        }
+        List<List<TransactionReceipt>> receipts = blockchainService.getBlockReceipts(numbers, hashes);
+        for (int i = 0; i < blocks.size(); i++) {
+            ScannedBlock block = blocks.get(i);
+            List<TransactionReceipt> blockReceipts = receipts.get(i);
+            if (blockReceipts == null) {
+                throw new IllegalStateException("Receipts not available for block " + block.blockNumber);
+            }
+            Set<String> failed = new HashSet<>();
+            for (TransactionReceipt receipt : blockReceipts) {
+                if (!receipt.isStatusOK()) {
+                    failed.add(receipt.getTransactionHash().toLowerCase());
+                }
+            }
+            if (!failed.isEmpty()) {
+                block.deposits.removeIf(deposit -> failed.contains(deposit.getTransactionHash().toLowerCase()));
+            }
+            block.deposits.addAll(blockchainService.extractTransferDeposits(blockReceipts, monitoredAddresses));
+        }
+    }
+
+    // Store the deposits and return the ones that are new (or re-included after a reorg) and need
+    // processing. With updateExisting true the stored confirmation count of deposits already
+    // stored is refreshed (their status is the processor's); with false they are left untouched,
+    // which is what a backfill over blocks the live scanner may also have seen wants. Deposits this node
+    // stored recently are skipped in both cases; their confirmations are kept by the processor.
+    public List<DepositTransaction> saveDeposits(List<BlockchainService.DepositInfo> deposits, boolean updateExisting) {
+        List<DepositTransaction> newDeposits = new ArrayList<>();
+        if (deposits.isEmpty()) {
+            return newDeposits;
+        }
+        // Without the unique index concurrent scanners could store a deposit twice
+        mongoIndexService.requireIndexes();
+
+        // Deposits stored recently (e.g. blocks rescanned after a restart) need no lookup at all
+        ensureSeenCacheCurrent();
+        long generation = seenGeneration.get();
+        List<BlockchainService.DepositInfo> unseen = new ArrayList<>(deposits.size());
+        for (BlockchainService.DepositInfo deposit : deposits) {
+            if (!seenDeposits.contains(depositKey(deposit.getTransactionHash(), deposit.getLogIndex()))) {
+                unseen.add(deposit);
+            }
+        }
+        if (unseen.isEmpty()) {
+            return newDeposits;
+        }
+        deposits = unseen;
+
+        // One lookup for the recipients' wallets and one for the stored deposits, whatever the block size
+        Set<String> addresses = new HashSet<>();
+        Set<String> transactionHashes = new HashSet<>();
+        for (BlockchainService.DepositInfo deposit : deposits) {
+            addresses.add(deposit.getToAddress());
+            transactionHashes.add(deposit.getTransactionHash());
+        }
+        Map<String, HotWallet> wallets = new HashMap<>();
+        for (HotWallet wallet : hotWalletRepository.findOwnersByAddressIn(addresses)) {
+            wallets.putIfAbsent(wallet.getAddress(), wallet);
+        }
+        // A tx can carry several token transfers, so deposits are keyed by hash and log index
+        Map<String, DepositTransaction> stored = new HashMap<>();
+        // Token deposits stored before log indexes were recorded, by hash, token and recipient
+        Map<String, DepositTransaction> legacyTokenDeposits = new HashMap<>();
+        for (DepositTransaction existing : depositTransactionRepository.findByTransactionHashIn(transactionHashes)) {
+            stored.put(depositKey(existing.getTransactionHash(), existing.getLogIndex()), existing);
+            if (existing.getLogIndex() == null && existing.getTokenAddress() != null) {
+                legacyTokenDeposits.putIfAbsent(legacyKey(existing.getTransactionHash(), existing.getTokenAddress(),
+                        existing.getWalletAddress()), existing);
+            }
+        }
+        List<DepositTransaction> adopted = new ArrayList<>();
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DepositTransaction.class);
+        Map<Integer, DepositTransaction> inserts = new HashMap<>(); // By position in the bulk write
+        int writes = 0;
+        for (BlockchainService.DepositInfo deposit : deposits) {
+            HotWallet wallet = wallets.get(deposit.getToAddress());
+            if (wallet == null || !chainRegistry.isOwnedBy(chain, wallet.getChain())) {
+                continue;
+            }
+
+            String key = depositKey(deposit.getTransactionHash(), deposit.getLogIndex());
+            DepositTransaction existingTx = stored.get(key);
+            if (existingTx == null && deposit.getLogIndex() != null && deposit.getTokenAddress() != null) {
+                existingTx = legacyTokenDeposits.remove(legacyKey(deposit.getTransactionHash(),
+                        deposit.getTokenAddress(), deposit.getToAddress()));
+                if (existingTx != null) {
+                    // Same transfer stored without its log index; record it now instead of storing it again
+                    existingTx.setLogIndex(deposit.getLogIndex());
+                    bulk.updateOne(Query.query(Criteria.where("_id").is(existingTx.getId())),
+                            new Update().set("logIndex", deposit.getLogIndex()));
+                    writes++;
+                    stored.put(key, existingTx);
+                    adopted.add(existingTx);
+                }
+            }
+
+            if (existingTx != null && existingTx.getStatus() == DepositTransaction.DepositStatus.ORPHANED) {
+                // Re-included after a reorg, possibly in a different block
+                existingTx.setBlockNumber(deposit.getBlockNumber());
+                existingTx.setConfirmations(0);
+                existingTx.setStatus(DepositTransaction.DepositStatus.PENDING);
+                bulk.updateOne(Query.query(Criteria.where("_id").is(existingTx.getId())), new Update()
+                        .set("blockNumber", existingTx.getBlockNumber())
+                        .set("confirmations", 0)
+                        .set("status", existingTx.getStatus()));
+                writes++;
+                newDeposits.add(existingTx);
+                logger.info("Orphaned deposit {} re-included in block {}", existingTx.getTransactionHash(),
+                        deposit.getBlockNumber());
+            } else if (existingTx != null) {
+                if (!updateExisting) {
+                    continue;
+                }
+                // Refresh the stored count only; status changes and crediting belong to the processor
+                int confirmations = chainHeadTracker.getConfirmations(deposit.getBlockNumber());
+                existingTx.setConfirmations(confirmations);
+                bulk.updateOne(Query.query(Criteria.where("_id").is(existingTx.getId())),
+                        new Update().set("confirmations", confirmations));
+                writes++;
+            } else {
+                // Create new deposit transaction
+                DepositTransaction depositTx = new DepositTransaction();
+                depositTx.setId(new ObjectId().toHexString()); // Assigned here; the queue entry refers to it
+                depositTx.setTransactionHash(deposit.getTransactionHash());
+                depositTx.setWalletAddress(deposit.getToAddress());
+                depositTx.setUserId(wallet.getUserId());
+                depositTx.setAmount(deposit.getAmount());
+                depositTx.setTokenAddress(deposit.getTokenAddress());
+                depositTx.setChain(wallet.getChain()); // Save chain information
+                depositTx.setBlockNumber(deposit.getBlockNumber());
+                depositTx.setLogIndex(deposit.getLogIndex());
+                depositTx.setConfirmations(0);
+                depositTx.setStatus(DepositTransaction.DepositStatus.PENDING);
+
+                bulk.insert(depositTx);
+                inserts.put(writes, depositTx);
+                writes++;
+                stored.put(key, depositTx); // The same transfer twice in one call is stored once
+                newDeposits.add(depositTx);
+            }
+        }
+        if (writes > 0) {
+            try {
+                bulk.execute();
+            } catch (BulkOperationException e) {
+                if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                    throw e; // The transaction is aborted; the block is retried and finds the stored rows
+                }
+                // Stored concurrently by another scanner (e.g. a backfill), which also queued them
+                for (int index : BulkWrites.duplicateIndexes(e)) {
+                    DepositTransaction duplicate = inserts.get(index);
+                    if (duplicate != null) {
+                        newDeposits.remove(duplicate);
+                    }
+                }
+            }
+        }
+        for (DepositTransaction deposit : adopted) {
+            // Its credit record (if any) must carry the same key to keep guarding against a second credit
+            mongoTemplate.updateFirst(Query.query(Criteria.where("transactionHash").is(deposit.getTransactionHash())
+                            .and("chain").is(deposit.getChain())
+                            .and("logIndex").is(null)),
+                    new Update().set("logIndex", deposit.getLogIndex()), DepositIdempotency.class);
+        }
+        rememberStored(stored.values(), generation);
+        return newDeposits;
+    }
+
+    // Forget every remembered deposit, e.g. after a reorg orphaned some of them
+    public void forgetSeenDeposits() {
+        synchronized (seenGeneration) {
+            seenGeneration.incrementAndGet();
+            seenDeposits.clear();
+        }
+    }
+
+    public SeenKeyCache getSeenDeposits() {
+        return seenDeposits;
+    }
+
+    // Another node or leadership term may have orphaned deposits we remember; start over then
+    private synchronized void ensureSeenCacheCurrent() {
+        long ownershipVersion = partitionLeaseService.getOwnershipVersion();
+        long fencingToken = leaderElectionService.getFencingToken();
+        if (seenWarmed && ownershipVersion == seenOwnershipVersion && fencingToken == seenFencingToken) {
+            return;
+        }
+        forgetSeenDeposits();
+        Query recent = new Query().with(Sort.by(Sort.Direction.DESC, "createdAt")).limit(SEEN_WARM_LIMIT);
+        recent.fields().include("transactionHash", "logIndex", "chain", "status");
+        List<DepositTransaction> stored = mongoTemplate.find(recent, DepositTransaction.class);
+        stored.removeIf(deposit -> !chainRegistry.isOwnedBy(chain, deposit.getChain()));
+        for (DepositTransaction deposit : stored) {
+            if (deposit.getStatus() != DepositTransaction.DepositStatus.ORPHANED) {
+                seenDeposits.add(depositKey(deposit.getTransactionHash(), deposit.getLogIndex()));
+            }
+        }
+        seenOwnershipVersion = ownershipVersion;
+        seenFencingToken = fencingToken;
+        seenWarmed = true;
+        logger.debug("Seen-deposit cache for {} warmed with {} deposits", chain, seenDeposits.size());
+    }
+
+    // Remember the deposits once they are durable (inside a transaction, after its commit), unless
+    // the cache was cleared since they were read
+    private void rememberStored(Collection<DepositTransaction> deposits, long generation) {
+        List<String> keys = new ArrayList<>(deposits.size());
+        for (DepositTransaction deposit : deposits) {
+            if (deposit.getStatus() != DepositTransaction.DepositStatus.ORPHANED) {
+                keys.add(depositKey(deposit.getTransactionHash(), deposit.getLogIndex()));
+            }
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(keys, generation);
+                }
+            });
+        } else {
+            remember(keys, generation);
+        }
+    }
+
+    private void remember(List<String> keys, long generation) {
+        synchronized (seenGeneration) {
+            if (seenGeneration.get() == generation) {
+                keys.forEach(seenDeposits::add);
+            }
+        }
+    }
+
+    private static String legacyKey(String transactionHash, String tokenAddress, String walletAddress) {
+        return transactionHash + "#" + tokenAddress.toLowerCase() + "#" + walletAddress.toLowerCase();
+    }
+
+    private static String depositKey(String transactionHash, Integer logIndex) {
+        return transactionHash + "#" + logIndex;
+    }
+
+    public static class ScannedBlock {
+        private final BigInteger blockNumber;
+        private final String blockHash;
+        private final String parentHash;
+        private final List<BlockchainService.DepositInfo> deposits;
+
+        ScannedBlock(BigInteger blockNumber, String blockHash, String parentHash,
+                     List<BlockchainService.DepositInfo> deposits) {
+            this.blockNumber = blockNumber;
+            this.blockHash = blockHash;
+            this.parentHash = parentHash;
+            this.deposits = deposits;
+        }
+
+        public BigInteger getBlockNumber() {
+            return blockNumber;
+        }
+
+        public String getBlockHash() {
+            return blockHash;
+        }
+
+        public String getParentHash() {
+            return parentHash;
+        }
+
+        public List<BlockchainService.DepositInfo> getDeposits() {
+            return deposits;
+        }
+    }
+}
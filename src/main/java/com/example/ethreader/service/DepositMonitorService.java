@@ -1,25 +1,34 @@
 package com.example.ethreader.service;
 
+import com.example.ethreader.config.ChainRegistry;
 import com.example.ethreader.model.DepositTransaction;
-import com.example.ethreader.model.HotWallet;
+import com.example.ethreader.model.ScanCheckpoint;
 import com.example.ethreader.repository.DepositTransactionRepository;
-import com.example.ethreader.repository.HotWalletRepository;
+import com.example.ethreader.util.BlockHashRing;
+import com.example.ethreader.util.OffHeapAddressSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.methods.response.EthBlock;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.math.BigInteger;
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class DepositMonitorService {
@@ -30,33 +39,72 @@ public class DepositMonitorService {
     private BlockchainService blockchainService;
 
     @Autowired
-    private HotWalletRepository hotWalletRepository;
+    private ChainHeadTracker chainHeadTracker;
 
     @Autowired
     private DepositTransactionRepository depositTransactionRepository;
 
+    @Autowired
+    private ScanCheckpointService scanCheckpointService;
+
+    @Autowired
+    private NewHeadsSubscriber newHeadsSubscriber;
+
+    @Autowired
+    private MonitoredAddressIndex monitoredAddressIndex;
+
+    @Autowired
+    private DepositIngestionService depositIngestionService;
+
+    @Autowired
+    private ChainRegistry chainRegistry;
+
+    @Autowired
+    private PartitionLeaseService partitionLeaseService;
+
+    @Autowired
+    private LeaderElectionService leaderElectionService;
+
+    @Autowired
+    private DepositOutboxService depositOutboxService;
+
+    @Value("${blockchain.chain:sepolia}") // Chain name used for the scan checkpoint
+    private String chain;
+
     @Value("${blockchain.scan.interval:5000}") // 5 seconds default
     private long scanIntervalMs;
 
-    @Value("${blockchain.start.block:0}") // Start from block 0 or latest
+    @Value("${blockchain.start.block:0}") // Used only when no checkpoint exists; 0 means start at the head
     private BigInteger startBlock;
 
-    private BlockingQueue<DepositTransaction> depositQueue;
+    @Value("${blockchain.scan.pipeline.window:8}") // Max blocks fetched in parallel while catching up
+    private int pipelineWindow;
+
+    @Value("${blockchain.scan.batch.size:4}") // Blocks requested per JSON-RPC batch while scanning
+    private int scanBatchSize;
+
+    @Value("${blockchain.reorg.depth:128}") // Recent block hashes kept for reorg detection
+    private int reorgDepth;
+
     private Thread monitoringThread;
+    private ExecutorService fetchExecutor;
     private volatile boolean running = false;
-    private BigInteger lastScannedBlock = BigInteger.ZERO;
+    private volatile BigInteger lastScannedBlock; // null until restored from the checkpoint
+    private BlockHashRing blockHashRing; // Only touched by the monitoring thread
+
+    // Scan throughput metrics, written only by the monitoring thread and read by status requests
+    private volatile int inFlightBlocks = 0;
+    private volatile double blocksPerSecond = 0;
+    private volatile long rateWindowStart = System.nanoTime();
+    private int rateWindowBlocks = 0; // Only touched by the monitoring thread
 
     @PostConstruct
     public void init() {
-        depositQueue = new LinkedBlockingQueue<>();
-        
-        // Initialize last scanned block
-        if (startBlock.compareTo(BigInteger.ZERO) == 0) {
-            lastScannedBlock = blockchainService.getCurrentBlockNumber();
-        } else {
-            lastScannedBlock = startBlock;
-        }
+        pipelineWindow = Math.max(1, pipelineWindow);
+        scanBatchSize = Math.max(1, Math.min(scanBatchSize, pipelineWindow));
+        blockHashRing = new BlockHashRing(Math.max(1, reorgDepth));
 
+        // The scan cursor is restored on the monitoring thread so startup never waits on MongoDB or RPC
         startMonitoring();
     }
 
@@ -71,7 +119,14 @@ public class DepositMonitorService {
         }
 
         running = true;
-        monitoringThread = new Thread(this::monitorBlocks, "DepositMonitor");
+        AtomicInteger fetchThreadCount = new AtomicInteger();
+        fetchExecutor = Executors.newFixedThreadPool(pipelineWindow, runnable -> {
+            Thread thread = new Thread(runnable,
+                    "DepositMonitor-" + chain + "-fetch-" + fetchThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        monitoringThread = new Thread(this::monitorBlocks, "DepositMonitor-" + chain);
         monitoringThread.setDaemon(true);
         monitoringThread.start();
         logger.info("Deposit monitoring started");
@@ -87,32 +142,49 @@ public class DepositMonitorService {
                 Thread.currentThread().interrupt();
             }
         }
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdownNow();
+        }
         logger.info("Deposit monitoring stopped");
     }
 
     private void monitorBlocks() {
         while (running) {
             try {
-                BigInteger currentBlock = blockchainService.getCurrentBlockNumber();
-                
+                if (!leaderElectionService.isLeader()) {
+                    // Follower: drop the cursor so a later term resumes from the committed checkpoint
+                    if (lastScannedBlock != null) {
+                        logger.info("Not the {} leader any more, scanning paused at block {}", chain, lastScannedBlock);
+                        lastScannedBlock = null;
+                        blockHashRing.clear();
+                    }
+                    leaderElectionService.awaitLeadership(scanIntervalMs);
+                    continue;
+                }
+                if (lastScannedBlock == null && !initializeCursor()) {
+                    Thread.sleep(scanIntervalMs);
+                    continue;
+                }
+
+                // Pushed over WebSocket when subscribed, polled by the tracker otherwise
+                BigInteger currentBlock = chainHeadTracker.getHead();
+
                 if (currentBlock.compareTo(lastScannedBlock) > 0) {
-                    // Get all active wallet addresses to monitor
-                    Set<String> monitoredAddresses = getMonitoredAddresses();
+                    // Active wallet addresses, kept current incrementally by the index
+                    monitoredAddressIndex.ensureLoaded();
+                    OffHeapAddressSet monitoredAddresses = monitoredAddressIndex.getAddresses();
                     
-                    if (!monitoredAddresses.isEmpty()) {
-                        // Scan blocks from lastScannedBlock + 1 to currentBlock
-                        for (BigInteger blockNumber = lastScannedBlock.add(BigInteger.ONE); 
-                             blockNumber.compareTo(currentBlock) <= 0; 
-                             blockNumber = blockNumber.add(BigInteger.ONE)) {
-                            
-                            scanBlock(blockNumber, monitoredAddresses);
-                        }
+                    if (monitoredAddresses.size() > 0) {
+                        // Scan blocks from lastScannedBlock + 1 to currentBlock, advancing the cursor per block
+                        scanRange(lastScannedBlock.add(BigInteger.ONE), currentBlock, monitoredAddresses);
+                    } else {
+                        scanCheckpointService.save(partitionLeaseService.getCheckpointName(), currentBlock, null,
+                                leaderElectionService.getFencingToken());
+                        lastScannedBlock = currentBlock;
                     }
-                    
-                    lastScannedBlock = currentBlock;
                 }
                 
-                Thread.sleep(scanIntervalMs);
+                waitForNextBlock();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 logger.info("Monitoring thread interrupted");
@@ -129,87 +201,249 @@ public class DepositMonitorService {
         }
     }
 
-    private Set<String> getMonitoredAddresses() {
-        List<HotWallet> activeWallets = hotWalletRepository.findByActiveTrue();
-        return activeWallets.stream()
-                .map(wallet -> wallet.getAddress().toLowerCase())
-                .collect(Collectors.toSet());
+    private void waitForNextBlock() throws InterruptedException {
+        if (newHeadsSubscriber.isConnected()) {
+            // Push-driven: wake as soon as a head beyond the cursor arrives. The loop re-checks every
+            // scanIntervalMs and only polls the node when the subscription is down or stale.
+            newHeadsSubscriber.awaitHeadAfter(lastScannedBlock, scanIntervalMs);
+        } else {
+            Thread.sleep(scanIntervalMs);
+        }
     }
 
-    private void scanBlock(BigInteger blockNumber, Set<String> monitoredAddresses) {
-        try {
-            // Scan for both native ETH and token transfers
-            List<BlockchainService.DepositInfo> deposits = blockchainService
-                    .scanBlockForTokenTransfers(blockNumber, monitoredAddresses);
+    private boolean initializeCursor() {
+        Optional<ScanCheckpoint> checkpoint = scanCheckpointService.load(partitionLeaseService.getCheckpointName());
+        if (checkpoint.isEmpty() && partitionLeaseService.isSharded()) {
+            // First start in sharded mode: continue from the checkpoint of the former single node
+            checkpoint = scanCheckpointService.load(chain);
+        }
+        if (checkpoint.isPresent()) {
+            lastScannedBlock = checkpoint.get().getBlockNumber();
+            if (checkpoint.get().getBlockHash() != null) {
+                // Lets the first block after a restart detect a reorg that happened while we were down
+                blockHashRing.add(lastScannedBlock.longValueExact(), checkpoint.get().getBlockHash(), null);
+            }
+            logger.info("Resuming {} scan from checkpoint block {}", chain, lastScannedBlock);
+            return true;
+        }
 
-            for (BlockchainService.DepositInfo deposit : deposits) {
-                // Find the wallet for this address
-                HotWallet wallet = hotWalletRepository.findByAddress(deposit.getToAddress())
-                        .orElse(null);
+        if (startBlock.compareTo(BigInteger.ZERO) != 0) {
+            lastScannedBlock = startBlock;
+        } else {
+            BigInteger currentBlock = chainHeadTracker.getHead();
+            if (currentBlock.signum() == 0) {
+                return false; // Head unavailable, retry on the next cycle
+            }
+            lastScannedBlock = currentBlock;
+        }
+        logger.info("No checkpoint for {}, starting scan after block {}", chain, lastScannedBlock);
+        return true;
+    }
 
-                if (wallet == null) {
-                    continue;
-                }
+    private void scanRange(BigInteger fromBlock, BigInteger toBlock, OffHeapAddressSet monitoredAddresses)
+            throws InterruptedException {
+        // Blocks are fetched and decoded concurrently (up to pipelineWindow in flight),
+        // but committed strictly in block order so lastScannedBlock never skips a block
+        Deque<PendingBlock> inFlight = new ArrayDeque<>();
+        BigInteger nextBlock = fromBlock;
 
-                // Check if transaction already exists
-                DepositTransaction existingTx = depositTransactionRepository
-                        .findByTransactionHash(deposit.getTransactionHash())
-                        .orElse(null);
+        try {
+            while (running && leaderElectionService.isLeader()
+                    && (!inFlight.isEmpty() || nextBlock.compareTo(toBlock) <= 0)) {
+                // Top up the window with JSON-RPC batches of consecutive blocks
+                while (nextBlock.compareTo(toBlock) <= 0) {
+                    int batchBlocks = toBlock.subtract(nextBlock).add(BigInteger.ONE)
+                            .min(BigInteger.valueOf(scanBatchSize)).intValue();
+                    if (!inFlight.isEmpty() && inFlight.size() + batchBlocks > pipelineWindow) {
+                        break;
+                    }
 
-                if (existingTx != null) {
-                    // Update confirmations
-                    int confirmations = blockchainService.getConfirmations(
-                            deposit.getTransactionHash(), deposit.getBlockNumber());
-                    existingTx.setConfirmations(confirmations);
-                    
-                    // Update status based on confirmations
-                    if (confirmations >= 12) {
-                        if (existingTx.getStatus() == DepositTransaction.DepositStatus.PENDING ||
-                            existingTx.getStatus() == DepositTransaction.DepositStatus.CONFIRMING) {
-                            existingTx.setStatus(DepositTransaction.DepositStatus.CONFIRMED);
-                        }
-                    } else if (confirmations > 0) {
-                        existingTx.setStatus(DepositTransaction.DepositStatus.CONFIRMING);
+                    List<BigInteger> blockNumbers = new ArrayList<>(batchBlocks);
+                    for (int i = 0; i < batchBlocks; i++) {
+                        blockNumbers.add(nextBlock);
+                        nextBlock = nextBlock.add(BigInteger.ONE);
                     }
-                    
-                    depositTransactionRepository.save(existingTx);
-                } else {
-                    // Create new deposit transaction
-                    DepositTransaction depositTx = new DepositTransaction();
-                    depositTx.setTransactionHash(deposit.getTransactionHash());
-                    depositTx.setWalletAddress(deposit.getToAddress());
-                    depositTx.setUserId(wallet.getUserId());
-                    depositTx.setAmount(deposit.getAmount());
-                    depositTx.setTokenAddress(deposit.getTokenAddress());
-                    depositTx.setChain(wallet.getChain()); // Save chain information
-                    depositTx.setBlockNumber(deposit.getBlockNumber());
-                    depositTx.setConfirmations(0);
-                    depositTx.setStatus(DepositTransaction.DepositStatus.PENDING);
-
-                    depositTx = depositTransactionRepository.save(depositTx);
-                    
-                    // Add to queue for processing
-                    try {
-                        depositQueue.put(depositTx);
-                        logger.info("New deposit detected: {} for wallet {}", 
-                                deposit.getTransactionHash(), deposit.getToAddress());
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        logger.error("Interrupted while adding deposit to queue", e);
+                    CompletableFuture<List<DepositIngestionService.ScannedBlock>> batch = CompletableFuture.supplyAsync(
+                            () -> depositIngestionService.fetchBlockDeposits(blockNumbers, monitoredAddresses), fetchExecutor);
+                    for (int i = 0; i < batchBlocks; i++) {
+                        int index = i;
+                        inFlight.addLast(new PendingBlock(blockNumbers.get(i), batch,
+                                batch.thenApply(results -> results.get(index))));
                     }
                 }
+                inFlightBlocks = inFlight.size();
+
+                PendingBlock pending = inFlight.pollFirst();
+                DepositIngestionService.ScannedBlock scannedBlock;
+                try {
+                    scannedBlock = pending.block.get();
+                } catch (ExecutionException e) {
+                    // Stop here; the next cycle resumes from the last committed block
+                    logger.error("Error scanning block: " + pending.blockNumber, e.getCause());
+                    return;
+                }
+
+                if (isReorganized(scannedBlock)) {
+                    // The in-flight blocks may belong to the abandoned fork; rescan from the ancestor
+                    rewindToCommonAncestor(scannedBlock.getBlockNumber().longValueExact() - 1);
+                    return;
+                }
+
+                commitBlock(scannedBlock);
+                blockHashRing.add(scannedBlock.getBlockNumber().longValueExact(),
+                        scannedBlock.getBlockHash(), scannedBlock.getParentHash());
+                lastScannedBlock = pending.blockNumber;
+                recordScannedBlock();
+            }
+        } finally {
+            for (PendingBlock pending : inFlight) {
+                pending.batch.cancel(true);
+            }
+            inFlightBlocks = 0;
+        }
+    }
+
+    // Called from the monitoring thread as each block is committed, never from the fetch threads
+    private void recordScannedBlock() {
+        rateWindowBlocks++;
+        long elapsedNanos = System.nanoTime() - rateWindowStart;
+        if (elapsedNanos >= 1_000_000_000L) {
+            blocksPerSecond = rateWindowBlocks * 1_000_000_000.0 / elapsedNanos;
+            rateWindowBlocks = 0;
+            rateWindowStart = System.nanoTime();
+        }
+    }
+
+    private boolean isReorganized(DepositIngestionService.ScannedBlock block) {
+        String expectedParent = blockHashRing.getHash(block.getBlockNumber().longValueExact() - 1);
+        return expectedParent != null && !expectedParent.equalsIgnoreCase(block.getParentHash());
+    }
+
+    private void rewindToCommonAncestor(long fromBlock) {
+        // Walk back through the ring until our recorded hash matches the canonical chain again
+        long oldest = blockHashRing.getOldestNumber();
+        long ancestor = blockHashRing.findCommonAncestor(fromBlock, number -> {
+            EthBlock.Block canonical = blockchainService.getBlockHeader(BigInteger.valueOf(number));
+            if (canonical == null) {
+                throw new IllegalStateException("Block not available while resolving reorg: " + number);
+            }
+            return canonical.getHash();
+        });
+        if (ancestor < oldest) {
+            logger.error("Reorg on {} is deeper than the {} tracked blocks; rewinding to block {}",
+                    chain, blockHashRing.capacity(), ancestor);
+        }
+
+        long reorgedFrom = ancestor + 1;
+        logger.warn("Chain reorganization on {}: blocks {}-{} replaced, rescanning from block {}",
+                chain, reorgedFrom, fromBlock, reorgedFrom);
+
+        demoteDeposits(ancestor, fromBlock);
+        // Orphaned deposits must be looked up again when the new fork is scanned
+        depositIngestionService.forgetSeenDeposits();
+        String ancestorHash = blockHashRing.getHash(ancestor);
+        blockHashRing.truncateAfter(ancestor);
+        scanCheckpointService.save(partitionLeaseService.getCheckpointName(), BigInteger.valueOf(ancestor), ancestorHash,
+                leaderElectionService.getFencingToken());
+        lastScannedBlock = BigInteger.valueOf(ancestor);
+    }
+
+    private void demoteDeposits(long ancestor, long lastReplaced) {
+        // Block numbers are stored as strings, so the replaced range is matched by value, not with $gt
+        List<BigInteger> replacedBlocks = new ArrayList<>();
+        for (long number = ancestor + 1; number <= lastReplaced; number++) {
+            replacedBlocks.add(BigInteger.valueOf(number));
+        }
+        if (replacedBlocks.isEmpty()) {
+            return;
+        }
+
+        for (DepositTransaction deposit : depositTransactionRepository.findByBlockNumberInAndStatusIn(
+                replacedBlocks, List.of(DepositTransaction.DepositStatus.CREDITED))) {
+            if (isScannedHere(deposit)) {
+                logger.error("Credited deposit {} (block {}) was reorganized out; manual review required",
+                        deposit.getTransactionHash(), deposit.getBlockNumber());
             }
-        } catch (Exception e) {
-            logger.error("Error scanning block: " + blockNumber, e);
+        }
+
+        List<DepositTransaction> open = depositTransactionRepository.findByBlockNumberInAndStatusIn(
+                replacedBlocks, Arrays.asList(
+                        DepositTransaction.DepositStatus.PENDING,
+                        DepositTransaction.DepositStatus.CONFIRMING,
+                        DepositTransaction.DepositStatus.CONFIRMED));
+        for (DepositTransaction deposit : open) {
+            if (!isScannedHere(deposit)) {
+                continue;
+            }
+            // If the transaction is included again on the new fork, the rescan restores it
+            deposit.setStatus(DepositTransaction.DepositStatus.ORPHANED);
+            deposit.setConfirmations(0);
+            depositTransactionRepository.save(deposit);
+            logger.warn("Deposit {} (block {}) orphaned by reorg", deposit.getTransactionHash(),
+                    deposit.getBlockNumber());
         }
     }
 
-    public BlockingQueue<DepositTransaction> getDepositQueue() {
-        return depositQueue;
+    private boolean isScannedHere(DepositTransaction deposit) {
+        return chainRegistry.isOwnedBy(chain, deposit.getChain())
+                && partitionLeaseService.owns(deposit.getWalletAddress());
+    }
+
+    private void commitBlock(DepositIngestionService.ScannedBlock block) throws InterruptedException {
+        if (!block.getDeposits().isEmpty()) {
+            // Backpressure: hold the scan while the processor is behind
+            depositOutboxService.awaitCapacity();
+        }
+        // Deposits, their queue entries and the checkpoint are committed together
+        List<DepositTransaction> newDeposits = scanCheckpointService.commitBlock(
+                partitionLeaseService.getCheckpointName(), block.getBlockNumber(), block.getBlockHash(),
+                leaderElectionService.getFencingToken(),
+                () -> {
+                    List<DepositTransaction> saved = depositIngestionService.saveDeposits(block.getDeposits(), true);
+                    depositOutboxService.append(saved);
+                    return saved;
+                });
+
+        for (DepositTransaction depositTx : newDeposits) {
+            logger.info("New deposit detected: {} for wallet {}",
+                    depositTx.getTransactionHash(), depositTx.getWalletAddress());
+        }
     }
 
     public BigInteger getLastScannedBlock() {
         return lastScannedBlock;
     }
-}
 
+    public int getInFlightBlocks() {
+        return inFlightBlocks;
+    }
+
+    public int getPipelineWindow() {
+        return pipelineWindow;
+    }
+
+    // True while more than one batch is in flight, i.e. the live scan is behind the head
+    public boolean isCatchingUp() {
+        return inFlightBlocks > scanBatchSize;
+    }
+
+    public double getBlocksPerSecond() {
+        // Decay to zero once the scanner is idle
+        if (System.nanoTime() - rateWindowStart > 2 * Math.max(scanIntervalMs, 1000) * 1_000_000L) {
+            return 0;
+        }
+        return blocksPerSecond;
+    }
+
+    private static class PendingBlock {
+        private final BigInteger blockNumber;
+        private final Future<?> batch;
+        private final Future<DepositIngestionService.ScannedBlock> block;
+
+        PendingBlock(BigInteger blockNumber, Future<?> batch, Future<DepositIngestionService.ScannedBlock> block) {
+            this.blockNumber = blockNumber;
+            this.batch = batch;
+            this.block = block;
+        }
+    }
+}
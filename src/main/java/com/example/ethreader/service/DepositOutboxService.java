@@ -0,0 +1,152 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.model.DepositOutboxEntry;
+import com.example.ethreader.model.DepositTransaction;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Durable work queue between the scanners (live and backfill) and the deposit processor. Each new
+// deposit gets an entry in the deposit_outbox collection, written with the block's deposits; the
+// processor takes entries in batches and deletes them once processed, so whatever is left is
+// replayed after a crash or restart. Producers wait while the queue is at capacity.
+@Service
+public class DepositOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DepositOutboxService.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PartitionLeaseService partitionLeaseService;
+
+    @Value("${blockchain.chain:sepolia}")
+    private String chain;
+
+    @Value("${deposit.outbox.capacity:10000}") // Unprocessed entries before the scanners pause
+    private long capacity;
+
+    @Value("${deposit.outbox.poll.interval:1000}") // Max ms a consumer waits for new entries
+    private long pollIntervalMs;
+
+    private final Object signal = new Object();
+    // Last counted unprocessed entries, plus local appends since; updated by the scanner, backfill
+    // and processor threads
+    private final AtomicLong backlog = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        capacity = Math.max(1, capacity);
+        pollIntervalMs = Math.max(10, pollIntervalMs);
+    }
+
+    // Queue the deposits for processing. Re-queuing a deposit that is still waiting is a no-op.
+    public void append(List<DepositTransaction> deposits) {
+        if (deposits.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DepositOutboxEntry.class);
+        for (DepositTransaction deposit : deposits) {
+            DepositOutboxEntry entry = new DepositOutboxEntry(deposit.getId(), chain,
+                    partitionLeaseService.partitionOf(deposit.getWalletAddress()));
+            bulk.upsert(Query.query(Criteria.where("_id").is(entry.getId())), new Update()
+                    .setOnInsert("chain", entry.getChain())
+                    .setOnInsert("partition", entry.getPartition())
+                    .setOnInsert("enqueuedAt", entry.getEnqueuedAt()));
+        }
+        bulk.execute();
+        backlog.addAndGet(deposits.size());
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    // Oldest entries for this node, up to max; waits up to the poll interval while there are none
+    public List<DepositOutboxEntry> poll(int max) throws InterruptedException {
+        List<DepositOutboxEntry> entries = fetch(max);
+        if (entries.isEmpty()) {
+            synchronized (signal) {
+                signal.wait(pollIntervalMs);
+            }
+            entries = fetch(max);
+        }
+        return entries;
+    }
+
+    public void acknowledge(Collection<DepositOutboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(entries.size());
+        for (DepositOutboxEntry entry : entries) {
+            ids.add(entry.getId());
+        }
+        long removed = mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), DepositOutboxEntry.class)
+                .getDeletedCount();
+        backlog.updateAndGet(current -> Math.max(0, current - removed));
+    }
+
+    // Backpressure for the scanners: block while the queue is at capacity
+    public void awaitCapacity() throws InterruptedException {
+        if (backlog.get() < capacity) {
+            return;
+        }
+        boolean logged = false;
+        while (countBacklog() >= capacity) {
+            if (!logged) {
+                logger.warn("Deposit queue for {} is full ({} entries), pausing scanning", chain, backlog.get());
+                logged = true;
+            }
+            Thread.sleep(pollIntervalMs);
+        }
+    }
+
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    private List<DepositOutboxEntry> fetch(int max) {
+        Query query = ownedEntries().with(Sort.by("enqueuedAt", "_id")).limit(max);
+        List<DepositOutboxEntry> entries = mongoTemplate.find(query, DepositOutboxEntry.class);
+        if (entries.size() < max) {
+            backlog.set(entries.size()); // Everything left was just read
+        }
+        return entries;
+    }
+
+    private long countBacklog() {
+        long count = mongoTemplate.count(ownedEntries(), DepositOutboxEntry.class);
+        backlog.set(count);
+        return count;
+    }
+
+    // In sharded mode each node consumes the entries of the partitions it owns
+    private Query ownedEntries() {
+        Criteria criteria = Criteria.where("chain").is(chain);
+        if (partitionLeaseService.isSharded()) {
+            List<Integer> owned = new ArrayList<>();
+            for (int partition = 0; partition < partitionLeaseService.getPartitionCount(); partition++) {
+                if (partitionLeaseService.ownsPartition(partition)) {
+                    owned.add(partition);
+                }
+            }
+            criteria = criteria.and("partition").in(owned);
+        }
+        return Query.query(criteria);
+    }
+}
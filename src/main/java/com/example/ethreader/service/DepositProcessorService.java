@@ -1,46 +1,136 @@
 package com.example.ethreader.service;
 
+import com.example.ethreader.config.ChainRegistry;
 import com.example.ethreader.model.DepositIdempotency;
+import com.example.ethreader.model.DepositOutboxEntry;
 import com.example.ethreader.model.DepositTransaction;
-import com.example.ethreader.repository.DepositIdempotencyRepository;
 import com.example.ethreader.repository.DepositTransactionRepository;
+import com.example.ethreader.util.BulkWrites;
+import com.example.ethreader.util.PendingDepositIndex;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.math.BigInteger;
-import java.util.concurrent.BlockingQueue;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.atomic.AtomicLong;
+
+// Credits deposits once they have enough confirmations. New deposits arrive through the durable
+// deposit queue and are spread over worker threads by user, so one user's deposits stay in order
+// while different users are processed in parallel. Those not yet confirmed wait in block-ordered
+// indexes, and each new head promotes exactly the deposits that crossed a threshold (first
+// confirmation, then the required depth) with one bulk write. The indexes are rebuilt from
+// MongoDB when this instance starts leading, when partition ownership changes and periodically
+// as a safety net.
 @Service
 public class DepositProcessorService {
 
     private static final Logger logger = LoggerFactory.getLogger(DepositProcessorService.class);
+    // Not yet credited. CONFIRMED is no longer written, but rows stored with it still need crediting.
+    private static final List<DepositTransaction.DepositStatus> OPEN_STATUSES = List.of(
+            DepositTransaction.DepositStatus.PENDING,
+            DepositTransaction.DepositStatus.CONFIRMING,
+            DepositTransaction.DepositStatus.CONFIRMED);
+    private static final double LATENCY_EWMA_ALPHA = 0.2;
+    // Native transfers (no log index) before the token transfers of the same block
+    private static final Comparator<DepositTransaction> CHAIN_ORDER = Comparator
+            .comparing(DepositTransaction::getBlockNumber, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(DepositTransaction::getLogIndex, Comparator.nullsFirst(Comparator.naturalOrder()));
 
     @Autowired
-    private DepositMonitorService depositMonitorService;
+    private DepositOutboxService depositOutboxService;
 
     @Autowired
     private DepositTransactionRepository depositTransactionRepository;
 
     @Autowired
-    private DepositIdempotencyRepository depositIdempotencyRepository;
+    private BlockchainService blockchainService;
 
     @Autowired
-    private BlockchainService blockchainService;
+    private ChainHeadTracker chainHeadTracker;
+
+    @Autowired
+    private ChainRegistry chainRegistry;
+
+    @Autowired
+    private PartitionLeaseService partitionLeaseService;
+
+    @Autowired
+    private LeaderElectionService leaderElectionService;
+
+    @Autowired
+    private NewHeadsSubscriber newHeadsSubscriber;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexService mongoIndexService;
+
+    @Value("${blockchain.chain:sepolia}")
+    private String chain;
 
     @Value("${blockchain.confirmations:12}")
     private int requiredConfirmations;
 
+    @Value("${deposit.outbox.batch.size:100}") // Queue entries taken per batch
+    private int batchSize;
+
+    @Value("${deposit.credit.claim.timeout:60000}") // ms before an unfinished credit may be resumed
+    private long creditClaimTimeoutMs;
+
+    @Value("${deposit.processor.workers:4}") // Worker threads; a user's deposits always go to the same one
+    private int workerCount;
+
+    @Value("${blockchain.head.poll.interval:2000}") // Max wait for a new head before re-checking
+    private long headWaitMs;
+
+    @Value("${blockchain.confirmation.reconcile.interval:600000}") // ms between index rebuilds from MongoDB
+    private long reconcileIntervalMs;
+
     private Thread processingThread;
+    private Thread confirmationThread;
+    private volatile Worker[] workers = new Worker[0];
     private volatile boolean running = false;
 
+    // Unconfirmed deposits by block: PENDING ones wait for their first confirmation, CONFIRMING
+    // ones for the required depth. Guarded by pendingLock.
+    private final Object pendingLock = new Object();
+    private final PendingDepositIndex awaitingFirstConfirmation = new PendingDepositIndex();
+    private final PendingDepositIndex awaitingCredit = new PendingDepositIndex();
+    private volatile boolean reseedRequested = true;
+    private long seededFencingToken;
+    private long seededOwnershipVersion;
+    private long seededAt;
+
     @PostConstruct
     public void init() {
+        batchSize = Math.max(1, batchSize);
+        workerCount = Math.max(1, workerCount);
         startProcessing();
     }
 
@@ -55,96 +145,137 @@ public class DepositProcessorService {
         }
 
         running = true;
-        processingThread = new Thread(this::processDeposits, "DepositProcessor");
+        Worker[] started = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            started[i] = new Worker(i, "DepositProcessor-" + chain + "-worker-" + (i + 1));
+        }
+        workers = started;
+        processingThread = new Thread(this::processDeposits, "DepositProcessor-" + chain);
         processingThread.setDaemon(true);
         processingThread.start();
+        confirmationThread = new Thread(this::confirmDeposits, "DepositConfirmations-" + chain);
+        confirmationThread.setDaemon(true);
+        confirmationThread.start();
         logger.info("Deposit processing started");
     }
 
     public void stopProcessing() {
         running = false;
-        if (processingThread != null) {
-            processingThread.interrupt();
-            try {
-                processingThread.join(5000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        for (Thread thread : new Thread[] {processingThread, confirmationThread}) {
+            if (thread != null) {
+                thread.interrupt();
+                try {
+                    thread.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
             }
         }
+        for (Worker worker : workers) {
+            worker.executor.shutdownNow();
+        }
         logger.info("Deposit processing stopped");
     }
 
     private void processDeposits() {
-        BlockingQueue<DepositTransaction> queue = depositMonitorService.getDepositQueue();
-
         while (running) {
             try {
-                // Poll from queue with timeout
-                DepositTransaction deposit = queue.poll(1, TimeUnit.SECONDS);
+                // Only the leader processes; followers leave the deposits to it
+                if (!leaderElectionService.isLeader()) {
+                    leaderElectionService.awaitLeadership(1000);
+                    continue;
+                }
+                // Credits are only idempotent once the unique indexes exist
+                if (!mongoIndexService.awaitIndexes(1000)) {
+                    continue;
+                }
 
-                if (deposit != null) {
-                    processDeposit(deposit);
+                List<DepositOutboxEntry> batch = depositOutboxService.poll(batchSize);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                Map<String, DepositTransaction> deposits = new HashMap<>();
+                for (DepositTransaction deposit : depositTransactionRepository.findAllById(
+                        batch.stream().map(DepositOutboxEntry::getId).toList())) {
+                    deposits.put(deposit.getId(), deposit);
+                }
+                List<DepositTransaction> pending = new ArrayList<>(batch.size());
+                for (DepositOutboxEntry entry : batch) {
+                    // Stored state wins: a replayed entry may refer to a deposit already handled or orphaned
+                    DepositTransaction deposit = deposits.get(entry.getId());
+                    if (deposit != null && deposit.getStatus() == DepositTransaction.DepositStatus.PENDING) {
+                        pending.add(deposit);
+                    }
                 }
+                dispatch(pending);
+                // Entries left unacknowledged by a crash are processed again after the restart
+                depositOutboxService.acknowledge(batch);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 logger.info("Processing thread interrupted");
                 break;
             } catch (Exception e) {
-                logger.error("Error processing deposit", e);
+                logger.error("Error processing deposits", e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
             }
         }
     }
 
+    // Hand the deposits to the workers, each user's in batch order, and wait until all are done
+    private void dispatch(List<DepositTransaction> deposits) throws InterruptedException {
+        Worker[] current = workers;
+        CountDownLatch done = new CountDownLatch(deposits.size());
+        for (DepositTransaction deposit : deposits) {
+            String userId = deposit.getUserId() != null ? deposit.getUserId() : deposit.getWalletAddress();
+            current[Math.floorMod(userId.hashCode(), current.length)].submit(deposit, done);
+        }
+        done.await();
+    }
+
     private void processDeposit(DepositTransaction deposit) {
         try {
-            // Create idempotency key
-            String idempotencyKey = deposit.getTransactionHash() + "_" + deposit.getBlockNumber().toString();
+            // Check confirmations against the tracked head
+            BigInteger head = chainHeadTracker.getHead();
+            int confirmations = chainHeadTracker.getConfirmations(deposit.getBlockNumber());
 
-            // Check if already processed (idempotency check)
-            if (depositIdempotencyRepository.existsByIdempotencyKey(idempotencyKey)) {
-                logger.info("Deposit already processed (idempotent): {}", idempotencyKey);
+            if (confirmations >= requiredConfirmations) {
+                // Deep enough already (e.g. found by a backfill): re-checked and credited like the
+                // deposits the confirmation thread finds due
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DepositTransaction.class);
+                if (creditDueDeposits(List.of(deposit), head, bulk) > 0) {
+                    bulk.execute();
+                }
                 return;
             }
 
-            // Check confirmations
-            int confirmations = blockchainService.getConfirmations(
-                    deposit.getTransactionHash(), deposit.getBlockNumber());
-
             deposit.setConfirmations(confirmations);
-
-            // Update status based on confirmations
-            if (confirmations >= requiredConfirmations) {
-                // Mark as confirmed and credit user
-                if (deposit.getStatus() != DepositTransaction.DepositStatus.CREDITED) {
-                    creditUser(deposit);
-                    
-                    // Save idempotency record to prevent duplicate processing
-                    DepositIdempotency idempotency = new DepositIdempotency(
-                            deposit.getTransactionHash(), deposit.getBlockNumber());
-                    depositIdempotencyRepository.save(idempotency);
-
-                    deposit.setStatus(DepositTransaction.DepositStatus.CREDITED);
-                    deposit.setProcessedAt(java.time.LocalDateTime.now());
-                    
-                    logger.info("Deposit credited: {} for user {}", 
-                            deposit.getTransactionHash(), deposit.getUserId());
-                }
-            } else if (confirmations > 0) {
-                deposit.setStatus(DepositTransaction.DepositStatus.CONFIRMING);
-            } else {
-                deposit.setStatus(DepositTransaction.DepositStatus.PENDING);
+            deposit.setStatus(confirmations > 0
+                    ? DepositTransaction.DepositStatus.CONFIRMING : DepositTransaction.DepositStatus.PENDING);
+            // Only while still PENDING: a reorg may have orphaned it since it was read
+            long matched = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(deposit.getId())
+                            .and("status").is(DepositTransaction.DepositStatus.PENDING)),
+                    new Update().set("status", deposit.getStatus()).set("confirmations", confirmations),
+                    DepositTransaction.class).getMatchedCount();
+            // Unconfirmed ones are promoted by the confirmation thread
+            if (matched == 1) {
+                synchronized (pendingLock) {
+                    track(deposit);
+                }
             }
 
-            // Save updated deposit
-            depositTransactionRepository.save(deposit);
-
         } catch (Exception e) {
+            // Left open in MongoDB; the confirmation thread picks it up again from there
             logger.error("Error processing deposit: " + deposit.getTransactionHash(), e);
-            deposit.setStatus(DepositTransaction.DepositStatus.FAILED);
-            depositTransactionRepository.save(deposit);
+            reseedRequested = true;
         }
     }
 
+    // A credit whose completion was not recorded is resumed, so this must be idempotent per deposit
     private void creditUser(DepositTransaction deposit) {
         // Here you would credit the user's balance
         // For now, we just log it. In a real system, you would:
@@ -164,49 +295,393 @@ public class DepositProcessorService {
         // userBalanceRepository.save(balance);
     }
 
-    // Method to reprocess deposits that need confirmation updates
-    public void updateConfirmations() {
-        try {
-            java.util.List<DepositTransaction.DepositStatus> statuses = java.util.Arrays.asList(
-                    DepositTransaction.DepositStatus.PENDING,
-                    DepositTransaction.DepositStatus.CONFIRMING
-            );
-
-            java.util.List<DepositTransaction> pendingDeposits = 
-                    depositTransactionRepository.findByStatusIn(statuses);
-
-            for (DepositTransaction deposit : pendingDeposits) {
-                int confirmations = blockchainService.getConfirmations(
-                        deposit.getTransactionHash(), deposit.getBlockNumber());
-
-                deposit.setConfirmations(confirmations);
-
-                if (confirmations >= requiredConfirmations) {
-                    if (deposit.getStatus() != DepositTransaction.DepositStatus.CREDITED) {
-                        // Check idempotency before crediting
-                        String idempotencyKey = deposit.getTransactionHash() + "_" + 
-                                deposit.getBlockNumber().toString();
-                        
-                        if (!depositIdempotencyRepository.existsByIdempotencyKey(idempotencyKey)) {
-                            creditUser(deposit);
-                            
-                            DepositIdempotency idempotency = new DepositIdempotency(
-                                    deposit.getTransactionHash(), deposit.getBlockNumber());
-                            depositIdempotencyRepository.save(idempotency);
-                            
-                            deposit.setStatus(DepositTransaction.DepositStatus.CREDITED);
-                            deposit.setProcessedAt(java.time.LocalDateTime.now());
-                        }
-                    }
-                } else if (confirmations > 0) {
-                    deposit.setStatus(DepositTransaction.DepositStatus.CONFIRMING);
+    private void confirmDeposits() {
+        BigInteger lastHead = null;
+        while (running) {
+            try {
+                if (!leaderElectionService.isLeader()) {
+                    leaderElectionService.awaitLeadership(1000);
+                    continue;
+                }
+                if (!mongoIndexService.awaitIndexes(1000)) {
+                    continue;
+                }
+                if (needsReseed()) {
+                    reseedPendingIndex();
+                }
+
+                BigInteger head = chainHeadTracker.getHead();
+                if (head.signum() > 0 && !head.equals(lastHead)) {
+                    onNewHead(head);
+                    lastHead = head;
+                }
+
+                if (newHeadsSubscriber.isConnected()) {
+                    newHeadsSubscriber.awaitHeadAfter(lastHead, headWaitMs);
+                } else {
+                    Thread.sleep(headWaitMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // Deposits taken out of the indexes may not have been written; rebuild them
+                reseedRequested = true;
+                logger.error("Error updating confirmations", e);
+                try {
+                    Thread.sleep(headWaitMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
                 }
+            }
+        }
+    }
 
-                depositTransactionRepository.save(deposit);
+    private boolean needsReseed() {
+        return reseedRequested
+                || seededFencingToken != leaderElectionService.getFencingToken()
+                || seededOwnershipVersion != partitionLeaseService.getOwnershipVersion()
+                || System.currentTimeMillis() - seededAt >= reconcileIntervalMs;
+    }
+
+    private void reseedPendingIndex() {
+        long fencingToken = leaderElectionService.getFencingToken();
+        long ownershipVersion = partitionLeaseService.getOwnershipVersion();
+        List<DepositTransaction> unconfirmed = depositTransactionRepository.findByStatusIn(OPEN_STATUSES);
+        // Other chains' deposits are confirmed by their own processor, other partitions' by their node
+        unconfirmed.removeIf(deposit -> !chainRegistry.isOwnedBy(chain, deposit.getChain())
+                || !partitionLeaseService.owns(deposit.getWalletAddress()));
+        synchronized (pendingLock) {
+            awaitingFirstConfirmation.clear();
+            awaitingCredit.clear();
+            for (DepositTransaction deposit : unconfirmed) {
+                track(deposit);
             }
-        } catch (Exception e) {
-            logger.error("Error updating confirmations", e);
         }
+        reseedRequested = false;
+        seededFencingToken = fencingToken;
+        seededOwnershipVersion = ownershipVersion;
+        seededAt = System.currentTimeMillis();
+        logger.debug("Tracking {} unconfirmed {} deposits", unconfirmed.size(), chain);
     }
-}
 
+    // Caller holds pendingLock
+    private void track(DepositTransaction deposit) {
+        if (deposit.getId() == null || deposit.getBlockNumber() == null) {
+            return;
+        }
+        awaitingFirstConfirmation.remove(deposit.getId());
+        awaitingCredit.remove(deposit.getId());
+        if (deposit.getStatus() == DepositTransaction.DepositStatus.PENDING) {
+            awaitingFirstConfirmation.add(deposit);
+        } else {
+            awaitingCredit.add(deposit);
+        }
+    }
+
+    private void onNewHead(BigInteger head) {
+        long headNumber = head.longValueExact();
+        List<DepositTransaction> firstConfirmed;
+        List<DepositTransaction> due;
+        synchronized (pendingLock) {
+            firstConfirmed = awaitingFirstConfirmation.pollUpTo(headNumber - 1);
+            for (DepositTransaction deposit : firstConfirmed) {
+                awaitingCredit.add(deposit);
+            }
+            due = awaitingCredit.pollUpTo(headNumber - requiredConfirmations);
+        }
+        if (firstConfirmed.isEmpty() && due.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DepositTransaction.class);
+        int writes = 0;
+        Set<String> dueIds = new HashSet<>();
+        for (DepositTransaction deposit : due) {
+            dueIds.add(deposit.getId());
+        }
+        for (DepositTransaction deposit : firstConfirmed) {
+            if (dueIds.contains(deposit.getId())) {
+                continue; // Credited below
+            }
+            deposit.setStatus(DepositTransaction.DepositStatus.CONFIRMING);
+            deposit.setConfirmations(blockchainService.getConfirmations(deposit.getBlockNumber(), head));
+            bulk.updateOne(Query.query(Criteria.where("_id").is(deposit.getId())
+                            .and("status").is(DepositTransaction.DepositStatus.PENDING)),
+                    new Update().set("status", deposit.getStatus()).set("confirmations", deposit.getConfirmations()));
+            writes++;
+        }
+        writes += creditDueDeposits(due, head, bulk);
+        if (writes > 0) {
+            bulk.execute();
+            logger.debug("Head {}: {} deposits confirming, {} due for credit", head, firstConfirmed.size(), due.size());
+        }
+    }
+
+    // Re-check the deposits that reached the required depth and credit them. Returns the number
+    // of updates added to the bulk write.
+    private int creditDueDeposits(List<DepositTransaction> due, BigInteger head, BulkOperations bulk) {
+        if (due.isEmpty()) {
+            return 0;
+        }
+        // Drop deposits that were orphaned by a reorg or finished elsewhere since they were indexed
+        List<String> ids = new ArrayList<>(due.size());
+        for (DepositTransaction deposit : due) {
+            ids.add(deposit.getId());
+        }
+        Map<String, DepositTransaction.DepositStatus> storedStatus = new HashMap<>();
+        for (DepositTransaction stored : depositTransactionRepository.findAllById(ids)) {
+            storedStatus.put(stored.getId(), stored.getStatus());
+        }
+        List<DepositTransaction> open = new ArrayList<>(due.size());
+        for (DepositTransaction deposit : due) {
+            if (OPEN_STATUSES.contains(storedStatus.get(deposit.getId()))) {
+                open.add(deposit);
+            }
+        }
+        if (open.isEmpty()) {
+            return 0;
+        }
+
+        List<TransactionReceipt> receipts = blockchainService.getTransactionReceipts(
+                open.stream().map(DepositTransaction::getTransactionHash).toList());
+        List<DepositTransaction> retry = new ArrayList<>();
+        List<DepositTransaction> credit = new ArrayList<>();
+        int writes = 0;
+        for (int i = 0; i < open.size(); i++) {
+            DepositTransaction deposit = open.get(i);
+            TransactionReceipt receipt = receipts.get(i);
+            if (receipt == null || receipt.getBlockNumber() == null) {
+                // Not (or no longer) mined, or the lookup failed; re-check on the next head
+                logger.warn("No receipt for pending deposit {}, skipping", deposit.getTransactionHash());
+                retry.add(deposit);
+                continue;
+            }
+            int confirmations = blockchainService.getConfirmations(receipt.getBlockNumber(), head);
+            if (!receipt.getBlockNumber().equals(deposit.getBlockNumber())) {
+                logger.warn("Deposit {} moved from block {} to {}", deposit.getTransactionHash(),
+                        deposit.getBlockNumber(), receipt.getBlockNumber());
+                deposit.setBlockNumber(receipt.getBlockNumber());
+                if (confirmations < requiredConfirmations) {
+                    deposit.setStatus(confirmations > 0
+                            ? DepositTransaction.DepositStatus.CONFIRMING : DepositTransaction.DepositStatus.PENDING);
+                    deposit.setConfirmations(confirmations);
+                    bulk.updateOne(openDeposit(deposit.getId()), new Update()
+                            .set("blockNumber", deposit.getBlockNumber())
+                            .set("status", deposit.getStatus())
+                            .set("confirmations", confirmations));
+                    writes++;
+                    retry.add(deposit);
+                    continue;
+                }
+            }
+
+            deposit.setConfirmations(confirmations);
+            credit.add(deposit);
+        }
+
+        // A deposit credited before its status was stored is only marked, not credited again
+        Set<String> credited = new HashSet<>();
+        for (DepositTransaction deposit : creditOnce(credit)) {
+            credited.add(deposit.getId());
+        }
+        for (DepositTransaction deposit : credit) {
+            if (!credited.contains(deposit.getId())) {
+                retry.add(deposit); // Credit failed or is held by another attempt
+                continue;
+            }
+            deposit.setStatus(DepositTransaction.DepositStatus.CREDITED);
+            deposit.setProcessedAt(LocalDateTime.now());
+            bulk.updateOne(openDeposit(deposit.getId()), new Update()
+                    .set("blockNumber", deposit.getBlockNumber())
+                    .set("status", deposit.getStatus())
+                    .set("confirmations", deposit.getConfirmations())
+                    .set("processedAt", deposit.getProcessedAt()));
+            writes++;
+        }
+        if (!retry.isEmpty()) {
+            synchronized (pendingLock) {
+                for (DepositTransaction deposit : retry) {
+                    track(deposit);
+                }
+            }
+        }
+        return writes;
+    }
+
+    // Credit each deposit at most once. A credit record is inserted (one unordered insert for the
+    // batch) before the user is credited and marked CREDITED afterwards; the unique index rejects
+    // a second record, even with several processors racing. A record left RECORDED by a failed or
+    // interrupted credit is taken over once its claim is older than the claim timeout. Users are
+    // credited in block and log order, so each user's deposits land in chain order. Returns the
+    // deposits that are credited now or were before; the others are to be retried.
+    List<DepositTransaction> creditOnce(List<DepositTransaction> batch) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        List<DepositTransaction> deposits = new ArrayList<>(batch);
+        deposits.sort(CHAIN_ORDER);
+        Map<DepositTransaction, String> claimed = new IdentityHashMap<>(); // Credit record id by deposit
+        List<DepositTransaction> done = new ArrayList<>();
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DepositIdempotency.class);
+        List<String> recordIds = new ArrayList<>(deposits.size());
+        for (DepositTransaction deposit : deposits) {
+            DepositIdempotency record = new DepositIdempotency(deposit);
+            record.setId(new ObjectId().toHexString());
+            recordIds.add(record.getId());
+            bulk.insert(record);
+        }
+        Set<Integer> duplicates = Set.of();
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            duplicates = BulkWrites.duplicateIndexes(e);
+        }
+        List<DepositTransaction> recordedBefore = new ArrayList<>(duplicates.size());
+        for (int i = 0; i < deposits.size(); i++) {
+            if (duplicates.contains(i)) {
+                recordedBefore.add(deposits.get(i));
+            } else {
+                claimed.put(deposits.get(i), recordIds.get(i));
+            }
+        }
+        resumeRecordedCredits(recordedBefore, claimed, done);
+
+        List<String> creditedIds = new ArrayList<>(claimed.size());
+        for (DepositTransaction deposit : deposits) {
+            String recordId = claimed.get(deposit);
+            if (recordId == null) {
+                continue; // Credited before, or held by another attempt
+            }
+            try {
+                creditUser(deposit);
+            } catch (Exception e) {
+                // The record stays RECORDED and is resumed once the claim is stale
+                logger.error("Failed to credit deposit {}, will retry", deposit.getTransactionHash(), e);
+                continue;
+            }
+            creditedIds.add(recordId);
+            done.add(deposit);
+            logger.info("Deposit credited: {} for user {}", deposit.getTransactionHash(), deposit.getUserId());
+        }
+        if (!creditedIds.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(creditedIds)),
+                    new Update().set("state", DepositIdempotency.CreditState.CREDITED)
+                            .set("processedAt", LocalDateTime.now()),
+                    DepositIdempotency.class);
+        }
+        return done;
+    }
+
+    // Sort deposits that already have a credit record: credited ones go to done, stale RECORDED
+    // ones that this call manages to claim go to claimed, the rest wait for their current attempt
+    private void resumeRecordedCredits(List<DepositTransaction> deposits, Map<DepositTransaction, String> claimed,
+                                       List<DepositTransaction> done) {
+        if (deposits.isEmpty()) {
+            return;
+        }
+        List<Criteria> keys = new ArrayList<>(deposits.size());
+        for (DepositTransaction deposit : deposits) {
+            keys.add(Criteria.where("transactionHash").is(deposit.getTransactionHash())
+                    .and("logIndex").is(deposit.getLogIndex())
+                    .and("chain").is(deposit.getChain()));
+        }
+        Map<String, DepositIdempotency> records = new HashMap<>();
+        for (DepositIdempotency record : mongoTemplate.find(
+                Query.query(new Criteria().orOperator(keys)), DepositIdempotency.class)) {
+            records.put(creditKey(record.getChain(), record.getTransactionHash(), record.getLogIndex()), record);
+        }
+        LocalDateTime staleBefore = LocalDateTime.now().minusNanos(creditClaimTimeoutMs * 1_000_000L);
+        for (DepositTransaction deposit : deposits) {
+            DepositIdempotency record = records.get(
+                    creditKey(deposit.getChain(), deposit.getTransactionHash(), deposit.getLogIndex()));
+            if (record == null) {
+                continue; // Removed since the insert; retried on the next attempt
+            }
+            if (record.getState() != DepositIdempotency.CreditState.RECORDED) {
+                logger.info("Deposit already credited (idempotent): {}", deposit.getTransactionHash());
+                done.add(deposit);
+                continue;
+            }
+            long taken = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(record.getId())
+                            .and("state").is(DepositIdempotency.CreditState.RECORDED)
+                            .and("claimedAt").lt(staleBefore)),
+                    new Update().set("claimedAt", LocalDateTime.now()), DepositIdempotency.class).getModifiedCount();
+            if (taken == 1) {
+                logger.warn("Resuming unfinished credit of deposit {}", deposit.getTransactionHash());
+                claimed.put(deposit, record.getId());
+            }
+        }
+    }
+
+    private static String creditKey(String chain, String transactionHash, Integer logIndex) {
+        return chain + "/" + transactionHash + "#" + logIndex;
+    }
+
+    private static Query openDeposit(String id) {
+        return Query.query(Criteria.where("_id").is(id).and("status").in(OPEN_STATUSES));
+    }
+
+    public List<Worker> getWorkers() {
+        return List.of(workers);
+    }
+
+    public int getUnconfirmedCount() {
+        synchronized (pendingLock) {
+            return awaitingFirstConfirmation.size() + awaitingCredit.size();
+        }
+    }
+
+    // One partition of the users: a single thread, so each user's deposits are processed in order
+    public class Worker {
+        private final int partition;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong processed = new AtomicLong();
+        private volatile double latencyMs = 0; // EWMA of the processing time per deposit
+
+        Worker(int partition, String threadName) {
+            this.partition = partition;
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        void submit(DepositTransaction deposit, CountDownLatch done) {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    processDeposit(deposit);
+                } finally {
+                    recordProcessed((System.nanoTime() - start) / 1_000_000.0);
+                    done.countDown();
+                }
+            });
+        }
+
+        private synchronized void recordProcessed(double elapsedMs) {
+            latencyMs = latencyMs == 0 ? elapsedMs : latencyMs + LATENCY_EWMA_ALPHA * (elapsedMs - latencyMs);
+            processed.incrementAndGet();
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public int getQueueDepth() {
+            return executor.getQueue().size() + executor.getActiveCount();
+        }
+
+        public long getProcessed() {
+            return processed.get();
+        }
+
+        public double getLatencyMs() {
+            return latencyMs;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.model.LeaderLease;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+
+// Elects one instance per chain to scan and process deposits (cluster.mode=leader); the others
+// only serve HTTP. Leadership is a lease in Mongo that the leader renews; another instance takes
+// over once it expires. Each election increments the lease's fencing token, and checkpoint
+// writes carry it, so a leader that stalled past its lease cannot overwrite its successor's
+// progress. A leader also steps down locally before its lease can expire elsewhere.
+// In the other cluster modes this instance always leads.
+@Service
+public class LeaderElectionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeaderElectionService.class);
+    private static final String MODE_LEADER = "leader";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PartitionLeaseService partitionLeaseService;
+
+    @Value("${blockchain.chain:sepolia}")
+    private String chain;
+
+    @Value("${cluster.mode:standalone}")
+    private String mode;
+
+    @Value("${cluster.leader.lease.ttl:10000}") // ms before a silent leader is replaced
+    private long leaseTtlMs;
+
+    @Value("${cluster.leader.renew.interval:2000}") // ms between renewals and election attempts
+    private long renewIntervalMs;
+
+    private final Object leadershipLock = new Object();
+    private volatile long fencingToken = 0;
+    private volatile boolean leader = false;
+    private volatile long leaseDeadlineNanos = 0; // Local end of leadership, ahead of the lease expiry
+    private Thread electionThread;
+    private volatile boolean running = false;
+
+    @PostConstruct
+    public void init() {
+        if (!isLeaderMode()) {
+            return;
+        }
+        renewIntervalMs = Math.max(100, Math.min(renewIntervalMs, leaseTtlMs / 2));
+        running = true;
+        electionThread = new Thread(this::runElection, "LeaderElection-" + chain);
+        electionThread.setDaemon(true);
+        electionThread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        electionThread.interrupt();
+        try {
+            electionThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (isLeaderMode() && isLeader()) {
+            // Let a follower take over now instead of after the lease expires
+            leader = false;
+            try {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(chain)
+                                .and("owner").is(partitionLeaseService.getNodeId())
+                                .and("fencingToken").is(fencingToken)),
+                        new Update().set("owner", null).set("expiresAt", new Date()), LeaderLease.class);
+            } catch (Exception e) {
+                logger.warn("Failed to release leadership of {}: {}", chain, e.getMessage());
+            }
+        }
+    }
+
+    public boolean isLeaderMode() {
+        return MODE_LEADER.equalsIgnoreCase(mode);
+    }
+
+    public boolean isLeader() {
+        return !isLeaderMode() || (leader && System.nanoTime() - leaseDeadlineNanos < 0);
+    }
+
+    // Token of the current leadership term; 0 when not in leader mode
+    public long getFencingToken() {
+        return isLeaderMode() ? fencingToken : 0;
+    }
+
+    // Block until this instance leads or the timeout passes; returns whether it leads
+    public boolean awaitLeadership(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        synchronized (leadershipLock) {
+            while (!isLeader()) {
+                long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remainingMs <= 0) {
+                    return false;
+                }
+                leadershipLock.wait(remainingMs);
+            }
+        }
+        return true;
+    }
+
+    private void runElection() {
+        while (running) {
+            try {
+                if (isLeader()) {
+                    renew();
+                } else {
+                    tryAcquire();
+                }
+            } catch (Exception e) {
+                logger.error("Error in leader election for {}", chain, e);
+            }
+            try {
+                Thread.sleep(renewIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private void tryAcquire() {
+        long attemptNanos = System.nanoTime();
+        Date now = new Date();
+        String nodeId = partitionLeaseService.getNodeId();
+        // Our own unexpired lease counts as free too, e.g. after a quick restart
+        Query query = Query.query(Criteria.where("_id").is(chain).orOperator(
+                Criteria.where("owner").is(null),
+                Criteria.where("owner").is(nodeId),
+                Criteria.where("expiresAt").lt(now)));
+        Update update = new Update().set("owner", nodeId)
+                .set("expiresAt", new Date(now.getTime() + leaseTtlMs))
+                .set("acquiredAt", now)
+                .inc("fencingToken", 1);
+        LeaderLease lease;
+        try {
+            lease = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), LeaderLease.class);
+        } catch (DuplicateKeyException e) {
+            return; // Another instance holds the lease
+        }
+        if (lease == null) {
+            return;
+        }
+        fencingToken = lease.getFencingToken();
+        extendLeadership(attemptNanos);
+        logger.info("Node {} is now the {} leader (fencing token {})", nodeId, chain, fencingToken);
+    }
+
+    private void renew() {
+        long attemptNanos = System.nanoTime();
+        long matched = mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(chain)
+                        .and("owner").is(partitionLeaseService.getNodeId())
+                        .and("fencingToken").is(fencingToken)),
+                new Update().set("expiresAt", new Date(System.currentTimeMillis() + leaseTtlMs)),
+                LeaderLease.class).getMatchedCount();
+        if (matched == 1) {
+            extendLeadership(attemptNanos);
+        } else {
+            leader = false;
+            logger.warn("Node {} lost the {} leadership (fencing token {})", partitionLeaseService.getNodeId(),
+                    chain, fencingToken);
+        }
+    }
+
+    // Measured from before the write, minus one renewal interval of margin for clock skew
+    private void extendLeadership(long attemptNanos) {
+        synchronized (leadershipLock) {
+            leaseDeadlineNanos = attemptNanos + (leaseTtlMs - renewIntervalMs) * 1_000_000L;
+            leader = true;
+            leadershipLock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.model.DepositIdempotency;
+import com.example.ethreader.model.DepositOutboxEntry;
+import com.example.ethreader.model.DepositTransaction;
+import com.example.ethreader.model.HotWallet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Creates the unique indexes that deposit deduplication and credit idempotency rely on, and the
+// indexes behind the services' own lookups. Startup does not wait on MongoDB, so they are ensured
+// on a background thread (retrying while MongoDB is unreachable), and every deposit writer waits
+// for them before writing. If an index cannot be built, e.g. because the collection holds
+// duplicates, no deposit is stored or credited.
+@Service
+public class MongoIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexService.class);
+    private static final long RETRY_DELAY_MS = 5000;
+    private static final long REQUIRE_WAIT_MS = 10000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private volatile String failure; // Set when an index cannot be built
+    private Thread indexThread;
+
+    @PostConstruct
+    public void init() {
+        indexThread = new Thread(this::createIndexes, "MongoIndexes");
+        indexThread.setDaemon(true);
+        indexThread.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexThread.interrupt();
+    }
+
+    // Wait up to the timeout for the indexes; false while they are still being created. Throws
+    // when they could not be built, so callers stop instead of writing without them.
+    public boolean awaitIndexes(long timeoutMs) throws InterruptedException {
+        boolean done = ready.await(timeoutMs, TimeUnit.MILLISECONDS);
+        if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+        return done;
+    }
+
+    // For writers without a loop of their own: wait briefly, then throw unless the indexes exist
+    public void requireIndexes() {
+        try {
+            if (!awaitIndexes(REQUIRE_WAIT_MS)) {
+                throw new IllegalStateException("Deposit indexes are not in place yet");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the deposit indexes", e);
+        }
+    }
+
+    private void createIndexes() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ensureIndexes();
+                logger.info("Deposit indexes are in place");
+                ready.countDown();
+                return;
+            } catch (DataAccessResourceFailureException e) {
+                logger.warn("MongoDB unavailable, retrying deposit index creation: {}", e.getMessage());
+            } catch (Exception e) {
+                failure = "Deposit indexes could not be created; deposits are neither stored nor credited: "
+                        + e.getMessage();
+                logger.error(failure, e);
+                ready.countDown();
+                return;
+            }
+            try {
+                Thread.sleep(RETRY_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Credit records written before the chain and log index were part of their key (they were
+    // keyed by hash and block) get them from their deposits, so they keep matching the deposits'
+    // credit keys. Runs before the unique index is built, once per legacy record.
+    private void migrateLegacyCreditRecords() {
+        List<DepositIdempotency> legacy = mongoTemplate.find(
+                Query.query(Criteria.where("state").exists(false)), DepositIdempotency.class);
+        for (DepositIdempotency record : legacy) {
+            List<DepositTransaction> deposits = mongoTemplate.find(Query.query(
+                    Criteria.where("transactionHash").is(record.getTransactionHash())
+                            .and("blockNumber").is(record.getBlockNumber())), DepositTransaction.class);
+            // The legacy key covered every transfer of the transaction; each credited one gets its
+            // own record. If none is marked credited, the credit happened before the status was saved.
+            List<DepositTransaction> credited = deposits.stream()
+                    .filter(deposit -> deposit.getStatus() == DepositTransaction.DepositStatus.CREDITED)
+                    .toList();
+            if (credited.isEmpty() && !deposits.isEmpty()) {
+                credited = List.of(deposits.get(0));
+            }
+            for (DepositTransaction deposit : credited) {
+                mongoTemplate.upsert(Query.query(Criteria.where("transactionHash").is(deposit.getTransactionHash())
+                                .and("logIndex").is(deposit.getLogIndex())
+                                .and("chain").is(deposit.getChain())),
+                        new Update().setOnInsert("blockNumber", deposit.getBlockNumber())
+                                .setOnInsert("state", DepositIdempotency.CreditState.CREDITED)
+                                .setOnInsert("processedAt", record.getProcessedAt()),
+                        DepositIdempotency.class);
+            }
+            if (credited.isEmpty()) {
+                // No deposit to attach it to; keep it, marked as migrated
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(record.getId())),
+                        new Update().set("state", DepositIdempotency.CreditState.CREDITED), DepositIdempotency.class);
+            } else {
+                mongoTemplate.remove(Query.query(Criteria.where("_id").is(record.getId())), DepositIdempotency.class);
+            }
+        }
+        if (!legacy.isEmpty()) {
+            logger.info("Migrated {} legacy credit records", legacy.size());
+        }
+    }
+
+    // Older versions kept a unique index on idempotencyKey, which current records leave unset, so
+    // the second record written without it would collide on the null key. Dropped before any
+    // record is migrated or written.
+    private void dropLegacyCreditIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(DepositIdempotency.class);
+        for (IndexInfo index : indexOps.getIndexInfo()) {
+            if (index.isIndexForFields(List.of("idempotencyKey"))) {
+                indexOps.dropIndex(index.getName());
+                logger.info("Dropped legacy credit index {}", index.getName());
+            }
+        }
+    }
+
+    // Wallets stored before updatedAt existed get their creation time (or now), so the address
+    // index's delta sync, which filters on updatedAt, sees them too
+    private void backfillWalletUpdatedAt() {
+        long updated = mongoTemplate.updateMulti(Query.query(Criteria.where("updatedAt").exists(false)),
+                AggregationUpdate.update().set("updatedAt")
+                        .toValueOf(ConditionalOperators.ifNull("createdAt").then(new Date())),
+                HotWallet.class).getModifiedCount();
+        if (updated > 0) {
+            logger.info("Set updatedAt on {} wallets stored without it", updated);
+        }
+    }
+
+    // Indexes declared with annotations on the entity; auto index creation is not enabled
+    private void ensureDeclaredIndexes(Class<?> entityType) {
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        IndexOperations indexOps = mongoTemplate.indexOps(entityType);
+        for (IndexDefinition index : resolver.resolveIndexFor(entityType)) {
+            indexOps.createIndex(index);
+        }
+    }
+
+    private void ensureIndexes() {
+        dropLegacyCreditIndexes();
+        migrateLegacyCreditRecords();
+        // One deposit per transfer: a scanner racing another one gets a duplicate key
+        mongoTemplate.indexOps(DepositTransaction.class).createIndex(new Index()
+                .on("transactionHash", Sort.Direction.ASC)
+                .on("logIndex", Sort.Direction.ASC)
+                .on("chain", Sort.Direction.ASC)
+                .named("deposit_transfer")
+                .unique());
+        // One credit record per transfer: a second credit gets a duplicate key
+        mongoTemplate.indexOps(DepositIdempotency.class).createIndex(new Index()
+                .on("transactionHash", Sort.Direction.ASC)
+                .on("logIndex", Sort.Direction.ASC)
+                .on("chain", Sort.Direction.ASC)
+                .named("deposit_credit")
+                .unique());
+        // Reorg handling looks up the open deposits of the replaced blocks
+        mongoTemplate.indexOps(DepositTransaction.class).createIndex(new Index()
+                .on("blockNumber", Sort.Direction.ASC)
+                .on("status", Sort.Direction.ASC)
+                .named("deposit_block_status"));
+        // The scanners warm their seen-deposit caches from the most recent deposits
+        mongoTemplate.indexOps(DepositTransaction.class).createIndex(new Index()
+                .on("createdAt", Sort.Direction.DESC)
+                .named("deposit_created"));
+        // Processors poll their chain's queue entries oldest first; sharded nodes only their partitions'
+        mongoTemplate.indexOps(DepositOutboxEntry.class).createIndex(new Index()
+                .on("chain", Sort.Direction.ASC)
+                .on("enqueuedAt", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .named("outbox_poll"));
+        mongoTemplate.indexOps(DepositOutboxEntry.class).createIndex(new Index()
+                .on("chain", Sort.Direction.ASC)
+                .on("partition", Sort.Direction.ASC)
+                .on("enqueuedAt", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .named("outbox_poll_partition"));
+        backfillWalletUpdatedAt();
+        ensureDeclaredIndexes(HotWallet.class);
+    }
+}
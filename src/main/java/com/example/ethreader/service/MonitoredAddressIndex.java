@@ -0,0 +1,214 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.config.ChainRegistry;
+import com.example.ethreader.model.HotWallet;
+import com.example.ethreader.repository.HotWalletRepository;
+import com.example.ethreader.util.OffHeapAddressSet;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+// Long-lived set of active deposit addresses, stored off-heap as raw 20-byte keys. Seeded once
+// from MongoDB, then kept current by WalletService on this instance and by a periodic delta sync
+// for other instances. With a backing file the set survives restarts and only the delta is synced.
+// In sharded mode only addresses of the partitions this node owns are kept; when ownership
+// changes the set is brought in line by adding and removing entries, never by clearing it.
+@Service
+public class MonitoredAddressIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonitoredAddressIndex.class);
+    private static final long SYNC_OVERLAP_SECONDS = 5; // Tolerates clock skew between instances
+
+    @Autowired
+    private HotWalletRepository hotWalletRepository;
+
+    @Autowired
+    private ChainRegistry chainRegistry;
+
+    @Autowired
+    private PartitionLeaseService partitionLeaseService;
+
+    @Value("${blockchain.chain:sepolia}") // Only wallets of this chain are monitored here
+    private String chain;
+
+    @Value("${blockchain.address.index.file:}") // Memory-mapped file; empty = direct memory
+    private String indexFile;
+
+    @Value("${blockchain.address.index.capacity:100000}") // Expected number of addresses
+    private long expectedAddresses;
+
+    private OffHeapAddressSet addresses;
+    private volatile boolean loaded = false;
+    private LocalDateTime lastSyncedAt;
+    private volatile long appliedOwnershipVersion = -1;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (indexFile != null && !indexFile.isBlank()) {
+            try {
+                addresses = OffHeapAddressSet.open(Path.of(indexFile), expectedAddresses);
+            } catch (IOException e) {
+                logger.warn("Address index file {} is unreadable, rebuilding it", indexFile, e);
+                Files.deleteIfExists(Path.of(indexFile));
+                addresses = OffHeapAddressSet.open(Path.of(indexFile), expectedAddresses);
+            }
+        } else {
+            addresses = OffHeapAddressSet.allocate(expectedAddresses);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (addresses != null) {
+            addresses.close();
+        }
+    }
+
+    // Seed from MongoDB on first use; callers run on background threads so startup is not blocked
+    public void ensureLoaded() {
+        if (loaded) {
+            if (appliedOwnershipVersion != partitionLeaseService.getOwnershipVersion()) {
+                syncPartitions();
+            }
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            long syncedAt = addresses.getSyncedAt();
+            if (addresses.isPersistent() && syncedAt > 0) {
+                // Resume from the persisted file; the next delta sync covers the downtime
+                lastSyncedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(syncedAt), ZoneId.systemDefault());
+                loaded = true;
+                logger.info("Monitored address index reopened with {} addresses (synced at {})",
+                        addresses.size(), lastSyncedAt);
+                if (partitionLeaseService.isSharded()) {
+                    // The file may hold partitions owned by another node since the last run
+                    syncPartitions();
+                } else {
+                    appliedOwnershipVersion = partitionLeaseService.getOwnershipVersion();
+                }
+                return;
+            }
+            LocalDateTime syncStart = LocalDateTime.now();
+            long ownershipVersion = partitionLeaseService.getOwnershipVersion();
+            addresses.clear();
+            List<HotWallet> activeWallets = hotWalletRepository.findActiveAddresses();
+            for (HotWallet wallet : activeWallets) {
+                if (chainRegistry.isOwnedBy(chain, wallet.getChain())) {
+                    apply(wallet.getAddress(), true);
+                }
+            }
+            markSynced(syncStart);
+            appliedOwnershipVersion = ownershipVersion;
+            loaded = true;
+            logger.info("Monitored address index seeded with {} addresses", addresses.size());
+        }
+    }
+
+    // Apply wallets created or deactivated since the last sync, including by other instances
+    public synchronized void syncChanges() {
+        if (!loaded) {
+            ensureLoaded();
+            return;
+        }
+        LocalDateTime syncStart = LocalDateTime.now();
+        List<HotWallet> changes = hotWalletRepository.findAddressChangesSince(
+                lastSyncedAt.minusSeconds(SYNC_OVERLAP_SECONDS));
+        for (HotWallet wallet : changes) {
+            if (chainRegistry.isOwnedBy(chain, wallet.getChain())) {
+                apply(wallet.getAddress(), wallet.isActive());
+            }
+        }
+        markSynced(syncStart);
+        if (!changes.isEmpty()) {
+            logger.debug("Applied {} address changes, {} addresses monitored", changes.size(), addresses.size());
+        }
+    }
+
+    // Add the addresses of newly owned partitions and drop those of released ones
+    private synchronized void syncPartitions() {
+        long ownershipVersion = partitionLeaseService.getOwnershipVersion();
+        if (appliedOwnershipVersion == ownershipVersion) {
+            return;
+        }
+        long before = addresses.size();
+        for (HotWallet wallet : hotWalletRepository.findActiveAddresses()) {
+            if (chainRegistry.isOwnedBy(chain, wallet.getChain())) {
+                String address = wallet.getAddress();
+                try {
+                    if (partitionLeaseService.owns(address)) {
+                        addresses.add(address);
+                    } else {
+                        addresses.remove(address);
+                    }
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping invalid wallet address: {}", address);
+                }
+            }
+        }
+        // Deactivated wallets are not returned here; the change sync still removes them
+        appliedOwnershipVersion = ownershipVersion;
+        logger.info("Monitored address index resynced to partition ownership {}: {} -> {} addresses",
+                ownershipVersion, before, addresses.size());
+    }
+
+    public long getAppliedOwnershipVersion() {
+        return appliedOwnershipVersion;
+    }
+
+    public void add(String address) {
+        apply(address, true);
+    }
+
+    public void remove(String address) {
+        apply(address, false);
+    }
+
+    public boolean contains(String address) {
+        return addresses.contains(address);
+    }
+
+    // Live off-heap set queried by the block filters; no copy is made per scan cycle
+    public OffHeapAddressSet getAddresses() {
+        return addresses;
+    }
+
+    public long size() {
+        return addresses.size();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private void apply(String address, boolean active) {
+        try {
+            if (active && partitionLeaseService.owns(address)) {
+                addresses.add(address);
+            } else {
+                addresses.remove(address);
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Skipping invalid wallet address: {}", address);
+        }
+    }
+
+    private void markSynced(LocalDateTime syncStart) {
+        lastSyncedAt = syncStart;
+        addresses.setSyncedAt(syncStart.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.ethreader.service;
+
+import io.reactivex.disposables.Disposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.NewHead;
+import org.web3j.utils.Numeric;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+@Service
+public class NewHeadsSubscriber {
+
+    private static final Logger logger = LoggerFactory.getLogger(NewHeadsSubscriber.class);
+    private static final long MAX_RECONNECT_DELAY_MS = 30000;
+
+    @Autowired(required = false)
+    private Supplier<WebSocketService> webSocketServiceFactory;
+
+    @Value("${web3j.ws.url:}")
+    private String wsUrl;
+
+    @Value("${web3j.ws.reconnect.delay:1000}") // Initial reconnect delay, doubled up to 30 s
+    private long reconnectDelayMs;
+
+    @Value("${web3j.ws.head.timeout:30000}") // Treat the subscription as stalled after this long without a head
+    private long headTimeoutMs;
+
+    private final ReentrantLock headLock = new ReentrantLock();
+    private final Condition headArrived = headLock.newCondition();
+
+    private ScheduledExecutorService reconnectExecutor;
+    private WebSocketService webSocketService;
+    private Disposable subscription;
+    private volatile boolean running = false;
+    private volatile boolean connected = false;
+    private volatile BigInteger latestHead;
+    private volatile long latestHeadAt;
+    private long currentReconnectDelayMs;
+    private boolean reconnectPending = false;
+
+    @PostConstruct
+    public void init() {
+        if (webSocketServiceFactory == null || wsUrl.isBlank()) {
+            logger.info("web3j.ws.url not set, new blocks are detected by polling");
+            return;
+        }
+
+        running = true;
+        currentReconnectDelayMs = reconnectDelayMs;
+        reconnectExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "NewHeadsSubscriber");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconnectExecutor.execute(this::connect);
+        // A subscription can stall without an error; reconnect if heads stop arriving
+        reconnectExecutor.scheduleWithFixedDelay(this::checkStalled, headTimeoutMs, headTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (reconnectExecutor != null) {
+            reconnectExecutor.shutdownNow();
+        }
+        disconnect();
+    }
+
+    // A chain context without its own URL can still see the primary chain's factory in its parent
+    public boolean isEnabled() {
+        return webSocketServiceFactory != null && !wsUrl.isBlank();
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    // Latest head pushed by the node, or null when there is no live subscription to trust
+    public BigInteger getLatestHead() {
+        if (!connected || latestHead == null || System.currentTimeMillis() - latestHeadAt > headTimeoutMs) {
+            return null;
+        }
+        return latestHead;
+    }
+
+    // Block until a head above afterBlock arrives or the timeout expires; returns that head or null
+    public BigInteger awaitHeadAfter(BigInteger afterBlock, long timeoutMs) throws InterruptedException {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        headLock.lock();
+        try {
+            while (latestHead == null || (afterBlock != null && latestHead.compareTo(afterBlock) <= 0)) {
+                if (remainingNanos <= 0 || !connected) {
+                    return null;
+                }
+                remainingNanos = headArrived.awaitNanos(remainingNanos);
+            }
+            return latestHead;
+        } finally {
+            headLock.unlock();
+        }
+    }
+
+    private void connect() {
+        synchronized (this) {
+            reconnectPending = false;
+        }
+        if (!running) {
+            return;
+        }
+        try {
+            webSocketService = webSocketServiceFactory.get();
+            webSocketService.connect();
+            Web3j web3j = Web3j.build(webSocketService);
+            subscription = web3j.newHeadsNotifications().subscribe(
+                    notification -> onNewHead(notification.getParams().getResult()),
+                    error -> onDisconnected("subscription error: " + error.getMessage()),
+                    () -> onDisconnected("subscription closed"));
+            latestHeadAt = System.currentTimeMillis();
+            connected = true;
+            currentReconnectDelayMs = reconnectDelayMs;
+            logger.info("Subscribed to newHeads over WebSocket");
+        } catch (Exception e) {
+            onDisconnected("connect failed: " + e.getMessage());
+        }
+    }
+
+    private void onNewHead(NewHead head) {
+        BigInteger number = Numeric.decodeQuantity(head.getNumber());
+        headLock.lock();
+        try {
+            if (latestHead == null || number.compareTo(latestHead) >= 0) {
+                latestHead = number;
+            }
+            latestHeadAt = System.currentTimeMillis();
+            headArrived.signalAll();
+        } finally {
+            headLock.unlock();
+        }
+    }
+
+    private void checkStalled() {
+        if (connected && System.currentTimeMillis() - latestHeadAt > headTimeoutMs) {
+            onDisconnected("stalled, no head for " + headTimeoutMs + " ms");
+        }
+    }
+
+    private synchronized void onDisconnected(String reason) {
+        if (!running || reconnectPending) {
+            return;
+        }
+        reconnectPending = true;
+        connected = false;
+        disconnect();
+
+        // Wake waiters so the monitor falls back to polling while we reconnect
+        headLock.lock();
+        try {
+            headArrived.signalAll();
+        } finally {
+            headLock.unlock();
+        }
+
+        logger.warn("newHeads {}; reconnecting in {} ms", reason, currentReconnectDelayMs);
+        try {
+            reconnectExecutor.schedule(this::connect, currentReconnectDelayMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.debug("Reconnect not scheduled", e);
+        }
+        currentReconnectDelayMs = Math.min(currentReconnectDelayMs * 2, MAX_RECONNECT_DELAY_MS);
+    }
+
+    private void disconnect() {
+        if (subscription != null) {
+            subscription.dispose();
+            subscription = null;
+        }
+        if (webSocketService != null) {
+            try {
+                webSocketService.close();
+            } catch (Exception e) {
+                logger.debug("Error closing WebSocket", e);
+            }
+            webSocketService = null;
+        }
+    }
+}
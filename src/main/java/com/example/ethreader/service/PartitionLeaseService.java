@@ -0,0 +1,377 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.model.ClusterNode;
+import com.example.ethreader.model.PartitionLease;
+import com.example.ethreader.model.ScanCheckpoint;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Splits the monitored addresses of a chain across the nodes of a cluster (cluster.mode=sharded).
+// Addresses hash into a fixed number of partitions; every live node computes the same owner for
+// each partition by rendezvous hashing over the live node ids, so a join or leave only moves the
+// partitions of that node. Ownership is held through leases in Mongo that the owner renews, and
+// a partition is only taken over once the previous owner released it or its lease expired.
+// Each lease carries its owner's scan checkpoint, from which the next owner backfills the blocks
+// it has not seen for that partition. In standalone mode every address is owned locally.
+@Service
+public class PartitionLeaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionLeaseService.class);
+    private static final String MODE_SHARDED = "sharded";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ScanCheckpointService scanCheckpointService;
+
+    @Value("${blockchain.chain:sepolia}")
+    private String chain;
+
+    @Value("${cluster.mode:standalone}") // "standalone", "sharded" (this service) or "leader" (LeaderElectionService)
+    private String mode;
+
+    @Value("${cluster.node.id:}") // Stable per node; empty = hostname:port
+    private String nodeId;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    @Value("${cluster.partitions:64}") // Must be the same on every node
+    private int partitionCount;
+
+    @Value("${cluster.lease.ttl:30000}") // ms a lease or node heartbeat stays valid without renewal
+    private long leaseTtlMs;
+
+    @Value("${cluster.lease.renew.interval:10000}") // ms between heartbeats, renewals and rebalancing
+    private long renewIntervalMs;
+
+    private volatile boolean[] owned;
+    private volatile List<String> liveNodes = List.of();
+    private final AtomicLong ownershipVersion = new AtomicLong();
+    private final Queue<Handover> handovers = new ConcurrentLinkedQueue<>();
+    private Thread leaseThread;
+    private volatile boolean running = false;
+
+    @PostConstruct
+    public void init() {
+        partitionCount = Math.max(1, partitionCount);
+        owned = new boolean[partitionCount];
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = defaultNodeId();
+        }
+        if (!"standalone".equalsIgnoreCase(mode) && !"leader".equalsIgnoreCase(mode) && !isSharded()) {
+            throw new IllegalStateException("Unknown cluster.mode: " + mode);
+        }
+        if (!isSharded()) {
+            return;
+        }
+
+        running = true;
+        leaseThread = new Thread(this::maintainLeases, "PartitionLeases-" + chain);
+        leaseThread.setDaemon(true);
+        leaseThread.start();
+        logger.info("Node {} joining the {} cluster with {} partitions", nodeId, chain, partitionCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        leaseThread.interrupt();
+        try {
+            leaseThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Hand the partitions over now instead of letting the leases expire
+        try {
+            Long checkpoint = currentCheckpoint();
+            for (int partition = 0; partition < partitionCount; partition++) {
+                if (owned[partition]) {
+                    release(partition, checkpoint);
+                }
+            }
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(nodeKey())), ClusterNode.class);
+        } catch (Exception e) {
+            logger.warn("Failed to release partition leases on shutdown: {}", e.getMessage());
+        }
+    }
+
+    public boolean isSharded() {
+        return MODE_SHARDED.equalsIgnoreCase(mode);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    // Addresses are keccak-derived, so their low bits are already uniformly distributed
+    public int partitionOf(String address) {
+        String hex = address.startsWith("0x") || address.startsWith("0X") ? address.substring(2) : address;
+        long low = Long.parseLong(hex.substring(Math.max(0, hex.length() - 8)), 16);
+        return (int) (low % partitionCount);
+    }
+
+    public boolean owns(String address) {
+        if (!isSharded()) {
+            return true;
+        }
+        try {
+            return owned[partitionOf(address)];
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    public boolean ownsPartition(int partition) {
+        return !isSharded() || owned[partition];
+    }
+
+    public int getOwnedPartitionCount() {
+        if (!isSharded()) {
+            return partitionCount;
+        }
+        int count = 0;
+        for (boolean partitionOwned : owned) {
+            if (partitionOwned) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Nodes with a current heartbeat, as of the last rebalance
+    public List<String> getLiveNodes() {
+        return liveNodes;
+    }
+
+    // Incremented whenever the set of owned partitions changes
+    public long getOwnershipVersion() {
+        return ownershipVersion.get();
+    }
+
+    // Each node scans with its own cursor, so in sharded mode the checkpoint is per node
+    public String getCheckpointName() {
+        return isSharded() ? chain + "@" + nodeId : chain;
+    }
+
+    // Partitions taken over from another node whose missed blocks still need a backfill
+    public Queue<Handover> getHandovers() {
+        return handovers;
+    }
+
+    private void maintainLeases() {
+        while (running) {
+            try {
+                rebalance();
+            } catch (Exception e) {
+                logger.error("Error maintaining partition leases", e);
+            }
+            try {
+                Thread.sleep(renewIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private void rebalance() {
+        Date now = new Date();
+        heartbeat(now);
+        List<String> liveNodes = liveNodes(now);
+        if (!liveNodes.contains(nodeId)) {
+            liveNodes.add(nodeId);
+        }
+        this.liveNodes = List.copyOf(liveNodes);
+        Long checkpoint = currentCheckpoint();
+
+        // Renew everything still held in one write, then read back what is actually ours
+        mongoTemplate.updateMulti(Query.query(Criteria.where("chain").is(chain).and("owner").is(nodeId)),
+                new Update().set("expiresAt", new Date(now.getTime() + leaseTtlMs))
+                        .set("checkpointBlock", checkpoint),
+                PartitionLease.class);
+        boolean[] held = new boolean[partitionCount];
+        for (PartitionLease lease : mongoTemplate.find(
+                Query.query(Criteria.where("chain").is(chain).and("owner").is(nodeId)), PartitionLease.class)) {
+            if (lease.getPartition() >= 0 && lease.getPartition() < partitionCount) {
+                held[lease.getPartition()] = true;
+            }
+        }
+
+        boolean[] next = new boolean[partitionCount];
+        long version = ownershipVersion.get() + 1;
+        for (int partition = 0; partition < partitionCount; partition++) {
+            boolean assigned = nodeId.equals(assignedNode(partition, liveNodes));
+            if (held[partition] && !assigned) {
+                release(partition, checkpoint);
+            } else if (held[partition]) {
+                next[partition] = true;
+            } else if (assigned) {
+                next[partition] = acquire(partition, now, version);
+            }
+        }
+
+        boolean[] previous = owned;
+        int gained = 0;
+        int lost = 0;
+        for (int partition = 0; partition < partitionCount; partition++) {
+            if (next[partition] && !previous[partition]) {
+                gained++;
+            } else if (!next[partition] && previous[partition]) {
+                lost++;
+            }
+        }
+        if (gained > 0 || lost > 0) {
+            owned = next;
+            ownershipVersion.set(version);
+            logger.info("Node {} now owns {} of {} {} partitions (+{} -{}, {} live nodes)", nodeId,
+                    getOwnedPartitionCount(), partitionCount, chain, gained, lost, liveNodes.size());
+        }
+    }
+
+    private void heartbeat(Date now) {
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(nodeKey())),
+                new Update().set("chain", chain)
+                        .set("nodeId", nodeId)
+                        .set("heartbeatAt", now)
+                        .setOnInsert("startedAt", now),
+                ClusterNode.class);
+    }
+
+    private List<String> liveNodes(Date now) {
+        List<String> nodes = new ArrayList<>();
+        for (ClusterNode node : mongoTemplate.find(Query.query(Criteria.where("chain").is(chain)
+                .and("heartbeatAt").gt(new Date(now.getTime() - leaseTtlMs))), ClusterNode.class)) {
+            nodes.add(node.getNodeId());
+        }
+        return nodes;
+    }
+
+    // Take a partition that is unowned, released or expired; returns false while another node holds it
+    private boolean acquire(int partition, Date now, long version) {
+        Query query = Query.query(Criteria.where("_id").is(leaseKey(partition)).orOperator(
+                Criteria.where("owner").is(null),
+                Criteria.where("expiresAt").lt(now)));
+        Update update = new Update().set("chain", chain)
+                .set("partition", partition)
+                .set("owner", nodeId)
+                .set("expiresAt", new Date(now.getTime() + leaseTtlMs))
+                .inc("epoch", 1);
+        PartitionLease previous;
+        try {
+            previous = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(false), PartitionLease.class);
+        } catch (DuplicateKeyException e) {
+            return false; // The lease exists and is held by someone else
+        }
+        if (previous != null && previous.getCheckpointBlock() != null) {
+            handovers.add(new Handover(partition, previous.getCheckpointBlock() + 1, version));
+        }
+        return true;
+    }
+
+    private void release(int partition, Long checkpoint) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(leaseKey(partition)).and("owner").is(nodeId)),
+                new Update().set("owner", null)
+                        .set("expiresAt", new Date())
+                        .set("checkpointBlock", checkpoint),
+                PartitionLease.class);
+    }
+
+    private Long currentCheckpoint() {
+        Optional<ScanCheckpoint> checkpoint = scanCheckpointService.load(getCheckpointName());
+        return checkpoint.map(c -> c.getBlockNumber().longValueExact()).orElse(null);
+    }
+
+    // Highest random weight: every node derives the same owner from the same live node list
+    private static String assignedNode(int partition, List<String> liveNodes) {
+        String best = null;
+        long bestWeight = Long.MIN_VALUE;
+        for (String node : liveNodes) {
+            long weight = mix(mix(node.hashCode()) + partition * 0x9E3779B97F4A7C15L);
+            if (best == null || weight > bestWeight || (weight == bestWeight && node.compareTo(best) < 0)) {
+                best = node;
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private String leaseKey(int partition) {
+        return chain + ":" + partition;
+    }
+
+    private String nodeKey() {
+        return chain + "/" + nodeId;
+    }
+
+    private String defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName() + ":" + serverPort;
+        } catch (Exception e) {
+            return "node-" + ProcessHandle.current().pid() + ":" + serverPort;
+        }
+    }
+
+    public static class Handover {
+        private final int partition;
+        private final long fromBlock;
+        private final long ownershipVersion;
+
+        Handover(int partition, long fromBlock, long ownershipVersion) {
+            this.partition = partition;
+            this.fromBlock = fromBlock;
+            this.ownershipVersion = ownershipVersion;
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public long getFromBlock() {
+            return fromBlock;
+        }
+
+        // The address index must have applied this version before the backfill starts
+        public long getOwnershipVersion() {
+            return ownershipVersion;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.model.ScanCheckpoint;
+import com.example.ethreader.repository.ScanCheckpointRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+@Service
+public class ScanCheckpointService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanCheckpointService.class);
+
+    @Autowired
+    private ScanCheckpointRepository scanCheckpointRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoDatabaseFactory mongoDatabaseFactory;
+
+    @Value("${blockchain.checkpoint.transactional:true}") // Use a Mongo transaction when the server supports it
+    private boolean transactional;
+
+    private volatile TransactionTemplate transactionTemplate;
+    private volatile Boolean transactionsSupported;
+
+    public Optional<ScanCheckpoint> load(String chain) {
+        return scanCheckpointRepository.findById(chain);
+    }
+
+    // Run the block's deposit writes and advance the checkpoint as one unit. On a replica set this
+    // is a Mongo transaction; on a standalone server the checkpoint is written last, so a crash in
+    // between only replays the block, and deposits are deduplicated on replay.
+    public <T> T commitBlock(String chain, BigInteger blockNumber, String blockHash, long fencingToken,
+                             Supplier<T> blockWrites) {
+        if (useTransactions()) {
+            return getTransactionTemplate().execute(status -> {
+                T result = blockWrites.get();
+                save(chain, blockNumber, blockHash, fencingToken);
+                return result;
+            });
+        }
+
+        T result = blockWrites.get();
+        save(chain, blockNumber, blockHash, fencingToken);
+        return result;
+    }
+
+    // A non-zero fencing token only overwrites a checkpoint written under the same or an older
+    // leadership term; a deposed leader gets an IllegalStateException instead
+    public void save(String chain, BigInteger blockNumber, String blockHash, long fencingToken) {
+        if (fencingToken == 0) {
+            scanCheckpointRepository.save(new ScanCheckpoint(chain, blockNumber, blockHash));
+            return;
+        }
+        Query query = Query.query(Criteria.where("_id").is(chain).orOperator(
+                Criteria.where("fencingToken").is(null),
+                Criteria.where("fencingToken").lte(fencingToken)));
+        try {
+            mongoTemplate.upsert(query, new Update().set("blockNumber", blockNumber)
+                    .set("blockHash", blockHash)
+                    .set("fencingToken", fencingToken)
+                    .set("updatedAt", LocalDateTime.now()), ScanCheckpoint.class);
+        } catch (DuplicateKeyException e) {
+            throw new IllegalStateException("Checkpoint " + chain + " is held by a newer leader than term "
+                    + fencingToken, e);
+        }
+    }
+
+    private boolean useTransactions() {
+        if (!transactional) {
+            return false;
+        }
+        if (transactionsSupported == null) {
+            // Transactions need a replica set member or a mongos router
+            Document hello = mongoTemplate.executeCommand(new Document("hello", 1));
+            transactionsSupported = hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+            if (!transactionsSupported) {
+                logger.warn("MongoDB does not support transactions; checkpoints are written after each block's deposits");
+            }
+        }
+        return transactionsSupported;
+    }
+
+    private TransactionTemplate getTransactionTemplate() {
+        if (transactionTemplate == null) {
+            transactionTemplate = new TransactionTemplate(new MongoTransactionManager(mongoDatabaseFactory));
+        }
+        return transactionTemplate;
+    }
+}
@@ -12,16 +12,40 @@ public class ScheduledTasks {
     private static final Logger logger = LoggerFactory.getLogger(ScheduledTasks.class);
 
     @Autowired
-    private DepositProcessorService depositProcessorService;
+    private MonitoredAddressIndex monitoredAddressIndex;
 
-    // Update confirmations every 30 seconds
-    @Scheduled(fixedRate = 30000)
-    public void updateConfirmations() {
+    @Autowired
+    private PartitionLeaseService partitionLeaseService;
+
+    @Autowired
+    private BackfillService backfillService;
+
+    @Autowired
+    private LeaderElectionService leaderElectionService;
+
+    // Pick up wallets created or deactivated by other instances
+    @Scheduled(fixedDelayString = "${blockchain.address.sync.interval:30000}")
+    public void syncMonitoredAddresses() {
         try {
-            depositProcessorService.updateConfirmations();
+            monitoredAddressIndex.syncChanges();
         } catch (Exception e) {
-            logger.error("Error updating confirmations in scheduled task", e);
+            logger.error("Error syncing monitored addresses in scheduled task", e);
         }
     }
-}
 
+    // Sharded mode: backfill partitions taken over from other nodes and adopt their orphaned jobs.
+    // Leader mode: the leader resumes the backfills of its predecessor.
+    @Scheduled(fixedDelayString = "${cluster.lease.renew.interval:10000}")
+    public void runClusterTasks() {
+        try {
+            if (partitionLeaseService.isSharded()) {
+                backfillService.startPartitionHandovers();
+                backfillService.adoptOrphanedJobs();
+            } else if (leaderElectionService.isLeaderMode() && leaderElectionService.isLeader()) {
+                backfillService.resumeInterruptedJobs();
+            }
+        } catch (Exception e) {
+            logger.error("Error running cluster tasks in scheduled task", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.ethreader.service;
 
+import com.example.ethreader.config.ChainRegistry;
 import com.example.ethreader.model.HotWallet;
 import com.example.ethreader.repository.HotWalletRepository;
 import com.example.ethreader.util.EncryptionUtil;
@@ -28,6 +29,9 @@ public class WalletService {
     @Autowired
     private EncryptionUtil encryptionUtil;
 
+    @Autowired
+    private ChainRegistry chainRegistry;
+
     public HotWallet generateHotWallet(String userId, String chain, String tokenAddress) {
         try {
             // Check if user already has an active wallet for this chain/token combination
@@ -38,7 +42,10 @@ public class WalletService {
                 // Deactivate old wallet
                 HotWallet oldWallet = existingWallet.get();
                 oldWallet.setActive(false);
+                oldWallet.setUpdatedAt(java.time.LocalDateTime.now());
                 hotWalletRepository.save(oldWallet);
+                chainRegistry.getService(oldWallet.getChain(), MonitoredAddressIndex.class)
+                        .remove(oldWallet.getAddress());
             }
 
             // Generate new wallet
@@ -69,7 +76,9 @@ public class WalletService {
             wallet.setTokenAddress(tokenAddress);
             wallet.setActive(true);
             
-            return hotWalletRepository.save(wallet);
+            HotWallet savedWallet = hotWalletRepository.save(wallet);
+            chainRegistry.getService(chain, MonitoredAddressIndex.class).add(savedWallet.getAddress());
+            return savedWallet;
         } catch (NoSuchAlgorithmException | NoSuchProviderException | InvalidAlgorithmParameterException e) {
             logger.error("Error generating wallet", e);
             throw new RuntimeException("Failed to generate wallet", e);
@@ -0,0 +1,115 @@
+package com.example.ethreader.util;
+
+import java.util.function.LongFunction;
+
+// Fixed-size ring of the most recent (number, hash, parentHash) entries seen by the scanner,
+// used to detect chain reorganizations without touching the database
+public class BlockHashRing {
+
+    private final long[] numbers;
+    private final String[] hashes;
+    private final String[] parentHashes;
+    private long latestNumber = -1;
+
+    public BlockHashRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.numbers = new long[capacity];
+        this.hashes = new String[capacity];
+        this.parentHashes = new String[capacity];
+        java.util.Arrays.fill(numbers, -1);
+    }
+
+    public int capacity() {
+        return numbers.length;
+    }
+
+    public void add(long number, String hash, String parentHash) {
+        if (latestNumber >= 0 && number != latestNumber + 1) {
+            // Not contiguous with what we hold (skipped range or rewind), so start over
+            clear();
+        }
+        int slot = slot(number);
+        numbers[slot] = number;
+        hashes[slot] = hash;
+        parentHashes[slot] = parentHash;
+        latestNumber = number;
+    }
+
+    // Hash recorded for the block, or null if it is not (or no longer) in the ring
+    public String getHash(long number) {
+        if (number < 0) {
+            return null;
+        }
+        int slot = slot(number);
+        return numbers[slot] == number ? hashes[slot] : null;
+    }
+
+    public String getParentHash(long number) {
+        if (number < 0) {
+            return null;
+        }
+        int slot = slot(number);
+        return numbers[slot] == number ? parentHashes[slot] : null;
+    }
+
+    public long getLatestNumber() {
+        return latestNumber;
+    }
+
+    public long getOldestNumber() {
+        if (latestNumber < 0) {
+            return -1;
+        }
+        long oldest = latestNumber;
+        while (oldest > 0 && oldest > latestNumber - numbers.length + 1 && getHash(oldest - 1) != null) {
+            oldest--;
+        }
+        return oldest;
+    }
+
+    // Walk back from fromBlock to the newest block whose recorded hash matches the canonical chain.
+    // Returns getOldestNumber() - 1 when no tracked block matches (reorg deeper than the ring).
+    public long findCommonAncestor(long fromBlock, LongFunction<String> canonicalHash) {
+        long oldest = getOldestNumber();
+        for (long number = Math.min(fromBlock, latestNumber); number >= oldest && number >= 0; number--) {
+            String recorded = getHash(number);
+            if (recorded != null && recorded.equalsIgnoreCase(canonicalHash.apply(number))) {
+                return number;
+            }
+        }
+        return oldest - 1;
+    }
+
+    // Forget every block above the given number (after rewinding to a common ancestor)
+    public void truncateAfter(long number) {
+        if (latestNumber - number >= numbers.length) {
+            clear(); // Every entry we hold is above the number
+            return;
+        }
+        while (latestNumber > number && latestNumber >= 0) {
+            int slot = slot(latestNumber);
+            if (numbers[slot] == latestNumber) {
+                numbers[slot] = -1;
+                hashes[slot] = null;
+                parentHashes[slot] = null;
+            }
+            latestNumber--;
+        }
+        if (getHash(latestNumber) == null) {
+            latestNumber = -1;
+        }
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(numbers, -1);
+        java.util.Arrays.fill(hashes, null);
+        java.util.Arrays.fill(parentHashes, null);
+        latestNumber = -1;
+    }
+
+    private int slot(long number) {
+        return (int) (number % numbers.length);
+    }
+}
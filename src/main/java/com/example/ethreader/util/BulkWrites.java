@@ -0,0 +1,31 @@
+package com.example.ethreader.util;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.springframework.data.mongodb.BulkOperationException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public final class BulkWrites {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private BulkWrites() {
+    }
+
+    // Positions of the writes of an unordered bulk write that hit a unique index; the other writes
+    // were applied. Rethrows the exception when it was not only duplicate keys.
+    public static Set<Integer> duplicateIndexes(BulkOperationException e) {
+        if (e.getErrors().isEmpty()) {
+            throw e;
+        }
+        Set<Integer> duplicates = new HashSet<>();
+        for (BulkWriteError error : e.getErrors()) {
+            if (error.getCode() != DUPLICATE_KEY) {
+                throw e;
+            }
+            duplicates.add(error.getIndex());
+        }
+        return duplicates;
+    }
+}
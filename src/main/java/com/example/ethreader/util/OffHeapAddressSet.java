@@ -0,0 +1,531 @@
+package com.example.ethreader.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Open-addressing hash set of raw 20-byte addresses stored outside the Java heap, either in
+// direct memory or in a memory-mapped file that survives restarts. Each slot is exactly the
+// 20 address bytes: all zeros marks an empty slot and all 0xFF a deleted one, so those two
+// addresses cannot be stored. Lookups decode keys into primitives and never allocate.
+public class OffHeapAddressSet implements Closeable {
+
+    public static final int ADDRESS_BYTES = 20;
+
+    private static final int HEADER_BYTES = 64;
+    private static final long MAGIC = 0x4554485253455431L; // "ETHRSET1"
+    private static final int SEGMENT_SHIFT = 25; // 32M slots (640 MB) per buffer
+    private static final long MIN_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+
+    // Header layout
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SIZE_OFFSET = 16;
+    private static final int TOMBSTONES_OFFSET = 24;
+    private static final int SYNCED_AT_OFFSET = 32;
+
+    private final Path file; // null when backed by direct memory
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Table table;
+
+    private OffHeapAddressSet(Path file, Table table) {
+        this.file = file;
+        this.table = table;
+    }
+
+    // Direct-memory set; counts against -XX:MaxDirectMemorySize
+    public static OffHeapAddressSet allocate(long expectedSize) {
+        try {
+            return new OffHeapAddressSet(null, Table.create(null, capacityFor(expectedSize)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected I/O error allocating direct memory", e);
+        }
+    }
+
+    // Memory-mapped set; reopens an existing file or creates a new one
+    public static OffHeapAddressSet open(Path file, long expectedSize) throws IOException {
+        if (Files.exists(file) && Files.size(file) >= HEADER_BYTES) {
+            return new OffHeapAddressSet(file, Table.open(file));
+        }
+        return new OffHeapAddressSet(file, Table.create(file, capacityFor(expectedSize)));
+    }
+
+    public boolean add(CharSequence hexAddress) {
+        int offset = hexOffset(hexAddress);
+        return add(hexLong(hexAddress, offset, 16), hexLong(hexAddress, offset + 16, 16),
+                (int) hexLong(hexAddress, offset + 32, 8));
+    }
+
+    public boolean remove(CharSequence hexAddress) {
+        int offset = hexOffset(hexAddress);
+        return remove(hexLong(hexAddress, offset, 16), hexLong(hexAddress, offset + 16, 16),
+                (int) hexLong(hexAddress, offset + 32, 8));
+    }
+
+    // Accepts "0x"-prefixed or bare hex in any case; false for anything that is not 40 hex digits
+    public boolean contains(CharSequence hexAddress) {
+        if (hexAddress == null) {
+            return false;
+        }
+        int offset = hexAddress.length() == 2 + 2 * ADDRESS_BYTES ? 2 : 0;
+        if (hexAddress.length() - offset != 2 * ADDRESS_BYTES || !isHex(hexAddress, offset)) {
+            return false;
+        }
+        return contains(hexLong(hexAddress, offset, 16), hexLong(hexAddress, offset + 16, 16),
+                (int) hexLong(hexAddress, offset + 32, 8));
+    }
+
+    // 40 hex digits starting at offset, e.g. the last 20 bytes of a 32-byte log topic
+    public boolean contains(CharSequence chars, int offset) {
+        if (offset < 0 || offset + 2 * ADDRESS_BYTES > chars.length() || !isHex(chars, offset)) {
+            return false;
+        }
+        return contains(hexLong(chars, offset, 16), hexLong(chars, offset + 16, 16),
+                (int) hexLong(chars, offset + 32, 8));
+    }
+
+    // 40 hex digits starting at offset, e.g. straight out of a JSON parser's character buffer
+    public boolean contains(char[] chars, int offset) {
+        if (offset < 0 || offset + 2 * ADDRESS_BYTES > chars.length) {
+            return false;
+        }
+        for (int i = offset; i < offset + 2 * ADDRESS_BYTES; i++) {
+            if (Character.digit(chars[i], 16) < 0) {
+                return false;
+            }
+        }
+        return contains(hexLong(chars, offset, 16), hexLong(chars, offset + 16, 16),
+                (int) hexLong(chars, offset + 32, 8));
+    }
+
+    public boolean contains(byte[] address, int offset) {
+        return contains(bytesLong(address, offset, 8), bytesLong(address, offset + 8, 8),
+                (int) bytesLong(address, offset + 16, 4));
+    }
+
+    public boolean add(long k0, long k1, int k2) {
+        checkStorable(k0, k1, k2);
+        lock.writeLock().lock();
+        try {
+            long slot = table.find(k0, k1, k2);
+            if (slot >= 0) {
+                return false;
+            }
+            long insertAt = -slot - 1;
+            if (table.isTombstone(insertAt)) {
+                table.setTombstones(table.tombstones - 1);
+            }
+            table.write(insertAt, k0, k1, k2);
+            table.setSize(table.size + 1);
+            if (table.size + table.tombstones > table.capacity * MAX_LOAD) {
+                rehash(table.size * 2 > table.capacity * MAX_LOAD ? table.capacity * 2 : table.capacity);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(long k0, long k1, int k2) {
+        if (!isStorable(k0, k1, k2)) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            long slot = table.find(k0, k1, k2);
+            if (slot < 0) {
+                return false;
+            }
+            table.write(slot, -1L, -1L, -1);
+            table.setSize(table.size - 1);
+            table.setTombstones(table.tombstones + 1);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long k0, long k1, int k2) {
+        if (!isStorable(k0, k1, k2)) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return table.find(k0, k1, k2) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Visits every address as a lowercase "0x"-prefixed string (allocates one string per entry)
+    public void forEach(Consumer<String> consumer) {
+        lock.readLock().lock();
+        try {
+            char[] chars = new char[2 + 2 * ADDRESS_BYTES];
+            chars[0] = '0';
+            chars[1] = 'x';
+            for (long slot = 0; slot < table.capacity; slot++) {
+                if (table.isUsed(slot)) {
+                    ByteBuffer segment = table.segment(slot);
+                    int position = table.position(slot);
+                    for (int i = 0; i < ADDRESS_BYTES; i++) {
+                        int b = segment.get(position + i) & 0xFF;
+                        chars[2 + 2 * i] = Character.forDigit(b >>> 4, 16);
+                        chars[3 + 2 * i] = Character.forDigit(b & 0x0F, 16);
+                    }
+                    consumer.accept(new String(chars));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rehash(MIN_CAPACITY, false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return table.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Free-form timestamp persisted in the header (used to resume delta syncs after a restart)
+    public long getSyncedAt() {
+        lock.readLock().lock();
+        try {
+            return table.header.getLong(SYNCED_AT_OFFSET);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setSyncedAt(long syncedAt) {
+        lock.writeLock().lock();
+        try {
+            table.header.putLong(SYNCED_AT_OFFSET, syncedAt);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isPersistent() {
+        return file != null;
+    }
+
+    // Flush a memory-mapped set to disk; no-op for direct memory
+    public void force() {
+        lock.readLock().lock();
+        try {
+            table.force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Flushes and releases the file; the mappings themselves are unmapped once garbage collected
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            table.force();
+            table.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to close address set", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rehash(long newCapacity) {
+        rehash(newCapacity, true);
+    }
+
+    private void rehash(long newCapacity, boolean copyEntries) {
+        Table current = table;
+        Path target = file != null ? file.resolveSibling(file.getFileName() + ".resize") : null;
+        Table fresh = null;
+        try {
+            fresh = Table.create(target, newCapacity);
+            if (copyEntries) {
+                for (long slot = 0; slot < current.capacity; slot++) {
+                    if (current.isUsed(slot)) {
+                        ByteBuffer segment = current.segment(slot);
+                        int position = current.position(slot);
+                        long k0 = segment.getLong(position);
+                        long k1 = segment.getLong(position + 8);
+                        int k2 = segment.getInt(position + 16);
+                        fresh.write(-fresh.find(k0, k1, k2) - 1, k0, k1, k2);
+                        fresh.setSize(fresh.size + 1);
+                    }
+                }
+            }
+            fresh.header.putLong(SYNCED_AT_OFFSET, current.header.getLong(SYNCED_AT_OFFSET));
+            if (file != null) {
+                fresh.force();
+                Files.move(target, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            table = fresh;
+        } catch (IOException e) {
+            if (fresh != null) {
+                fresh.closeQuietly();
+            }
+            throw new IllegalStateException("Failed to resize address set", e);
+        }
+        current.closeQuietly();
+    }
+
+    private static long capacityFor(long expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD);
+        long capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static boolean isStorable(long k0, long k1, int k2) {
+        boolean empty = k0 == 0 && k1 == 0 && k2 == 0;
+        boolean tombstone = k0 == -1L && k1 == -1L && k2 == -1;
+        return !empty && !tombstone;
+    }
+
+    private static void checkStorable(long k0, long k1, int k2) {
+        if (!isStorable(k0, k1, k2)) {
+            throw new IllegalArgumentException("The zero and all-ones addresses cannot be stored");
+        }
+    }
+
+    private static int hexOffset(CharSequence hexAddress) {
+        int offset = hexAddress.length() == 2 + 2 * ADDRESS_BYTES ? 2 : 0;
+        if (hexAddress.length() - offset != 2 * ADDRESS_BYTES || !isHex(hexAddress, offset)) {
+            throw new IllegalArgumentException("Not a 20-byte hex address: " + hexAddress);
+        }
+        return offset;
+    }
+
+    private static boolean isHex(CharSequence chars, int offset) {
+        for (int i = offset; i < offset + 2 * ADDRESS_BYTES; i++) {
+            if (Character.digit(chars.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hexLong(CharSequence chars, int offset, int digits) {
+        long value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            value = (value << 4) | Character.digit(chars.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static long hexLong(char[] chars, int offset, int digits) {
+        long value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            value = (value << 4) | Character.digit(chars[i], 16);
+        }
+        return value;
+    }
+
+    private static long bytesLong(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long hash(long k0, long k1, int k2) {
+        // Addresses are already uniformly distributed; the mix guards against crafted prefixes
+        long h = k0 * 0x9E3779B97F4A7C15L ^ k1 * 0xC2B2AE3D27D4EB4FL ^ k2;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // One hash table generation: header plus slot segments
+    private static class Table {
+        private final long capacity;
+        private final ByteBuffer header;
+        private final ByteBuffer[] segments;
+        private final FileChannel channel;
+        private long size;
+        private long tombstones;
+
+        private Table(long capacity, ByteBuffer header, ByteBuffer[] segments, FileChannel channel) {
+            this.capacity = capacity;
+            this.header = header;
+            this.segments = segments;
+            this.channel = channel;
+            this.size = header.getLong(SIZE_OFFSET);
+            this.tombstones = header.getLong(TOMBSTONES_OFFSET);
+        }
+
+        static Table create(Path file, long capacity) throws IOException {
+            FileChannel channel = null;
+            ByteBuffer header;
+            if (file != null) {
+                Files.deleteIfExists(file);
+                channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            }
+            try {
+                header = channel != null
+                        ? channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES)
+                        : ByteBuffer.allocateDirect(HEADER_BYTES);
+                header.putLong(MAGIC_OFFSET, MAGIC);
+                header.putLong(CAPACITY_OFFSET, capacity);
+                header.putLong(SIZE_OFFSET, 0);
+                header.putLong(TOMBSTONES_OFFSET, 0);
+                header.putLong(SYNCED_AT_OFFSET, 0);
+                return new Table(capacity, header, mapSegments(channel, capacity), channel);
+            } catch (IOException | RuntimeException e) {
+                if (channel != null) {
+                    channel.close();
+                }
+                throw e;
+            }
+        }
+
+        static Table open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                long capacity = header.getLong(CAPACITY_OFFSET);
+                if (header.getLong(MAGIC_OFFSET) != MAGIC || Long.bitCount(capacity) != 1
+                        || channel.size() < HEADER_BYTES + capacity * ADDRESS_BYTES) {
+                    throw new IOException("Not a valid address set file: " + file);
+                }
+                return new Table(capacity, header, mapSegments(channel, capacity), channel);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private static ByteBuffer[] mapSegments(FileChannel channel, long capacity) throws IOException {
+            long slotsPerSegment = Math.min(capacity, 1L << SEGMENT_SHIFT);
+            int segmentCount = (int) (capacity / slotsPerSegment);
+            long segmentBytes = slotsPerSegment * ADDRESS_BYTES;
+            ByteBuffer[] segments = new ByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = channel != null
+                        ? channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + i * segmentBytes, segmentBytes)
+                        : ByteBuffer.allocateDirect((int) segmentBytes);
+            }
+            return segments;
+        }
+
+        // Slot index if present, otherwise -(insertion slot + 1)
+        long find(long k0, long k1, int k2) {
+            long mask = capacity - 1;
+            long slot = hash(k0, k1, k2) & mask;
+            long firstTombstone = -1;
+            while (true) {
+                ByteBuffer segment = segment(slot);
+                int position = position(slot);
+                long s0 = segment.getLong(position);
+                long s1 = segment.getLong(position + 8);
+                int s2 = segment.getInt(position + 16);
+                if (s0 == 0 && s1 == 0 && s2 == 0) {
+                    return -(firstTombstone >= 0 ? firstTombstone : slot) - 1;
+                }
+                if (s0 == k0 && s1 == k1 && s2 == k2) {
+                    return slot;
+                }
+                if (firstTombstone < 0 && s0 == -1L && s1 == -1L && s2 == -1) {
+                    firstTombstone = slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        void write(long slot, long k0, long k1, int k2) {
+            ByteBuffer segment = segment(slot);
+            int position = position(slot);
+            segment.putLong(position, k0);
+            segment.putLong(position + 8, k1);
+            segment.putInt(position + 16, k2);
+        }
+
+        boolean isUsed(long slot) {
+            ByteBuffer segment = segment(slot);
+            int position = position(slot);
+            long s0 = segment.getLong(position);
+            long s1 = segment.getLong(position + 8);
+            int s2 = segment.getInt(position + 16);
+            return isStorable(s0, s1, s2);
+        }
+
+        boolean isTombstone(long slot) {
+            ByteBuffer segment = segment(slot);
+            int position = position(slot);
+            return segment.getLong(position) == -1L && segment.getLong(position + 8) == -1L
+                    && segment.getInt(position + 16) == -1;
+        }
+
+        void setSize(long size) {
+            this.size = size;
+            header.putLong(SIZE_OFFSET, size);
+        }
+
+        void setTombstones(long tombstones) {
+            this.tombstones = tombstones;
+            header.putLong(TOMBSTONES_OFFSET, tombstones);
+        }
+
+        ByteBuffer segment(long slot) {
+            return segments[(int) (slot >>> SEGMENT_SHIFT)];
+        }
+
+        int position(long slot) {
+            return (int) (slot & ((1L << SEGMENT_SHIFT) - 1)) * ADDRESS_BYTES;
+        }
+
+        void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+
+        // For a generation that is being replaced or abandoned, where the data is not at stake
+        void closeQuietly() {
+            try {
+                close();
+            } catch (IOException ignored) {
+                // Nothing left to do with this generation
+            }
+        }
+
+        void force() {
+            if (channel == null) {
+                return;
+            }
+            ((MappedByteBuffer) header).force();
+            for (ByteBuffer segment : segments) {
+                ((MappedByteBuffer) segment).force();
+            }
+        }
+    }
+}
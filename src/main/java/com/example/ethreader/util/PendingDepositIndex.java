@@ -0,0 +1,68 @@
+package com.example.ethreader.util;
+
+import com.example.ethreader.model.DepositTransaction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Deposits waiting for a confirmation threshold, ordered by block number so that each new head
+// only touches the deposits that crossed it. Not thread-safe; callers synchronize.
+public class PendingDepositIndex {
+
+    private final TreeMap<Long, Map<String, DepositTransaction>> byBlock = new TreeMap<>();
+    private final Map<String, Long> blockById = new HashMap<>();
+
+    // Adds or re-positions a stored deposit (it must have an id and a block number)
+    public void add(DepositTransaction deposit) {
+        remove(deposit.getId());
+        long blockNumber = deposit.getBlockNumber().longValueExact();
+        byBlock.computeIfAbsent(blockNumber, number -> new LinkedHashMap<>()).put(deposit.getId(), deposit);
+        blockById.put(deposit.getId(), blockNumber);
+    }
+
+    public boolean remove(String id) {
+        Long blockNumber = blockById.remove(id);
+        if (blockNumber == null) {
+            return false;
+        }
+        Map<String, DepositTransaction> deposits = byBlock.get(blockNumber);
+        deposits.remove(id);
+        if (deposits.isEmpty()) {
+            byBlock.remove(blockNumber);
+        }
+        return true;
+    }
+
+    public boolean contains(String id) {
+        return blockById.containsKey(id);
+    }
+
+    // Remove and return the deposits in blocks at or below the given block, oldest first
+    public List<DepositTransaction> pollUpTo(long blockNumber) {
+        NavigableMap<Long, Map<String, DepositTransaction>> crossed = byBlock.headMap(blockNumber, true);
+        List<DepositTransaction> result = new ArrayList<>();
+        for (Iterator<Map<String, DepositTransaction>> it = crossed.values().iterator(); it.hasNext(); ) {
+            for (DepositTransaction deposit : it.next().values()) {
+                blockById.remove(deposit.getId());
+                result.add(deposit);
+            }
+            it.remove();
+        }
+        return result;
+    }
+
+    public int size() {
+        return blockById.size();
+    }
+
+    public void clear() {
+        byBlock.clear();
+        blockById.clear();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.ethreader.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded set of recently seen keys. Keys expire after a TTL and the least recently used ones are
+// evicted beyond the maximum size. Thread-safe.
+public class SeenKeyCache {
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Long> seenAt;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SeenKeyCache(int maxSize, long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.seenAt = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > SeenKeyCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized boolean contains(String key) {
+        Long time = seenAt.get(key);
+        if (time != null && System.currentTimeMillis() - time <= ttlMs) {
+            hits.incrementAndGet();
+            return true;
+        }
+        if (time != null) {
+            seenAt.remove(key);
+        }
+        misses.incrementAndGet();
+        return false;
+    }
+
+    public synchronized void add(String key) {
+        seenAt.put(key, System.currentTimeMillis());
+    }
+
+    public synchronized void clear() {
+        seenAt.clear();
+    }
+
+    public synchronized int size() {
+        return seenAt.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.ethreader.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Size-bounded key/value store on disk made of append-only segment files. Values are deflated,
+// every record carries a CRC, and an in-memory index (rebuilt by scanning record headers on open)
+// maps each key to its latest record. When the total size exceeds the limit, whole segments are
+// dropped oldest first.
+public class SegmentedDiskCache implements Closeable {
+
+    private static final int RECORD_MAGIC = 0x52504331; // "RPC1"
+    private static final int HEADER_BYTES = 20; // magic, key length, stored length, raw length, crc
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long segmentBytes;
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private long totalBytes;
+
+    private SegmentedDiskCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        // At least 8 segments, so eviction drops a small fraction of the cache at a time
+        this.segmentBytes = Math.max(1L << 20, Math.min(256L << 20, maxBytes / 8));
+    }
+
+    public static SegmentedDiskCache open(Path directory, long maxBytes) throws IOException {
+        Files.createDirectories(directory);
+        SegmentedDiskCache cache = new SegmentedDiskCache(directory, maxBytes);
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        for (Map.Entry<Long, Path> entry : files.entrySet()) {
+            cache.load(entry.getKey(), entry.getValue());
+        }
+        return cache;
+    }
+
+    public synchronized byte[] get(String key) {
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        Segment segment = segments.get(location.segmentId);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(location.length);
+            readFully(segment.channel, buffer, location.offset);
+            Record record = Record.parse(buffer);
+            if (record == null || !record.key.equals(key)) {
+                index.remove(key);
+                return null;
+            }
+            return inflate(record.stored, record.rawLength);
+        } catch (IOException | DataFormatException e) {
+            index.remove(key);
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = deflate(value);
+        int length = HEADER_BYTES + keyBytes.length + stored.length;
+
+        if (segments.isEmpty() || segments.lastEntry().getValue().size + length > segmentBytes) {
+            long id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+            Path file = directory.resolve(SEGMENT_PREFIX + String.format("%012d", id) + SEGMENT_SUFFIX);
+            segments.put(id, new Segment(id, file, FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)));
+        }
+        Segment active = segments.lastEntry().getValue();
+
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(stored);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(RECORD_MAGIC).putInt(keyBytes.length).putInt(stored.length).putInt(value.length)
+                .putInt((int) crc.getValue()).put(keyBytes).put(stored).flip();
+        long offset = active.size;
+        while (buffer.hasRemaining()) {
+            active.channel.write(buffer, offset + buffer.position());
+        }
+        active.size += length;
+        totalBytes += length;
+        index.put(key, new Location(active.id, offset, length));
+
+        while (totalBytes > maxBytes && segments.size() > 1) {
+            evictOldestSegment();
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    private void load(long id, Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, file, channel);
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (offset + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, offset);
+            int magic = header.getInt();
+            int keyLength = header.getInt();
+            int storedLength = header.getInt();
+            if (magic != RECORD_MAGIC || keyLength < 0 || storedLength < 0
+                    || offset + HEADER_BYTES + keyLength + storedLength > size) {
+                break;
+            }
+            int length = HEADER_BYTES + keyLength + storedLength;
+            ByteBuffer recordBuffer = ByteBuffer.allocate(length);
+            readFully(channel, recordBuffer, offset);
+            Record record = Record.parse(recordBuffer);
+            if (record == null) {
+                break;
+            }
+            index.put(record.key, new Location(id, offset, length));
+            offset += length;
+        }
+        if (offset < size) {
+            // Torn or corrupt tail from an interrupted write
+            channel.truncate(offset);
+        }
+        segment.size = offset;
+        totalBytes += offset;
+        segments.put(id, segment);
+    }
+
+    private void evictOldestSegment() throws IOException {
+        Segment oldest = segments.pollFirstEntry().getValue();
+        index.values().removeIf(location -> location.segmentId == oldest.id);
+        oldest.channel.close();
+        Files.deleteIfExists(oldest.file);
+        totalBytes -= oldest.size;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    private static byte[] deflate(byte[] value) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(value);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, value.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored, int rawLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] value = new byte[rawLength];
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(value, read, rawLength - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated cache record");
+                }
+                read += n;
+            }
+            return value;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static class Segment {
+        private final long id;
+        private final Path file;
+        private final FileChannel channel;
+        private long size;
+
+        Segment(long id, Path file, FileChannel channel) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+
+    private static class Location {
+        private final long segmentId;
+        private final long offset;
+        private final int length;
+
+        Location(long segmentId, long offset, int length) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class Record {
+        private final String key;
+        private final byte[] stored;
+        private final int rawLength;
+
+        private Record(String key, byte[] stored, int rawLength) {
+            this.key = key;
+            this.stored = stored;
+            this.rawLength = rawLength;
+        }
+
+        // Null when the magic, lengths or checksum do not match
+        static Record parse(ByteBuffer buffer) {
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != RECORD_MAGIC) {
+                return null;
+            }
+            int keyLength = buffer.getInt();
+            int storedLength = buffer.getInt();
+            int rawLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (keyLength < 0 || storedLength < 0 || rawLength < 0 || buffer.remaining() < keyLength + storedLength) {
+                return null;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            byte[] stored = new byte[storedLength];
+            buffer.get(keyBytes).get(stored);
+            CRC32 crc = new CRC32();
+            crc.update(keyBytes);
+            crc.update(stored);
+            if ((int) crc.getValue() != checksum) {
+                return null;
+            }
+            return new Record(new String(keyBytes, StandardCharsets.UTF_8), stored, rawLength);
+        }
+    }
+}
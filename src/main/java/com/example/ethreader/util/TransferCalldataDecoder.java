@@ -0,0 +1,138 @@
+package com.example.ethreader.util;
+
+import java.math.BigInteger;
+
+// Decodes ERC-20 transfer(address,uint256) calldata straight from the hex input into primitive
+// fields, without substrings or BigIntegers. One instance is reused per scanning thread; only
+// matched deposits are turned into Strings/BigIntegers via recipientHex() and amount().
+public class TransferCalldataDecoder {
+
+    // 0x + selector (8) + recipient word (64) + amount word (64)
+    public static final int MIN_INPUT_LENGTH = 138;
+
+    private static final String TRANSFER_SELECTOR = "a9059cbb";
+    private static final int SELECTOR_OFFSET = 2;
+    private static final int RECIPIENT_OFFSET = 10 + 24; // skip 12 bytes of left padding
+    private static final int AMOUNT_OFFSET = 74;
+
+    // Recipient as big-endian 8 + 8 + 4 bytes, matching OffHeapAddressSet keys
+    private long recipient0;
+    private long recipient1;
+    private int recipient2;
+
+    // 256-bit amount as four big-endian 64-bit words
+    private final long[] amountWords = new long[4];
+
+    private final CharWindow window = new CharWindow();
+
+    // Same as decode(CharSequence) over a slice of a parser's character buffer
+    public boolean decode(char[] chars, int offset, int length) {
+        window.reset(chars, offset, length);
+        return decode(window);
+    }
+
+    // True when the input is a well-formed transfer(address,uint256) call
+    public boolean decode(CharSequence input) {
+        if (input == null || input.length() < MIN_INPUT_LENGTH || input.charAt(0) != '0'
+                || (input.charAt(1) != 'x' && input.charAt(1) != 'X')) {
+            return false;
+        }
+        for (int i = 0; i < TRANSFER_SELECTOR.length(); i++) {
+            if (Character.toLowerCase(input.charAt(SELECTOR_OFFSET + i)) != TRANSFER_SELECTOR.charAt(i)) {
+                return false;
+            }
+        }
+        // Address words must be zero-padded, otherwise the call would revert in a compliant token
+        for (int i = 10; i < RECIPIENT_OFFSET; i++) {
+            if (input.charAt(i) != '0') {
+                return false;
+            }
+        }
+        for (int i = RECIPIENT_OFFSET; i < MIN_INPUT_LENGTH; i++) {
+            if (Character.digit(input.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        recipient0 = hexLong(input, RECIPIENT_OFFSET, 16);
+        recipient1 = hexLong(input, RECIPIENT_OFFSET + 16, 16);
+        recipient2 = (int) hexLong(input, RECIPIENT_OFFSET + 32, 8);
+        for (int word = 0; word < amountWords.length; word++) {
+            amountWords[word] = hexLong(input, AMOUNT_OFFSET + word * 16, 16);
+        }
+        return true;
+    }
+
+    public boolean isRecipientIn(OffHeapAddressSet addresses) {
+        return addresses.contains(recipient0, recipient1, recipient2);
+    }
+
+    // Lowercase "0x"-prefixed recipient
+    public String recipientHex() {
+        char[] chars = new char[42];
+        chars[0] = '0';
+        chars[1] = 'x';
+        writeHex(chars, 2, recipient0, 16);
+        writeHex(chars, 18, recipient1, 16);
+        writeHex(chars, 34, recipient2 & 0xFFFFFFFFL, 8);
+        return new String(chars);
+    }
+
+    public BigInteger amount() {
+        byte[] bytes = new byte[33]; // leading zero byte keeps the value unsigned
+        for (int word = 0; word < amountWords.length; word++) {
+            long value = amountWords[word];
+            for (int i = 0; i < 8; i++) {
+                bytes[1 + word * 8 + i] = (byte) (value >>> (56 - 8 * i));
+            }
+        }
+        return new BigInteger(bytes);
+    }
+
+    private static long hexLong(CharSequence chars, int offset, int digits) {
+        long value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            value = (value << 4) | Character.digit(chars.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static void writeHex(char[] chars, int offset, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            chars[offset + i] = Character.forDigit((int) (value & 0x0F), 16);
+            value >>>= 4;
+        }
+    }
+
+    // Reusable CharSequence view over a char[] slice
+    private static final class CharWindow implements CharSequence {
+        private char[] chars;
+        private int offset;
+        private int length;
+
+        void reset(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.ethreader.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FinalizedResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void forwardsEverythingUntilTheFinalizedHeightIsKnown() throws IOException {
+        FinalizedResponseCache cache = new FinalizedResponseCache(null, 0, 1 << 20);
+        FakeNode node = new FakeNode();
+
+        read(cache.execute(blockCall(1, 5), node));
+        read(cache.execute(blockCall(1, 5), node));
+
+        assertEquals(2, node.payloads.size());
+    }
+
+    @Test
+    void forwardsOnlyTheMissingCallsOfAPartiallyCachedBatch() throws IOException {
+        FinalizedResponseCache cache = new FinalizedResponseCache(null, 0, 1 << 20);
+        cache.setFinalizedBlock(100);
+        FakeNode node = new FakeNode();
+        read(cache.execute(batch(blockCall(0, 10), blockCall(1, 11)), node));
+
+        JsonNode response = read(cache.execute(batch(blockCall(7, 11), blockCall(8, 12), blockCall(9, 10)), node));
+
+        JsonNode forwarded = objectMapper.readTree(node.payloads.get(1));
+        assertTrue(forwarded.isArray());
+        assertEquals(1, forwarded.size());
+        assertEquals(8, forwarded.get(0).path("id").asInt());
+        // Merged back in request order, cached results under the ids of this request
+        assertEquals(List.of(7, 8, 9), ids(response));
+        assertEquals("0xb", response.get(0).path("result").path("number").asText());
+        assertEquals("0xc", response.get(1).path("result").path("number").asText());
+        assertEquals("0xa", response.get(2).path("result").path("number").asText());
+    }
+
+    @Test
+    void keepsRequestOrderWhenTheNodeAnswersOutOfOrder() throws IOException {
+        FinalizedResponseCache cache = new FinalizedResponseCache(null, 0, 1 << 20);
+        cache.setFinalizedBlock(100);
+        FakeNode node = new FakeNode();
+        node.reverse = true;
+
+        JsonNode response = read(cache.execute(batch(blockCall(0, 1), blockCall(1, 2), blockCall(2, 3)), node));
+        assertEquals(List.of(0, 1, 2), ids(response));
+
+        // Served entirely from the cache, still in request order
+        JsonNode cached = read(cache.execute(batch(blockCall(5, 3), blockCall(6, 1)), node));
+        assertEquals(1, node.payloads.size());
+        assertEquals(List.of(5, 6), ids(cached));
+        assertEquals("0x3", cached.get(0).path("result").path("number").asText());
+        assertEquals("0x1", cached.get(1).path("result").path("number").asText());
+    }
+
+    @Test
+    void doesNotCacheBlocksAboveTheFinalizedHeight() throws IOException {
+        FinalizedResponseCache cache = new FinalizedResponseCache(null, 0, 1 << 20);
+        cache.setFinalizedBlock(100);
+        FakeNode node = new FakeNode();
+
+        read(cache.execute(blockCall(1, 101), node));
+        read(cache.execute(blockCall(1, 101), node));
+        read(cache.execute(call(1, "eth_getBlockByNumber", "[\"latest\",true]"), node));
+        read(cache.execute(call(1, "eth_getBlockByNumber", "[\"latest\",true]"), node));
+
+        assertEquals(4, node.payloads.size());
+    }
+
+    @Test
+    void cachesReceiptsOnlyFromFinalizedBlocks() throws IOException {
+        FinalizedResponseCache cache = new FinalizedResponseCache(null, 0, 1 << 20);
+        cache.setFinalizedBlock(100);
+        FakeNode node = new FakeNode();
+
+        read(cache.execute(receiptCall(1, "0xfinal"), node));
+        read(cache.execute(receiptCall(1, "0xFINAL"), node));
+        assertEquals(1, node.payloads.size());
+
+        read(cache.execute(receiptCall(1, "0xrecent"), node));
+        read(cache.execute(receiptCall(1, "0xrecent"), node));
+        assertEquals(3, node.payloads.size());
+
+        read(cache.execute(receiptCall(1, "0xunknown"), node));
+        read(cache.execute(receiptCall(1, "0xunknown"), node));
+        assertEquals(5, node.payloads.size());
+    }
+
+    @Test
+    void returnsABatchErrorUntouched() throws IOException {
+        FinalizedResponseCache cache = new FinalizedResponseCache(null, 0, 1 << 20);
+        cache.setFinalizedBlock(100);
+        String error = "{\"jsonrpc\":\"2.0\",\"id\":null,\"error\":{\"code\":-32600,\"message\":\"no batches\"}}";
+
+        JsonNode response = read(cache.execute(batch(blockCall(0, 1), blockCall(1, 2)),
+                payload -> new ByteArrayInputStream(error.getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(-32600, response.path("error").path("code").asInt());
+    }
+
+    @Test
+    void streamsABatchTheNodeAnswersInOrder() throws IOException {
+        FinalizedResponseCache cache = new FinalizedResponseCache(null, 0, 1 << 20);
+        cache.setFinalizedBlock(100);
+        String padding = "0".repeat(50_000);
+        StringBuilder body = new StringBuilder("[");
+        for (int id = 0; id < 3; id++) {
+            body.append(id > 0 ? "," : "").append("{\"jsonrpc\":\"2.0\",\"id\":").append(id)
+                    .append(",\"result\":{\"number\":\"0x").append(id + 1).append("\",\"extraData\":\"0x")
+                    .append(padding).append("\",\"transactions\":[]}}");
+        }
+        ByteArrayInputStream nodeResponse = new ByteArrayInputStream(body.append("]").toString()
+                .getBytes(StandardCharsets.UTF_8));
+        List<String> payloads = new ArrayList<>();
+
+        try (InputStream in = cache.execute(batch(blockCall(0, 1), blockCall(1, 2), blockCall(2, 3)), payload -> {
+            payloads.add(payload);
+            return nodeResponse;
+        }); JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            assertEquals(JsonToken.START_ARRAY, parser.nextToken());
+            assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+            parser.skipChildren();
+            // The first block is out while most of the node's answer is still unread
+            assertTrue(nodeResponse.available() > 50_000, "unread " + nodeResponse.available());
+            while (parser.nextToken() != null) {
+                parser.skipChildren();
+            }
+        }
+
+        // Every block was stored on the way through
+        JsonNode cached = read(cache.execute(batch(blockCall(5, 3), blockCall(6, 1)), new FakeNode()));
+        assertEquals(1, payloads.size());
+        assertEquals("0x3", cached.get(0).path("result").path("number").asText());
+        assertEquals("0x1", cached.get(1).path("result").path("number").asText());
+    }
+
+    @Test
+    void servesFromDiskAfterARestart() throws IOException {
+        FakeNode node = new FakeNode();
+        FinalizedResponseCache first = new FinalizedResponseCache(tempDir, 64L << 20, 1 << 20);
+        first.setFinalizedBlock(100);
+        read(first.execute(blockCall(1, 42), node));
+        first.close();
+
+        FinalizedResponseCache second = new FinalizedResponseCache(tempDir, 64L << 20, 1 << 20);
+        second.setFinalizedBlock(100);
+        JsonNode response = read(second.execute(blockCall(3, 42), node));
+        second.close();
+
+        assertEquals(1, node.payloads.size());
+        assertEquals(1, second.getDiskHits());
+        assertEquals(3, response.path("id").asInt());
+        assertEquals("0x2a", response.path("result").path("number").asText());
+    }
+
+    private JsonNode read(InputStream in) throws IOException {
+        try (in) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    private static List<Integer> ids(JsonNode batch) {
+        List<Integer> ids = new ArrayList<>();
+        batch.forEach(element -> ids.add(element.path("id").asInt()));
+        return ids;
+    }
+
+    private static String batch(String... calls) {
+        return "[" + String.join(",", calls) + "]";
+    }
+
+    private static String blockCall(int id, long number) {
+        return call(id, "eth_getBlockByNumber", "[\"0x" + Long.toHexString(number) + "\",true]");
+    }
+
+    private static String receiptCall(int id, String hash) {
+        return call(id, "eth_getTransactionReceipt", "[\"" + hash + "\"]");
+    }
+
+    private static String call(int id, String method, String params) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + id + ",\"method\":\"" + method + "\",\"params\":" + params + "}";
+    }
+
+    // Answers blocks with their number and receipts from block 50 ("0xfinal"), 150 ("0xrecent")
+    // or null; records every payload it receives
+    private class FakeNode implements FinalizedResponseCache.Transport {
+        private final List<String> payloads = new ArrayList<>();
+        private boolean reverse;
+
+        @Override
+        public InputStream send(String payload) throws IOException {
+            payloads.add(payload);
+            JsonNode request = objectMapper.readTree(payload);
+            String body;
+            if (request.isArray()) {
+                ArrayNode responses = objectMapper.createArrayNode();
+                for (JsonNode call : request) {
+                    if (reverse) {
+                        responses.insert(0, answer(call));
+                    } else {
+                        responses.add(answer(call));
+                    }
+                }
+                body = responses.toString();
+            } else {
+                body = answer(request).toString();
+            }
+            return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private JsonNode answer(JsonNode call) throws IOException {
+            String result;
+            JsonNode param = call.path("params").path(0);
+            if ("eth_getBlockByNumber".equals(call.path("method").asText())) {
+                String number = param.asText().equals("latest") ? "0x3e8" : param.asText();
+                result = "{\"number\":\"" + number + "\",\"hash\":\"0xh\",\"transactions\":[]}";
+            } else if (param.asText().equalsIgnoreCase("0xfinal")) {
+                result = "{\"transactionHash\":\"0xfinal\",\"blockNumber\":\"0x32\",\"status\":\"0x1\"}";
+            } else if (param.asText().equals("0xrecent")) {
+                result = "{\"transactionHash\":\"0xrecent\",\"blockNumber\":\"0x96\",\"status\":\"0x1\"}";
+            } else {
+                result = "null";
+            }
+            return objectMapper.readTree("{\"jsonrpc\":\"2.0\",\"id\":" + call.path("id") + ",\"result\":" + result + "}");
+        }
+    }
+}
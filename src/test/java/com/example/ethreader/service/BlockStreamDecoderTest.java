@@ -0,0 +1,156 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.util.OffHeapAddressSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockStreamDecoderTest {
+
+    private static final String MONITORED = "0x1111111111111111111111111111111111111111";
+    private static final String OTHER = "0x2222222222222222222222222222222222222222";
+    private static final String TOKEN = "0x3333333333333333333333333333333333333333";
+
+    private OffHeapAddressSet addresses;
+
+    @BeforeEach
+    void setUp() {
+        addresses = OffHeapAddressSet.allocate(10);
+        addresses.add(MONITORED);
+    }
+
+    @Test
+    void fillsBlockNumberWhenItFollowsTheTransactions() throws IOException {
+        String block = "{\"transactions\":[" + nativeTx("0xaa", MONITORED, "0x64") + "],"
+                + "\"hash\":\"0xblock\",\"parentHash\":\"0xparent\",\"number\":\"0x1f\"}";
+
+        BlockchainService.BlockDeposits decoded = decode(true, result(0, block)).get(0L);
+
+        assertEquals(BigInteger.valueOf(31), decoded.getBlockNumber());
+        assertEquals("0xblock", decoded.getBlockHash());
+        assertEquals("0xparent", decoded.getParentHash());
+        assertEquals(1, decoded.getDeposits().size());
+        BlockchainService.DepositInfo deposit = decoded.getDeposits().get(0);
+        assertEquals(BigInteger.valueOf(31), deposit.getBlockNumber());
+        assertEquals("0xaa", deposit.getTransactionHash());
+        assertEquals(MONITORED, deposit.getToAddress());
+        assertEquals(BigInteger.valueOf(100), deposit.getAmount());
+        assertNull(deposit.getTokenAddress());
+    }
+
+    @Test
+    void skipsContractCreationsWithNullTo() throws IOException {
+        String creation = "{\"hash\":\"0xcc\",\"to\":null,\"value\":\"0x5\",\"input\":\"0x6080\"}";
+        String block = block(10, creation + "," + nativeTx("0xdd", MONITORED, "0x1"));
+
+        List<BlockchainService.DepositInfo> deposits = decode(true, result(0, block)).get(0L).getDeposits();
+
+        assertEquals(1, deposits.size());
+        assertEquals("0xdd", deposits.get(0).getTransactionHash());
+    }
+
+    @Test
+    void leavesOutErrorAndNullResults() throws IOException {
+        String batch = "[{\"jsonrpc\":\"2.0\",\"id\":0,\"error\":{\"code\":-32000,\"message\":\"header not found\"}},"
+                + "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":null},"
+                + result(2, block(12, nativeTx("0xee", MONITORED, "0x2"))) + "]";
+
+        Map<Long, BlockchainService.BlockDeposits> blocks = decodeRaw(true, batch);
+
+        assertEquals(1, blocks.size());
+        assertEquals(BigInteger.valueOf(12), blocks.get(2L).getBlockNumber());
+    }
+
+    @Test
+    void returnsNothingForASingleErrorObject() throws IOException {
+        String response = "{\"jsonrpc\":\"2.0\",\"id\":null,\"error\":{\"code\":-32600,\"message\":\"batch not supported\"}}";
+
+        assertTrue(decodeRaw(true, response).isEmpty());
+    }
+
+    @Test
+    void matchesResponsesById() throws IOException {
+        String batch = "[" + result(1, block(21, "")) + "," + result(0, block(20, "")) + "]";
+
+        Map<Long, BlockchainService.BlockDeposits> blocks = decodeRaw(true, batch);
+
+        assertEquals(BigInteger.valueOf(20), blocks.get(0L).getBlockNumber());
+        assertEquals(BigInteger.valueOf(21), blocks.get(1L).getBlockNumber());
+    }
+
+    @Test
+    void ignoresZeroValueAndUnmonitoredTransfers() throws IOException {
+        String block = block(5, nativeTx("0x01", MONITORED, "0x0") + ","
+                + nativeTx("0x02", OTHER, "0x10") + ","
+                + nativeTx("0x03", MONITORED.toUpperCase().replace("0X", "0x"), "0x10"));
+
+        List<BlockchainService.DepositInfo> deposits = decode(true, result(0, block)).get(0L).getDeposits();
+
+        assertEquals(1, deposits.size());
+        assertEquals("0x03", deposits.get(0).getTransactionHash());
+    }
+
+    @Test
+    void decodesTokenTransfersOnlyWhenCalldataDecodingIsOn() throws IOException {
+        String input = "0xa9059cbb000000000000000000000000" + MONITORED.substring(2)
+                + String.format("%064x", 500);
+        String tokenTx = "{\"hash\":\"0xff\",\"to\":\"" + TOKEN + "\",\"value\":\"0x0\",\"input\":\"" + input + "\"}";
+        String block = block(7, tokenTx);
+
+        List<BlockchainService.DepositInfo> deposits = decode(true, result(0, block)).get(0L).getDeposits();
+        assertEquals(1, deposits.size());
+        assertEquals(MONITORED, deposits.get(0).getToAddress());
+        assertEquals(TOKEN, deposits.get(0).getTokenAddress());
+        assertEquals(BigInteger.valueOf(500), deposits.get(0).getAmount());
+        assertEquals(BigInteger.valueOf(7), deposits.get(0).getBlockNumber());
+
+        assertTrue(decode(false, result(0, block)).get(0L).getDeposits().isEmpty());
+    }
+
+    @Test
+    void skipsNestedFieldsItDoesNotRead() throws IOException {
+        String tx = "{\"hash\":\"0x0a\",\"accessList\":[{\"address\":\"" + OTHER + "\",\"storageKeys\":[]}],"
+                + "\"to\":\"" + MONITORED + "\",\"value\":\"0x9\",\"input\":\"0x\"}";
+        String block = "{\"number\":\"0x3\",\"hash\":\"0xb\",\"parentHash\":\"0xa\",\"withdrawals\":[{\"index\":\"0x1\"}],"
+                + "\"transactions\":[" + tx + "]}";
+
+        List<BlockchainService.DepositInfo> deposits = decode(true, result(0, block)).get(0L).getDeposits();
+
+        assertEquals(1, deposits.size());
+        assertEquals(BigInteger.valueOf(9), deposits.get(0).getAmount());
+    }
+
+    private Map<Long, BlockchainService.BlockDeposits> decode(boolean decodeCalldata, String element)
+            throws IOException {
+        return decodeRaw(decodeCalldata, "[" + element + "]");
+    }
+
+    private Map<Long, BlockchainService.BlockDeposits> decodeRaw(boolean decodeCalldata, String body)
+            throws IOException {
+        return new BlockStreamDecoder(addresses, decodeCalldata)
+                .decodeBatch(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String result(long id, String block) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":" + id + ",\"result\":" + block + "}";
+    }
+
+    private static String block(long number, String transactions) {
+        return "{\"number\":\"0x" + Long.toHexString(number) + "\",\"hash\":\"0xh" + number
+                + "\",\"parentHash\":\"0xp" + number + "\",\"transactions\":[" + transactions + "]}";
+    }
+
+    private static String nativeTx(String hash, String to, String value) {
+        return "{\"hash\":\"" + hash + "\",\"to\":\"" + to + "\",\"value\":\"" + value + "\",\"input\":\"0x\"}";
+    }
+}
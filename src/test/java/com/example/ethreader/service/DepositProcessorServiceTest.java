@@ -0,0 +1,120 @@
+package com.example.ethreader.service;
+
+import com.example.ethreader.model.DepositIdempotency;
+import com.example.ethreader.model.DepositTransaction;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DepositProcessorServiceTest {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private DepositProcessorService processor;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DepositIdempotency.class)).thenReturn(bulk);
+        processor = new DepositProcessorService();
+        ReflectionTestUtils.setField(processor, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(processor, "creditClaimTimeoutMs", 60_000L);
+    }
+
+    @Test
+    void creditsTheRestOfABatchWhenOneDepositWasCreditedBefore() {
+        List<DepositTransaction> deposits = List.of(deposit("0xa1"), deposit("0xa2"), deposit("0xa3"));
+        // The second deposit already has a credit record, so its insert hits the unique index
+        when(bulk.execute()).thenThrow(bulkError(new BulkWriteError(DUPLICATE_KEY, "E11000", new BsonDocument(), 1)));
+        DepositIdempotency existing = new DepositIdempotency(deposits.get(1));
+        existing.setId("existing");
+        existing.setState(DepositIdempotency.CreditState.CREDITED);
+        when(mongoTemplate.find(any(Query.class), eq(DepositIdempotency.class))).thenReturn(List.of(existing));
+
+        List<DepositTransaction> done = processor.creditOnce(deposits);
+
+        assertEquals(Set.copyOf(deposits), Set.copyOf(done));
+        ArgumentCaptor<Object> inserted = ArgumentCaptor.forClass(Object.class);
+        verify(bulk, times(3)).insert(inserted.capture());
+        ArgumentCaptor<Query> marked = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateMulti(marked.capture(), any(Update.class), eq(DepositIdempotency.class));
+        // Only the records inserted now are marked credited
+        Document idFilter = (Document) marked.getValue().getQueryObject().get("_id");
+        assertEquals(Set.of(recordId(inserted, 0), recordId(inserted, 2)), Set.copyOf((List<?>) idFilter.get("$in")));
+    }
+
+    @Test
+    void creditsInBlockAndLogOrder() {
+        DepositTransaction tokenTransfer = deposit("0xc1", 7, 3);
+        DepositTransaction nativeTransfer = deposit("0xc2", 7, null);
+        DepositTransaction earlier = deposit("0xc3", 5, 9);
+        DepositTransaction laterLog = deposit("0xc4", 7, 4);
+
+        List<DepositTransaction> done = processor.creditOnce(List.of(laterLog, tokenTransfer, nativeTransfer, earlier));
+
+        assertEquals(List.of(earlier, nativeTransfer, tokenTransfer, laterLog), done);
+    }
+
+    @Test
+    void rethrowsWriteErrorsOtherThanDuplicates() {
+        when(bulk.execute()).thenThrow(bulkError(new BulkWriteError(121, "validation failed", new BsonDocument(), 0)));
+
+        assertThrows(BulkOperationException.class, () -> processor.creditOnce(List.of(deposit("0xb1"))));
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(DepositIdempotency.class));
+    }
+
+    private static String recordId(ArgumentCaptor<Object> inserted, int index) {
+        return ((DepositIdempotency) inserted.getAllValues().get(index)).getId();
+    }
+
+    private static BulkOperationException bulkError(BulkWriteError error) {
+        return new BulkOperationException(error.getMessage(), new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()), List.of(error), null,
+                new ServerAddress(), Set.of()));
+    }
+
+    private static DepositTransaction deposit(String transactionHash) {
+        return deposit(transactionHash, 100, 0);
+    }
+
+    private static DepositTransaction deposit(String transactionHash, long blockNumber, Integer logIndex) {
+        DepositTransaction deposit = new DepositTransaction();
+        deposit.setId(transactionHash + "-id");
+        deposit.setTransactionHash(transactionHash);
+        deposit.setLogIndex(logIndex);
+        deposit.setChain("sepolia");
+        deposit.setUserId("user");
+        deposit.setAmount(BigInteger.TEN);
+        deposit.setBlockNumber(BigInteger.valueOf(blockNumber));
+        return deposit;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.ethreader.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlockHashRingTest {
+
+    @Test
+    void keepsOnlyTheMostRecentBlocksAfterWrappingAround() {
+        BlockHashRing ring = new BlockHashRing(4);
+        for (long number = 100; number <= 109; number++) {
+            ring.add(number, hash(number), hash(number - 1));
+        }
+
+        assertEquals(109, ring.getLatestNumber());
+        assertEquals(106, ring.getOldestNumber());
+        assertNull(ring.getHash(105));
+        assertNull(ring.getHash(101));
+        assertEquals(hash(106), ring.getHash(106));
+        assertEquals(hash(109), ring.getHash(109));
+        assertEquals(hash(108), ring.getParentHash(109));
+        assertNull(ring.getHash(110));
+        assertNull(ring.getHash(-1));
+    }
+
+    @Test
+    void startsOverWhenBlocksAreNotContiguous() {
+        BlockHashRing ring = new BlockHashRing(8);
+        ring.add(10, hash(10), hash(9));
+        ring.add(11, hash(11), hash(10));
+
+        ring.add(20, hash(20), hash(19));
+
+        assertNull(ring.getHash(11));
+        assertEquals(20, ring.getOldestNumber());
+        assertEquals(20, ring.getLatestNumber());
+    }
+
+    @Test
+    void truncateForgetsBlocksAboveTheAncestor() {
+        BlockHashRing ring = new BlockHashRing(8);
+        for (long number = 1; number <= 6; number++) {
+            ring.add(number, hash(number), hash(number - 1));
+        }
+
+        ring.truncateAfter(3);
+
+        assertEquals(3, ring.getLatestNumber());
+        assertEquals(1, ring.getOldestNumber());
+        assertNull(ring.getHash(4));
+        // Scanning continues contiguously from the ancestor
+        ring.add(4, "0xfork4", hash(3));
+        assertEquals("0xfork4", ring.getHash(4));
+        assertEquals(hash(3), ring.getHash(3));
+    }
+
+    @Test
+    void truncateBelowEverythingHeldEmptiesTheRing() {
+        BlockHashRing ring = new BlockHashRing(4);
+        for (long number = 50; number <= 57; number++) {
+            ring.add(number, hash(number), hash(number - 1));
+        }
+
+        ring.truncateAfter(40);
+
+        assertEquals(-1, ring.getLatestNumber());
+        assertEquals(-1, ring.getOldestNumber());
+        assertNull(ring.getHash(57));
+    }
+
+    @Test
+    void findsTheNewestBlockSharedWithTheCanonicalChain() {
+        BlockHashRing ring = new BlockHashRing(16);
+        for (long number = 200; number <= 210; number++) {
+            ring.add(number, hash(number), hash(number - 1));
+        }
+        // The canonical chain replaced blocks 207-210
+        Map<Long, String> canonical = new HashMap<>();
+        for (long number = 200; number <= 210; number++) {
+            canonical.put(number, number >= 207 ? "0xfork" + number : hash(number).toUpperCase());
+        }
+        List<Long> asked = new ArrayList<>();
+
+        long ancestor = ring.findCommonAncestor(210, number -> {
+            asked.add(number);
+            return canonical.get(number);
+        });
+
+        assertEquals(206, ancestor);
+        assertEquals(List.of(210L, 209L, 208L, 207L, 206L), asked);
+    }
+
+    @Test
+    void reportsTheBlockBelowTheRingWhenTheReorgIsDeeper() {
+        BlockHashRing ring = new BlockHashRing(4);
+        for (long number = 300; number <= 310; number++) {
+            ring.add(number, hash(number), hash(number - 1));
+        }
+
+        long ancestor = ring.findCommonAncestor(310, number -> "0xfork" + number);
+
+        assertEquals(ring.getOldestNumber() - 1, ancestor);
+        assertEquals(306, ancestor);
+    }
+
+    @Test
+    void ancestorSearchStartsAtTheRequestedBlock() {
+        BlockHashRing ring = new BlockHashRing(8);
+        for (long number = 0; number <= 5; number++) {
+            ring.add(number, hash(number), number > 0 ? hash(number - 1) : null);
+        }
+
+        assertEquals(3, ring.findCommonAncestor(3, this::hash));
+        assertEquals(-1, ring.findCommonAncestor(5, number -> "0xother"));
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new BlockHashRing(0));
+    }
+
+    private String hash(long number) {
+        return "0xhash" + number;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.ethreader.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class OffHeapAddressSetTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void growsPastInitialCapacityWithoutLosingEntries() {
+        OffHeapAddressSet set = OffHeapAddressSet.allocate(1);
+        for (int i = 1; i <= 5000; i++) {
+            assertTrue(set.add(address(i)));
+        }
+        assertFalse(set.add(address(42)));
+        assertEquals(5000, set.size());
+        for (int i = 1; i <= 5000; i++) {
+            assertTrue(set.contains(address(i)), "missing " + address(i));
+        }
+        assertFalse(set.contains(address(5001)));
+    }
+
+    @Test
+    void matchesAnyCaseAndTopicEncodedAddresses() {
+        OffHeapAddressSet set = OffHeapAddressSet.allocate(10);
+        set.add("0xAbCdEf0123456789aBcDeF0123456789AbCdEf01");
+
+        assertTrue(set.contains("0xabcdef0123456789abcdef0123456789abcdef01"));
+        assertTrue(set.contains("ABCDEF0123456789ABCDEF0123456789ABCDEF01"));
+        String topic = "0x000000000000000000000000abcdef0123456789abcdef0123456789abcdef01";
+        assertTrue(set.contains(topic, topic.length() - 40));
+        assertFalse(set.contains("0xabcdef"));
+        assertFalse(set.contains("0xzzcdef0123456789abcdef0123456789abcdef01"));
+        assertFalse(set.contains((CharSequence) null));
+    }
+
+    @Test
+    void rejectsAddressesUsedAsSlotMarkers() {
+        OffHeapAddressSet set = OffHeapAddressSet.allocate(10);
+        assertThrows(IllegalArgumentException.class,
+                () -> set.add("0x0000000000000000000000000000000000000000"));
+        assertThrows(IllegalArgumentException.class,
+                () -> set.add("0xffffffffffffffffffffffffffffffffffffffff"));
+        assertFalse(set.contains("0xffffffffffffffffffffffffffffffffffffffff"));
+    }
+
+    @Test
+    void removedSlotsAreReused() {
+        OffHeapAddressSet set = OffHeapAddressSet.allocate(100);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 1; i <= 500; i++) {
+                set.add(address(round * 1000 + i));
+            }
+            for (int i = 1; i <= 500; i++) {
+                assertTrue(set.remove(address(round * 1000 + i)));
+            }
+        }
+        assertEquals(0, set.size());
+        assertFalse(set.remove(address(1)));
+        set.add(address(1));
+        assertTrue(set.contains(address(1)));
+    }
+
+    @Test
+    void clearEmptiesTheSetAndKeepsTheSyncTime() {
+        OffHeapAddressSet set = OffHeapAddressSet.allocate(1);
+        for (int i = 1; i <= 2000; i++) {
+            set.add(address(i));
+        }
+        set.setSyncedAt(1234L);
+
+        set.clear();
+
+        assertEquals(0, set.size());
+        assertFalse(set.contains(address(1)));
+        assertEquals(1234L, set.getSyncedAt());
+        set.add(address(7));
+        assertTrue(set.contains(address(7)));
+    }
+
+    @Test
+    void reopensFileWithEntriesAddedAcrossResizes() throws Exception {
+        Path file = tempDir.resolve("addresses.bin");
+        OffHeapAddressSet set = OffHeapAddressSet.open(file, 1);
+        assertTrue(set.isPersistent());
+        for (int i = 1; i <= 3000; i++) {
+            set.add(address(i));
+        }
+        set.remove(address(3000));
+        set.setSyncedAt(99L);
+        set.close();
+
+        OffHeapAddressSet reopened = OffHeapAddressSet.open(file, 1);
+        assertEquals(2999, reopened.size());
+        assertEquals(99L, reopened.getSyncedAt());
+        assertTrue(reopened.contains(address(1)));
+        assertTrue(reopened.contains(address(2999)));
+        assertFalse(reopened.contains(address(3000)));
+        reopened.close();
+
+        assertFalse(Files.exists(tempDir.resolve("addresses.bin.resize")));
+    }
+
+    @Test
+    void reopensFileThatWasCleared() throws Exception {
+        Path file = tempDir.resolve("addresses.bin");
+        OffHeapAddressSet set = OffHeapAddressSet.open(file, 1);
+        for (int i = 1; i <= 1000; i++) {
+            set.add(address(i));
+        }
+        set.clear();
+        set.add(address(5));
+        set.close();
+
+        OffHeapAddressSet reopened = OffHeapAddressSet.open(file, 1);
+        assertEquals(1, reopened.size());
+        assertTrue(reopened.contains(address(5)));
+        assertFalse(reopened.contains(address(6)));
+        reopened.close();
+    }
+
+    @Test
+    void replacingTheTableOfAFileBackedSetClosesTheOldFile() throws Exception {
+        Path descriptors = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(descriptors), "needs /proc to count open files");
+        OffHeapAddressSet set = OffHeapAddressSet.open(tempDir.resolve("addresses.bin"), 1);
+        long before = countEntries(descriptors);
+
+        for (int round = 0; round < 50; round++) {
+            set.clear();
+        }
+
+        assertTrue(countEntries(descriptors) - before < 5, "file descriptors leaked by replaced tables");
+        set.close();
+    }
+
+    @Test
+    void refusesFilesThatAreNotAddressSets() throws Exception {
+        Path file = tempDir.resolve("garbage.bin");
+        Files.write(file, new byte[128]);
+        assertThrows(IOException.class, () -> OffHeapAddressSet.open(file, 1));
+    }
+
+    @Test
+    void forEachVisitsEveryAddressInLowercase() {
+        OffHeapAddressSet set = OffHeapAddressSet.allocate(10);
+        set.add("0xABCDEF0123456789ABCDEF0123456789ABCDEF01");
+        set.add(address(2));
+
+        Set<String> visited = new HashSet<>();
+        set.forEach(visited::add);
+
+        assertEquals(Set.of("0xabcdef0123456789abcdef0123456789abcdef01", address(2)), visited);
+    }
+
+    private static long countEntries(Path directory) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries.count();
+        }
+    }
+
+    private static String address(int i) {
+        return String.format("0x%040x", i);
+    }
+}
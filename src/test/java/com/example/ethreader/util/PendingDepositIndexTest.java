@@ -0,0 +1,94 @@
+package com.example.ethreader.util;
+
+import com.example.ethreader.model.DepositTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingDepositIndexTest {
+
+    @Test
+    void pollsDepositsInBlockOrderUpToTheGivenBlock() {
+        PendingDepositIndex index = new PendingDepositIndex();
+        index.add(deposit("c", 30));
+        index.add(deposit("a", 10));
+        index.add(deposit("b", 20));
+        index.add(deposit("a2", 10));
+
+        List<DepositTransaction> crossed = index.pollUpTo(20);
+
+        assertEquals(List.of("a", "a2", "b"), ids(crossed));
+        assertEquals(1, index.size());
+        assertFalse(index.contains("a"));
+        assertTrue(index.contains("c"));
+        assertTrue(index.pollUpTo(29).isEmpty());
+        assertEquals(List.of("c"), ids(index.pollUpTo(30)));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void removedDepositsAreNotPolled() {
+        PendingDepositIndex index = new PendingDepositIndex();
+        index.add(deposit("a", 10));
+        index.add(deposit("b", 10));
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+        assertFalse(index.remove("unknown"));
+
+        assertEquals(List.of("b"), ids(index.pollUpTo(10)));
+    }
+
+    @Test
+    void removingTheLastDepositOfABlockDropsTheBlock() {
+        PendingDepositIndex index = new PendingDepositIndex();
+        index.add(deposit("a", 10));
+        index.remove("a");
+        index.add(deposit("b", 12));
+
+        assertEquals(List.of("b"), ids(index.pollUpTo(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void addingAgainMovesTheDepositToItsNewBlock() {
+        PendingDepositIndex index = new PendingDepositIndex();
+        index.add(deposit("a", 10));
+        // Re-included in a later block after a reorg
+        index.add(deposit("a", 15));
+
+        assertEquals(1, index.size());
+        assertTrue(index.pollUpTo(14).isEmpty());
+        List<DepositTransaction> crossed = index.pollUpTo(15);
+        assertEquals(List.of("a"), ids(crossed));
+        assertEquals(BigInteger.valueOf(15), crossed.get(0).getBlockNumber());
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        PendingDepositIndex index = new PendingDepositIndex();
+        index.add(deposit("a", 10));
+        index.add(deposit("b", 11));
+
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertFalse(index.contains("a"));
+        assertTrue(index.pollUpTo(Long.MAX_VALUE).isEmpty());
+    }
+
+    private static DepositTransaction deposit(String id, long blockNumber) {
+        DepositTransaction deposit = new DepositTransaction();
+        deposit.setId(id);
+        deposit.setBlockNumber(BigInteger.valueOf(blockNumber));
+        return deposit;
+    }
+
+    private static List<String> ids(List<DepositTransaction> deposits) {
+        return deposits.stream().map(DepositTransaction::getId).toList();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.ethreader.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeenKeyCacheTest {
+
+    @Test
+    void evictsTheLeastRecentlyUsedKeyBeyondTheMaximumSize() {
+        SeenKeyCache cache = new SeenKeyCache(3, 60_000);
+        cache.add("a");
+        cache.add("b");
+        cache.add("c");
+        // Touching "a" makes "b" the least recently used
+        assertTrue(cache.contains("a"));
+
+        cache.add("d");
+
+        assertEquals(3, cache.size());
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.contains("d"));
+    }
+
+    @Test
+    void expiredKeysAreMissesAndDropped() throws InterruptedException {
+        SeenKeyCache cache = new SeenKeyCache(10, 20);
+        cache.add("a");
+        assertTrue(cache.contains("a"));
+
+        Thread.sleep(60);
+
+        assertFalse(cache.contains("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void addingAgainRefreshesTheTimestamp() throws InterruptedException {
+        SeenKeyCache cache = new SeenKeyCache(10, 500);
+        cache.add("a");
+        Thread.sleep(300);
+        cache.add("a");
+        Thread.sleep(300);
+
+        assertTrue(cache.contains("a"));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        SeenKeyCache cache = new SeenKeyCache(10, 60_000);
+        cache.add("a");
+
+        cache.contains("a");
+        cache.contains("a");
+        cache.contains("b");
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void clearForgetsEveryKey() {
+        SeenKeyCache cache = new SeenKeyCache(10, 60_000);
+        cache.add("a");
+        cache.add("b");
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.contains("a"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.ethreader.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedDiskCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void returnsTheLatestValueForAKey() throws IOException {
+        try (SegmentedDiskCache cache = SegmentedDiskCache.open(tempDir, 64L << 20)) {
+            cache.put("block:1", bytes("first"));
+            cache.put("block:1", bytes("second"));
+            cache.put("block:2", new byte[0]);
+
+            assertArrayEquals(bytes("second"), cache.get("block:1"));
+            assertArrayEquals(new byte[0], cache.get("block:2"));
+            assertNull(cache.get("block:3"));
+            assertEquals(2, cache.getEntryCount());
+        }
+    }
+
+    @Test
+    void reopensWithTheStoredEntries() throws IOException {
+        try (SegmentedDiskCache cache = SegmentedDiskCache.open(tempDir, 64L << 20)) {
+            cache.put("a", bytes("{\"number\":\"0x1\"}"));
+            cache.put("b", bytes("{\"number\":\"0x2\"}"));
+            cache.put("a", bytes("{\"number\":\"0x3\"}"));
+        }
+
+        try (SegmentedDiskCache reopened = SegmentedDiskCache.open(tempDir, 64L << 20)) {
+            assertEquals(2, reopened.getEntryCount());
+            assertArrayEquals(bytes("{\"number\":\"0x3\"}"), reopened.get("a"));
+            assertArrayEquals(bytes("{\"number\":\"0x2\"}"), reopened.get("b"));
+        }
+    }
+
+    @Test
+    void dropsATornTailOnReopen() throws IOException {
+        long sizeAfterFirst;
+        try (SegmentedDiskCache cache = SegmentedDiskCache.open(tempDir, 64L << 20)) {
+            cache.put("kept", bytes("value"));
+            sizeAfterFirst = cache.getTotalBytes();
+            cache.put("torn", bytes("another value"));
+        }
+        Path segment = onlySegment();
+        // Simulate a write interrupted half-way through the second record
+        try (var channel = Files.newByteChannel(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(sizeAfterFirst + 10);
+        }
+
+        try (SegmentedDiskCache reopened = SegmentedDiskCache.open(tempDir, 64L << 20)) {
+            assertArrayEquals(bytes("value"), reopened.get("kept"));
+            assertNull(reopened.get("torn"));
+            assertEquals(sizeAfterFirst, reopened.getTotalBytes());
+            // Appends continue after the last good record
+            reopened.put("next", bytes("ok"));
+            assertArrayEquals(bytes("ok"), reopened.get("next"));
+        }
+        try (SegmentedDiskCache reopened = SegmentedDiskCache.open(tempDir, 64L << 20)) {
+            assertArrayEquals(bytes("ok"), reopened.get("next"));
+        }
+    }
+
+    @Test
+    void ignoresRecordsThatFailTheChecksum() throws IOException {
+        try (SegmentedDiskCache cache = SegmentedDiskCache.open(tempDir, 64L << 20)) {
+            cache.put("key", bytes("value"));
+        }
+        Path segment = onlySegment();
+        byte[] contents = Files.readAllBytes(segment);
+        contents[contents.length - 1] ^= 0x55;
+        Files.write(segment, contents);
+
+        try (SegmentedDiskCache reopened = SegmentedDiskCache.open(tempDir, 64L << 20)) {
+            assertNull(reopened.get("key"));
+            assertEquals(0, reopened.getEntryCount());
+        }
+    }
+
+    @Test
+    void evictsOldestSegmentsBeyondTheSizeLimit() throws IOException {
+        long maxBytes = 3L << 20; // 1 MiB segments
+        Random random = new Random(7);
+        try (SegmentedDiskCache cache = SegmentedDiskCache.open(tempDir, maxBytes)) {
+            for (int i = 0; i < 40; i++) {
+                byte[] value = new byte[200_000]; // Random bytes do not compress
+                random.nextBytes(value);
+                cache.put("key:" + i, value);
+            }
+
+            assertTrue(cache.getTotalBytes() <= maxBytes, "total " + cache.getTotalBytes());
+            assertNull(cache.get("key:0"));
+            assertTrue(cache.get("key:39") != null);
+            assertTrue(countSegments() <= 3);
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-"))
+                    .findFirst().orElseThrow();
+        }
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
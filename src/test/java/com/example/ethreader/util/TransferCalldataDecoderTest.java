@@ -0,0 +1,103 @@
+package com.example.ethreader.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferCalldataDecoderTest {
+
+    private static final String RECIPIENT = "abcdef0123456789abcdef0123456789abcdef01";
+    private static final String PADDING = "000000000000000000000000";
+
+    @Test
+    void decodesRecipientAndAmount() {
+        TransferCalldataDecoder decoder = new TransferCalldataDecoder();
+
+        assertTrue(decoder.decode(transfer(RECIPIENT.toUpperCase(), BigInteger.valueOf(1_500_000))));
+
+        assertEquals("0x" + RECIPIENT, decoder.recipientHex());
+        assertEquals(BigInteger.valueOf(1_500_000), decoder.amount());
+    }
+
+    @Test
+    void decodesTheFullUnsignedAmountRange() {
+        TransferCalldataDecoder decoder = new TransferCalldataDecoder();
+        BigInteger max = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+
+        assertTrue(decoder.decode(transfer(RECIPIENT, max)));
+        assertEquals(max, decoder.amount());
+
+        assertTrue(decoder.decode(transfer(RECIPIENT, BigInteger.ZERO)));
+        assertEquals(BigInteger.ZERO, decoder.amount());
+    }
+
+    @Test
+    void acceptsTrailingCalldata() {
+        TransferCalldataDecoder decoder = new TransferCalldataDecoder();
+
+        assertTrue(decoder.decode(transfer(RECIPIENT, BigInteger.TEN) + "deadbeef"));
+        assertEquals(BigInteger.TEN, decoder.amount());
+    }
+
+    @Test
+    void rejectsShortOrMissingInput() {
+        TransferCalldataDecoder decoder = new TransferCalldataDecoder();
+        String valid = transfer(RECIPIENT, BigInteger.ONE);
+
+        assertFalse(decoder.decode((CharSequence) null));
+        assertFalse(decoder.decode(""));
+        assertFalse(decoder.decode("0x"));
+        assertFalse(decoder.decode("0xa9059cbb"));
+        assertFalse(decoder.decode(valid.substring(0, valid.length() - 1)));
+    }
+
+    @Test
+    void rejectsMalformedCalldata() {
+        TransferCalldataDecoder decoder = new TransferCalldataDecoder();
+        String valid = transfer(RECIPIENT, BigInteger.ONE);
+
+        // Missing 0x prefix
+        assertFalse(decoder.decode("00" + valid.substring(2)));
+        // Other selector, e.g. approve(address,uint256)
+        assertFalse(decoder.decode(valid.replace("a9059cbb", "095ea7b3")));
+        // Dirty upper bytes in the address word
+        assertFalse(decoder.decode(valid.substring(0, 10) + "1" + valid.substring(11)));
+        // Non-hex digits in the address or amount
+        assertFalse(decoder.decode(valid.substring(0, 40) + "zz" + valid.substring(42)));
+        assertFalse(decoder.decode(valid.substring(0, 100) + "g" + valid.substring(101)));
+    }
+
+    @Test
+    void decodesFromACharBufferSlice() {
+        TransferCalldataDecoder decoder = new TransferCalldataDecoder();
+        String input = transfer(RECIPIENT, BigInteger.valueOf(42));
+        char[] buffer = ("{\"input\":\"" + input + "\"}").toCharArray();
+
+        assertTrue(decoder.decode(buffer, 10, input.length()));
+        assertEquals("0x" + RECIPIENT, decoder.recipientHex());
+        assertEquals(BigInteger.valueOf(42), decoder.amount());
+
+        assertFalse(decoder.decode(buffer, 10, input.length() - 2));
+    }
+
+    @Test
+    void matchesRecipientAgainstAddressSet() {
+        TransferCalldataDecoder decoder = new TransferCalldataDecoder();
+        OffHeapAddressSet addresses = OffHeapAddressSet.allocate(10);
+        addresses.add("0x" + RECIPIENT);
+
+        decoder.decode(transfer(RECIPIENT, BigInteger.ONE));
+        assertTrue(decoder.isRecipientIn(addresses));
+
+        decoder.decode(transfer("1111111111111111111111111111111111111111", BigInteger.ONE));
+        assertFalse(decoder.isRecipientIn(addresses));
+    }
+
+    private static String transfer(String recipient, BigInteger amount) {
+        return "0xa9059cbb" + PADDING + recipient + String.format("%064x", amount);
+    }
+}